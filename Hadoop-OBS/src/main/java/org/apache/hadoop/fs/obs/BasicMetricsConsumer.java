@@ -60,6 +60,7 @@ public interface BasicMetricsConsumer extends Closeable {
         static final String GET_FILE_STATUS = "getFileStatus";
         static final String GET_CONTENT_SUMMARY = "getContentSummary";
         static final String COPYFROMLOCAL = "copyFromLocalFile";
+        static final String COPYTOLOCAL = "copyToLocalFile";
         static final String LIST_FILES = "listFiles";
         static final String LIST_LOCATED_STS = "listLocatedStatus";
         static final String OPEN = "open";
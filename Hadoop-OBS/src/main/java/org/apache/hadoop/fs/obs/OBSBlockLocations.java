@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.fs.obs;
+
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.Path;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Synthetic block locations of the files of an {@link OBSFileSystem}, which
+ * has no real block placement.
+ *
+ * <p>Without hosts configured in {@link OBSConstants#BLOCK_LOCATION_HOSTS},
+ * a file has one block on "localhost", as in {@link
+ * org.apache.hadoop.fs.FileSystem}. With hosts, every block of the file is on
+ * one of them, in turn from a host picked by the path, so that split
+ * planners spread the splits over the hosts.
+ *
+ * <p>The locations only depend on the length and block size of the file and
+ * on the first host, so they are shared by the files alike: callers must not
+ * change them.
+ */
+final class OBSBlockLocations {
+    /**
+     * Port of the names of the synthetic locations.
+     */
+    private static final String NAME_PORT = ":9866";
+
+    /**
+     * Host of a file without hosts configured.
+     */
+    private static final String[] LOCALHOST = {"localhost"};
+
+    /**
+     * Maximum number of layouts kept.
+     */
+    private static final int MAX_CACHED_LAYOUTS = 1024;
+
+    /**
+     * Hosts to spread the blocks over; empty for one "localhost" block.
+     */
+    private final String[] hosts;
+
+    /**
+     * Names of the hosts, in the same order.
+     */
+    private final String[] names;
+
+    /**
+     * Locations of a whole file, by layout, in access order.
+     */
+    private final Map<Layout, BlockLocation[]> layouts = new LinkedHashMap<Layout, BlockLocation[]>(16, 0.75f,
+            true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Layout, BlockLocation[]> eldest) {
+            return size() > MAX_CACHED_LAYOUTS;
+        }
+    };
+
+    /**
+     * Create the locations for the given hosts.
+     *
+     * @param blockHosts hosts to spread the blocks over; empty for one
+     *                   "localhost" block per file
+     */
+    OBSBlockLocations(final String[] blockHosts) {
+        this.hosts = blockHosts.clone();
+        this.names = new String[hosts.length];
+        for (int i = 0; i < hosts.length; i++) {
+            names[i] = hosts[i] + NAME_PORT;
+        }
+    }
+
+    /**
+     * Return the locations of the blocks of a file overlapping a range, as
+     * {@link org.apache.hadoop.fs.FileSystem#getFileBlockLocations(
+     *org.apache.hadoop.fs.FileStatus, long, long)} does.
+     *
+     * @param path      path of the file
+     * @param fileLen   length of the file
+     * @param blockSize block size of the file
+     * @param start     start of the range
+     * @param len       length of the range
+     * @return the locations; shared if the range covers the file
+     */
+    BlockLocation[] locate(final Path path, final long fileLen, final long blockSize, final long start,
+                           final long len) {
+        if (start < 0 || len < 0) {
+            throw new IllegalArgumentException("Invalid start or len parameter");
+        }
+        if (fileLen <= start) {
+            return new BlockLocation[0];
+        }
+        BlockLocation[] all = locate(path, fileLen, blockSize);
+        if (start == 0 && len >= fileLen || all.length == 1) {
+            return all;
+        }
+        List<BlockLocation> overlapping = new ArrayList<>();
+        for (BlockLocation location : all) {
+            if (location.getOffset() < start + len && location.getOffset() + location.getLength() > start) {
+                overlapping.add(location);
+            }
+        }
+        return overlapping.toArray(new BlockLocation[overlapping.size()]);
+    }
+
+    /**
+     * Return the locations of all the blocks of a non empty file.
+     *
+     * @param path      path of the file
+     * @param fileLen   length of the file
+     * @param blockSize block size of the file
+     * @return the shared locations
+     */
+    BlockLocation[] locate(final Path path, final long fileLen, final long blockSize) {
+        int firstHost = hosts.length == 0 ? 0 : (path.hashCode() & Integer.MAX_VALUE) % hosts.length;
+        Layout layout = new Layout(fileLen, hosts.length == 0 ? 0 : blockSize, firstHost);
+        synchronized (layouts) {
+            BlockLocation[] locations = layouts.get(layout);
+            if (locations == null) {
+                locations = build(layout);
+                layouts.put(layout, locations);
+            }
+            return locations;
+        }
+    }
+
+    private BlockLocation[] build(final Layout layout) {
+        if (hosts.length == 0 || layout.blockSize <= 0 || layout.fileLen <= layout.blockSize) {
+            String[] host = hosts.length == 0 ? LOCALHOST : new String[] {hosts[layout.firstHost]};
+            String[] name = hosts.length == 0
+                    ? new String[] {LOCALHOST[0] + NAME_PORT}
+                    : new String[] {names[layout.firstHost]};
+            return new BlockLocation[] {new BlockLocation(name, host, 0, layout.fileLen)};
+        }
+        int blocks = (int) ((layout.fileLen + layout.blockSize - 1) / layout.blockSize);
+        BlockLocation[] locations = new BlockLocation[blocks];
+        for (int i = 0; i < blocks; i++) {
+            int host = (layout.firstHost + i) % hosts.length;
+            long offset = i * layout.blockSize;
+            locations[i] = new BlockLocation(new String[] {names[host]}, new String[] {hosts[host]}, offset,
+                    Math.min(layout.blockSize, layout.fileLen - offset));
+        }
+        return locations;
+    }
+
+    /**
+     * What the locations of a file depend on.
+     */
+    private static final class Layout {
+        /**
+         * Length of the file.
+         */
+        private final long fileLen;
+
+        /**
+         * Block size of the file; 0 if there is a single block.
+         */
+        private final long blockSize;
+
+        /**
+         * Index of the host of the first block.
+         */
+        private final int firstHost;
+
+        private Layout(final long length, final long size, final int host) {
+            this.fileLen = length;
+            this.blockSize = size;
+            this.firstHost = host;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Layout)) {
+                return false;
+            }
+            Layout that = (Layout) o;
+            return fileLen == that.fileLen && blockSize == that.blockSize && firstHost == that.firstHost;
+        }
+
+        @Override
+        public int hashCode() {
+            return (Long.hashCode(fileLen) * 31 + Long.hashCode(blockSize)) * 31 + firstHost;
+        }
+    }
+}
@@ -24,6 +24,7 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import com.obs.services.exception.ObsException;
 import com.obs.services.model.*;
 import com.obs.services.model.fs.WriteFileRequest;
@@ -36,11 +37,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -64,6 +71,12 @@ class OBSBlockOutputStream extends OutputStream implements Syncable {
      */
     private static final Logger LOG = LoggerFactory.getLogger(OBSBlockOutputStream.class);
 
+    /**
+     * Size of the buffer digesting the data of a part stored by a previous
+     * writer.
+     */
+    private static final int DIGEST_BUFFER_SIZE = 64 * 1024;
+
     /**
      * Owner FileSystem.
      */
@@ -106,6 +119,17 @@ class OBSBlockOutputStream extends OutputStream implements Syncable {
      * Length of object.
      */
     private long objectLen;
+
+    /**
+     * Whether the stream knows the object exists with length {@link
+     * #objectLen}, having written it itself; cleared after a failed write.
+     */
+    private boolean objectStateKnown = false;
+
+    /**
+     * Number of object status requests saved by tracking the object state.
+     */
+    private long statusRequestsSaved = 0;
     /**
      * Closed flag.
      */
@@ -137,6 +161,48 @@ class OBSBlockOutputStream extends OutputStream implements Syncable {
 
     private String hflushPolicy = OBSConstants.OUTPUT_STREAM_HFLUSH_POLICY_SYNC;
 
+    /**
+     * Stream parts to OBS while their block is still being written.
+     */
+    private final boolean streamingUpload;
+
+    /**
+     * Pipe size of a streamed block.
+     */
+    private final int streamingPipeSize;
+
+    /**
+     * Factory of the disk copies of streamed blocks.
+     */
+    private final OBSDataBlocks.BlockFactory streamingCopyFactory;
+
+    /**
+     * Complete the upload in the background when the stream is closed.
+     */
+    private final boolean asyncClose;
+
+    /**
+     * Journal of the multipart upload; null if journaling is disabled.
+     */
+    private final OBSUploadJournal uploadJournal;
+
+    /**
+     * Group commit hflush/hsync appends on a posix bucket.
+     */
+    private final boolean hflushGroupCommit;
+
+    /**
+     * Group committer of appends; null until the first group committed sync.
+     */
+    private OBSHflushGroupCommitter groupCommitter;
+
+    /**
+     * Key of the pending upload manifest of a file written under a magic
+     * directory; null for any other file. The multipart upload of such a file
+     * is left uncompleted for {@link OBSMagicCommitter}.
+     */
+    private final String magicPendingKey;
+
     /**
      * An OBS output stream which uploads partitions in a separate pool of
      * threads; different {@link OBSDataBlocks.BlockFactory} instances can
@@ -151,6 +217,27 @@ class OBSBlockOutputStream extends OutputStream implements Syncable {
      */
     OBSBlockOutputStream(final OBSFileSystem owner, final String obsObjectKey, final long objLen,
                          final ExecutorService execService, final boolean isAppendable) throws IOException {
+        this(owner, obsObjectKey, objLen, execService, isAppendable, null);
+    }
+
+    /**
+     * An OBS output stream which, when a pending key is given, leaves the
+     * multipart upload of the object uncompleted and saves a manifest of it
+     * under the pending key on close.
+     *
+     * @param owner           OBSFilesystem
+     * @param obsObjectKey    OBS object to work on
+     * @param objLen          object length
+     * @param execService     the executor service to use to schedule work
+     * @param isAppendable    if append is supported
+     * @param pendingKey      key of the pending upload manifest; null to
+     *                        complete the upload on close
+     * @throws IOException on any problem
+     */
+    OBSBlockOutputStream(final OBSFileSystem owner, final String obsObjectKey, final long objLen,
+                         final ExecutorService execService, final boolean isAppendable, final String pendingKey)
+            throws IOException {
+        this.magicPendingKey = pendingKey;
         this.appendAble = new AtomicBoolean(isAppendable);
         this.fs = owner;
         this.key = obsObjectKey;
@@ -163,8 +250,21 @@ class OBSBlockOutputStream extends OutputStream implements Syncable {
                 "Block size is too small: %d", owner.getPartSize());
         this.executorService = MoreExecutors.listeningDecorator(execService);
         this.multiPartUpload = null;
+        this.streamingUpload = owner.isFastUploadStreaming();
+        this.streamingPipeSize = owner.getFastUploadStreamingPipeSize();
+        this.streamingCopyFactory = streamingUpload ? new OBSDataBlocks.DiskBlockFactory(owner) : null;
+        // a pending upload has to be saved before close returns, and is
+        // completed by the job commit rather than by a re-run writer
+        this.asyncClose = pendingKey == null && owner.getConf()
+                .getBoolean(OBSConstants.OUTPUT_STREAM_ASYNC_CLOSE, OBSConstants.DEFAULT_OUTPUT_STREAM_ASYNC_CLOSE);
+        this.uploadJournal = pendingKey == null ? OBSUploadJournal.open(owner, obsObjectKey) : null;
+        this.hflushGroupCommit = owner.isFsBucket() && owner.getConf()
+                .getBoolean(OBSConstants.OUTPUT_STREAM_HFLUSH_GROUP_COMMIT,
+                        OBSConstants.DEFAULT_OUTPUT_STREAM_HFLUSH_GROUP_COMMIT);
         this.hflushPolicy = owner.getConf()
                 .get(OBSConstants.OUTPUT_STREAM_HFLUSH_POLICY, OBSConstants.OUTPUT_STREAM_HFLUSH_POLICY_SYNC);
+        // the statuses cached before the write are stale
+        owner.invalidateFileStatus(obsObjectKey);
         // create that first block. This guarantees that an open + close
         // sequence writes a 0-byte entry.
         createBlockIfNeeded();
@@ -184,11 +284,53 @@ class OBSBlockOutputStream extends OutputStream implements Syncable {
                 LOG.debug("Number of partitions in stream exceeds limit for OBS: " + OBSConstants.MAX_MULTIPART_COUNT
                         + " write may fail.");
             }
-            activeBlock = blockFactory.create(blockCount, this.blockSize);
+            if (streamingUpload && !appendAble.get()) {
+                // appended data goes out in whole blocks, so only a multipart
+                // upload can be streamed
+                activeBlock = new OBSDataBlocks.StreamingBlock(blockCount, this.blockSize, streamingPipeSize,
+                        this::startStreamingUpload, streamingCopyFactory);
+            } else {
+                activeBlock = blockFactory.create(blockCount, this.blockSize);
+            }
         }
         return activeBlock;
     }
 
+    /**
+     * Start streaming the given block as the next part of the multipart
+     * upload, initiating the upload if needed, if a streaming thread is free.
+     *
+     * @param block block still being written
+     * @return true if the upload was started, false if the block has to be
+     * buffered
+     * @throws IOException Problems initializing the upload.
+     */
+    private synchronized boolean startStreamingUpload(final OBSDataBlocks.StreamingBlock block)
+            throws IOException {
+        if (!fs.tryAcquireStreamingUpload()) {
+            LOG.debug("No streaming upload thread free for {}", block);
+            return false;
+        }
+        boolean submitted = false;
+        try {
+            if (multiPartUpload == null) {
+                LOG.debug("Initiating Multipart upload");
+                multiPartUpload = new MultiPartUpload();
+            }
+            multiPartUpload.uploadStreamingBlockAsync(block);
+            submitted = true;
+            return true;
+        } catch (IOException | RuntimeException e) {
+            hasException.set(true);
+            LOG.error("Start streaming upload of block on ({}/{}) failed.", fs.getBucket(), key, e);
+            throw e;
+        } finally {
+            if (!submitted) {
+                fs.releaseStreamingUpload();
+            }
+        }
+    }
+
     /**
      * Synchronized accessor to the active block.
      *
@@ -298,6 +440,12 @@ class OBSBlockOutputStream extends OutputStream implements Syncable {
         }
 
         OBSDataBlocks.DataBlock block = createBlockIfNeeded();
+        if (block instanceof OBSDataBlocks.StreamingBlock && multiPartUpload != null
+                && !((OBSDataBlocks.StreamingBlock) block).isUploadStarted()) {
+            // once a multipart upload exists every new part goes out as soon
+            // as it receives data
+            startStreamingUpload((OBSDataBlocks.StreamingBlock) block);
+        }
         int written = block.write(source, offset, len);
         int remainingCapacity = block.remainingCapacity();
         try {
@@ -333,7 +481,7 @@ class OBSBlockOutputStream extends OutputStream implements Syncable {
                 // to write a buffer then append to obs
                 LOG.debug("[Append] open stream and single write size {} "
                         + "greater than buffer size {}, append buffer to obs.", len, blockSize);
-                flushCurrentBlock();
+                appendCurrentBlock();
             } else {
                 // block output stream logic, multi-part upload
                 uploadCurrentBlock();
@@ -348,7 +496,7 @@ class OBSBlockOutputStream extends OutputStream implements Syncable {
                     // to write a buffer then append to obs
                     LOG.debug("[Append] open stream and already write size "
                             + "equal to buffer size {}, append buffer to obs.", blockSize);
-                    flushCurrentBlock();
+                    appendCurrentBlock();
                 } else {
                     // block output stream logic, multi-part upload
                     uploadCurrentBlock();
@@ -357,6 +505,20 @@ class OBSBlockOutputStream extends OutputStream implements Syncable {
         }
     }
 
+    /**
+     * Append the full current block, through the group committer once one
+     * is in use so that appends stay in order.
+     *
+     * @throws IOException any problem in append
+     */
+    private synchronized void appendCurrentBlock() throws IOException {
+        if (groupCommitter != null) {
+            sealActiveBlock();
+        } else {
+            flushCurrentBlock();
+        }
+    }
+
     /**
      * Start an asynchronous upload of the current block.
      *
@@ -390,6 +552,11 @@ class OBSBlockOutputStream extends OutputStream implements Syncable {
      * perform the upload has failed. Exceptions raised in this method are
      * indicative that the write has failed and data is at risk of being lost.
      *
+     * <p>With {@link OBSConstants#OUTPUT_STREAM_ASYNC_CLOSE} enabled, a stream
+     * which is not appending returns once the last block has been handed off;
+     * the upload is completed in the background and any failure is reported
+     * by {@link OBSFileSystem#awaitPendingAsyncCloses()}.
+     *
      * @throws IOException on any failure.
      */
     @Override
@@ -417,8 +584,17 @@ class OBSBlockOutputStream extends OutputStream implements Syncable {
 
         fs.checkOpen();
 
+        if (asyncClose && !appendAble.get()) {
+            closeAsync(startTime);
+            return;
+        }
+
         // do upload
-        completeCurrentBlock();
+        if (groupCommitter != null) {
+            completeGroupCommit();
+        } else {
+            completeCurrentBlock();
+        }
 
         // clear
         clearHFlushOrSync();
@@ -427,6 +603,7 @@ class OBSBlockOutputStream extends OutputStream implements Syncable {
         // directories
         writeOperationHelper.writeSuccessful(key);
         fs.removeFileBeingWritten(key);
+        LOG.debug("Closed {}, {} object status requests saved", key, statusRequestsSaved);
         endTime = System.currentTimeMillis();
         if (fs.getMetricSwitch()) {
             BasicMetricsConsumer.MetricRecord record = new BasicMetricsConsumer.MetricRecord(
@@ -437,19 +614,105 @@ class OBSBlockOutputStream extends OutputStream implements Syncable {
         closed = true;
     }
 
+    /**
+     * Hand off the last block and register the completion of the upload with
+     * the filesystem, without waiting for it.
+     *
+     * @param startTime time the close started
+     * @throws IOException on any failure to hand off the last block
+     */
+    private synchronized void closeAsync(final long startTime) throws IOException {
+        OBSDataBlocks.DataBlock block = getActiveBlock();
+        boolean hasBlock = hasActiveBlock();
+        LOG.debug("{}: async close with block #{}: current block= {}", this, blockCount,
+                hasBlock ? block : "(none)");
+        ListenableFuture<Void> completion;
+        try {
+            if (multiPartUpload == null) {
+                clearActiveBlock();
+                completion = hasBlock ? putBlockAsync(block) : Futures.<Void>immediateFuture(null);
+            } else {
+                if (hasBlock && block.hasData()) {
+                    uploadCurrentBlock();
+                } else if (hasBlock) {
+                    OBSCommonUtils.closeAll(block);
+                    clearActiveBlock();
+                }
+                completion = multiPartUpload.completeAsync();
+            }
+        } catch (IOException e) {
+            hasException.set(true);
+            LOG.error("Async close of ({}/{}) failed to hand off the last block.", fs.getBucket(), key, e);
+            if (fs.getMetricSwitch()) {
+                BasicMetricsConsumer.MetricRecord record = new BasicMetricsConsumer.MetricRecord(
+                        BasicMetricsConsumer.MetricRecord.OUTPUT, BasicMetricsConsumer.MetricRecord.CLOSE, false,
+                        System.currentTimeMillis() - startTime);
+                OBSCommonUtils.setMetricsInfo(fs, record);
+            }
+            throw e;
+        }
+
+        closed = true;
+        fs.removeFileBeingWritten(key);
+        fs.addPendingAsyncClose(key, completion);
+        long endTime = System.currentTimeMillis();
+        if (fs.getMetricSwitch()) {
+            BasicMetricsConsumer.MetricRecord record = new BasicMetricsConsumer.MetricRecord(
+                    BasicMetricsConsumer.MetricRecord.OUTPUT, BasicMetricsConsumer.MetricRecord.CLOSE, true,
+                    endTime - startTime);
+            OBSCommonUtils.setMetricsInfo(fs, record);
+        }
+    }
+
+    /**
+     * Upload a block as a single PUT request on the transfer pool.
+     *
+     * @param block block to upload, no longer the active block
+     * @return future completing once the object has been written
+     */
+    private ListenableFuture<Void> putBlockAsync(final OBSDataBlocks.DataBlock block) {
+        return executorService.submit(() -> {
+            putBlock(block);
+            writeOperationHelper.writeSuccessful(key);
+            return null;
+        });
+    }
+
     /**
      * If flush has take place, need to append file, else to put object.
      *
      * @throws IOException any problem in append or put object
      */
     private synchronized void putObjectIfNeedAppend() throws IOException {
-        if (appendAble.get() && fs.exists(OBSCommonUtils.keyToQualifiedPath(fs, key))) {
-            appendFsFile();
-        } else {
-            putObject();
+        boolean succeeded = false;
+        try {
+            if (appendAble.get() && objectExists()) {
+                appendFsFile();
+            } else {
+                putObject();
+            }
+            succeeded = true;
+        } finally {
+            // after a failure the object state has to be read back from OBS
+            objectStateKnown = succeeded;
         }
     }
 
+    /**
+     * Whether the object exists, asking OBS only if the stream has not
+     * written it itself.
+     *
+     * @return true if the object exists
+     * @throws IOException any problem getting the object status
+     */
+    private synchronized boolean objectExists() throws IOException {
+        if (objectStateKnown) {
+            statusRequestsSaved++;
+            return true;
+        }
+        return fs.exists(OBSCommonUtils.keyToQualifiedPath(fs, key));
+    }
+
     /**
      * Append posix file.
      *
@@ -459,7 +722,18 @@ class OBSBlockOutputStream extends OutputStream implements Syncable {
         LOG.debug("bucket is posix, to append file. key is {}", key);
         final OBSDataBlocks.DataBlock block = getActiveBlock();
         WriteFileRequest writeFileReq;
-        if (block instanceof OBSDataBlocks.DiskBlock) {
+        if (objectStateKnown) {
+            // the stream wrote the object itself, so append at its length
+            // without reading it back
+            statusRequestsSaved++;
+            if (block instanceof OBSDataBlocks.DiskBlock) {
+                writeFileReq = new WriteFileRequest(fs.getBucket(), key, (File) block.startUpload(), objectLen);
+            } else {
+                writeFileReq = new WriteFileRequest(fs.getBucket(), key, (InputStream) block.startUpload(),
+                        objectLen);
+            }
+            writeFileReq.setAcl(fs.getCannedACL());
+        } else if (block instanceof OBSDataBlocks.DiskBlock) {
             writeFileReq = OBSCommonUtils.newAppendFileRequest(fs, key, objectLen, (File) block.startUpload());
         } else {
             writeFileReq = OBSCommonUtils.newAppendFileRequest(fs, key, objectLen, (InputStream) block.startUpload());
@@ -480,13 +754,25 @@ class OBSBlockOutputStream extends OutputStream implements Syncable {
 
         final OBSDataBlocks.DataBlock block = getActiveBlock();
         clearActiveBlock();
+        objectLen += putBlock(block);
+    }
+
+    /**
+     * Upload a block as a single PUT request and close it.
+     *
+     * @param block block which is no longer the active block
+     * @return the size of the uploaded data
+     * @throws IOException any problem.
+     */
+    private int putBlock(final OBSDataBlocks.DataBlock block) throws IOException {
         final int size = block.dataSize();
+        final Object upload = block.startUpload();
         final PutObjectRequest putObjectRequest;
-        if (block instanceof OBSDataBlocks.DiskBlock) {
-            putObjectRequest = writeOperationHelper.newPutRequest(key, (File) block.startUpload());
+        if (upload instanceof File) {
+            putObjectRequest = writeOperationHelper.newPutRequest(key, (File) upload);
 
         } else {
-            putObjectRequest = writeOperationHelper.newPutRequest(key, (InputStream) block.startUpload(), size);
+            putObjectRequest = writeOperationHelper.newPutRequest(key, (InputStream) upload, size);
 
         }
         putObjectRequest.setAcl(fs.getCannedACL());
@@ -495,7 +781,7 @@ class OBSBlockOutputStream extends OutputStream implements Syncable {
             // the putObject call automatically closes the input
             // stream afterwards.
             writeOperationHelper.putObject(putObjectRequest);
-            objectLen += size;
+            return size;
         } finally {
             OBSCommonUtils.closeAll(block);
         }
@@ -506,6 +792,7 @@ class OBSBlockOutputStream extends OutputStream implements Syncable {
         final StringBuilder sb = new StringBuilder("OBSBlockOutputStream{");
         sb.append(writeOperationHelper.toString());
         sb.append(", blockSize=").append(blockSize);
+        sb.append(", statusRequestsSaved=").append(statusRequestsSaved);
         OBSDataBlocks.DataBlock block = activeBlock;
         if (block != null) {
             sb.append(", activeBlock=").append(block);
@@ -521,14 +808,23 @@ class OBSBlockOutputStream extends OutputStream implements Syncable {
     }
 
     @Override
-    public synchronized void hflush() throws IOException {
+    public void hflush() throws IOException {
         fs.checkOpen();
         checkStreamOpen();
+        if (magicPendingKey != null) {
+            // the data of a magic file must stay invisible until job commit
+            LOG.debug("Ignoring hflush of magic file {}", key);
+            return;
+        }
         long startTime = System.currentTimeMillis();
         switch (this.hflushPolicy) {
             case OBSConstants.OUTPUT_STREAM_HFLUSH_POLICY_SYNC:
                 // hflush hsyn same
-                flushOrSync();
+                if (hflushGroupCommit) {
+                    groupCommitSync();
+                } else {
+                    flushOrSync();
+                }
                 break;
             case OBSConstants.OUTPUT_STREAM_HFLUSH_POLICY_FLUSH:
                 flush();
@@ -576,6 +872,85 @@ class OBSBlockOutputStream extends OutputStream implements Syncable {
         }
     }
 
+    /**
+     * Group committed hflush or hsync. The current block is sealed under the
+     * stream lock, but the wait for its append is not, so concurrent callers
+     * seal their data into the same append.
+     *
+     * @throws IOException io exception
+     */
+    private void groupCommitSync() throws IOException {
+        long position;
+        OBSHflushGroupCommitter committer;
+        synchronized (this) {
+            checkStreamOpen();
+            if (hasException.get()) {
+                String flushWarning = String.format("flushOrSync has error. bs : pre write obs[%s] has error.", key);
+                LOG.warn(flushWarning);
+                throw new IOException(flushWarning);
+            }
+            if (groupCommitter == null) {
+                // the first sync settles a pending multipart upload or the
+                // initial put the usual way; appends are grouped after that
+                flushCurrentBlock();
+                clearHFlushOrSync();
+                groupCommitter = new OBSHflushGroupCommitter(fs, key, executorService, objectLen);
+                return;
+            }
+            position = sealActiveBlock();
+            committer = groupCommitter;
+        }
+        try {
+            committer.awaitDurable(position);
+        } catch (IOException e) {
+            hasException.set(true);
+            throw e;
+        }
+    }
+
+    /**
+     * Seal the current block into the group committer if it has data.
+     *
+     * @return the object length to wait for to have the data durable
+     * @throws IOException any problem in sealing the block
+     */
+    private synchronized long sealActiveBlock() throws IOException {
+        OBSDataBlocks.DataBlock block = getActiveBlock();
+        if (block == null || !block.hasData()) {
+            return groupCommitter.getSealedPosition();
+        }
+        clearActiveBlock();
+        try {
+            Object upload = block.startUpload();
+            objectLen = groupCommitter.seal(block, upload);
+            return objectLen;
+        } catch (IOException e) {
+            hasException.set(true);
+            OBSCommonUtils.closeAll(block);
+            LOG.error("Seal block for group append to ({}/{}) failed.", fs.getBucket(), key, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Seal the last block into the group committer and wait until all data
+     * has been appended.
+     *
+     * @throws IOException any problem in append
+     */
+    private synchronized void completeGroupCommit() throws IOException {
+        long position = sealActiveBlock();
+        OBSCommonUtils.closeAll(getActiveBlock());
+        clearActiveBlock();
+        try {
+            groupCommitter.awaitDurable(position);
+        } catch (IOException e) {
+            hasException.set(true);
+            LOG.error("Upload data to obs error. io exception : {}", e.getMessage());
+            throw e;
+        }
+    }
+
     /**
      * Clear for hflush or hsync.
      */
@@ -593,6 +968,10 @@ class OBSBlockOutputStream extends OutputStream implements Syncable {
      */
     private synchronized void uploadWriteBlocks(final OBSDataBlocks.DataBlock block, final boolean hasBlock)
             throws IOException {
+        if (magicPendingKey != null) {
+            savePendingUpload(block, hasBlock);
+            return;
+        }
         if (multiPartUpload == null) {
             if (hasBlock) {
                 // no uploads of data have taken place, put the single block
@@ -619,10 +998,44 @@ class OBSBlockOutputStream extends OutputStream implements Syncable {
             multiPartUpload.complete(listPartETags);
             //update object len
             objectLen = countSize;
+            objectStateKnown = true;
         }
         LOG.debug("Upload complete for {}", writeOperationHelper.toString(key));
     }
 
+    /**
+     * Upload the remaining data of a magic file and save the manifest of its
+     * uncompleted multipart upload. Even an empty file is uploaded as a part,
+     * so nothing becomes visible at the destination before the job commits.
+     *
+     * @param block    block
+     * @param hasBlock jungle if has block
+     * @throws IOException on any problem
+     */
+    private synchronized void savePendingUpload(final OBSDataBlocks.DataBlock block, final boolean hasBlock)
+            throws IOException {
+        if (multiPartUpload == null || hasBlock && block.hasData()) {
+            createBlockIfNeeded();
+            uploadCurrentBlock();
+        }
+        final List<Pair<PartEtag, Integer>> partETags = multiPartUpload.waitForAllPartUploads();
+        List<PartEtag> listPartETags = new ArrayList<>();
+        long countSize = 0;
+        for (Pair<PartEtag, Integer> pair : partETags) {
+            listPartETags.add(pair.getKey());
+            countSize += pair.getValue();
+        }
+        try {
+            OBSMagicCommitUtils.savePendingUploads(fs, magicPendingKey, Collections.singletonList(
+                    new OBSMagicCommitUtils.PendingUpload(key, multiPartUpload.uploadId, countSize, listPartETags)));
+        } catch (IOException e) {
+            multiPartUpload.abort(false);
+            throw e;
+        }
+        objectLen = countSize;
+        LOG.debug("Pending upload of {} saved to {}", writeOperationHelper.toString(key), magicPendingKey);
+    }
+
     private synchronized void completeCurrentBlock() throws IOException {
         OBSDataBlocks.DataBlock block = getActiveBlock();
         boolean hasBlock = hasActiveBlock();
@@ -662,14 +1075,22 @@ class OBSBlockOutputStream extends OutputStream implements Syncable {
     }
 
     @Override
-    public synchronized void hsync() throws IOException {
+    public void hsync() throws IOException {
         fs.checkOpen();
         checkStreamOpen();
+        if (magicPendingKey != null) {
+            LOG.debug("Ignoring hsync of magic file {}", key);
+            return;
+        }
         long startTime = System.currentTimeMillis();
         switch (this.hflushPolicy) {
             case OBSConstants.OUTPUT_STREAM_HFLUSH_POLICY_SYNC:
                 // hflush hsyn same
-                flushOrSync();
+                if (hflushGroupCommit) {
+                    groupCommitSync();
+                } else {
+                    flushOrSync();
+                }
                 break;
             case OBSConstants.OUTPUT_STREAM_HFLUSH_POLICY_FLUSH:
                 sync();
@@ -704,13 +1125,99 @@ class OBSBlockOutputStream extends OutputStream implements Syncable {
          */
         private final List<ListenableFuture<Pair<PartEtag, Integer>>> partETagsFutures;
 
+        /**
+         * Parts of a resumed upload which are stored in OBS and recorded in
+         * the journal, by part number.
+         */
+        private final Map<Integer, OBSUploadJournal.JournalPart> storedParts = new HashMap<>();
+
+        /**
+         * Offset in the written data of the next part.
+         */
+        private long nextPartOffset = 0;
+
         MultiPartUpload() throws IOException {
-            this.uploadId = writeOperationHelper.initiateMultiPartUpload(key);
+            String resumedUploadId = resumeJournaledUpload();
+            if (resumedUploadId != null) {
+                this.uploadId = resumedUploadId;
+            } else {
+                this.uploadId = writeOperationHelper.initiateMultiPartUpload(key);
+                if (uploadJournal != null) {
+                    uploadJournal.start(uploadId);
+                }
+            }
             this.partETagsFutures = new ArrayList<>(2);
             LOG.debug("Initiated multi-part upload for {} with , the key is {}" + "id '{}'", writeOperationHelper,
                     uploadId, key);
         }
 
+        /**
+         * Pick up the upload recorded in the journal by a previous writer, if
+         * it still exists, and find which of its parts are stored in OBS.
+         *
+         * @return the upload id to resume, or null to start a new upload
+         * @throws IOException on failure to list the parts
+         */
+        private String resumeJournaledUpload() throws IOException {
+            String journaledUploadId = uploadJournal == null ? null : uploadJournal.getUploadId();
+            if (journaledUploadId == null) {
+                return null;
+            }
+            Map<Integer, Multipart> parts;
+            try {
+                parts = writeOperationHelper.listParts(key, journaledUploadId);
+            } catch (FileNotFoundException e) {
+                LOG.info("Journaled multi-part upload {} of {} no longer exists, starting a new one",
+                        journaledUploadId, key);
+                return null;
+            }
+            for (Multipart part : parts.values()) {
+                OBSUploadJournal.JournalPart journaled = uploadJournal.getPart(part.getPartNumber());
+                if (journaled != null && part.getSize() != null && journaled.getSize() == part.getSize()
+                        && stripQuotes(journaled.getEtag()).equals(stripQuotes(part.getEtag()))) {
+                    storedParts.put(journaled.getPartNumber(), journaled);
+                }
+            }
+            LOG.info("Resuming multi-part upload {} of {} with {} stored parts", journaledUploadId, key,
+                    storedParts.size());
+            return journaledUploadId;
+        }
+
+        private String stripQuotes(final String etag) {
+            return etag == null ? "" : etag.replace("\"", "");
+        }
+
+        /**
+         * Compute the MD5 of the data of a block, which is the ETag of the
+         * part it is uploaded as unless the part is encrypted on the server.
+         *
+         * @param upload the file or markable stream of the block
+         * @return the MD5 in hex, or "" if the stream cannot be read again
+         * @throws IOException on failure to read the data
+         */
+        private String md5Hex(final Object upload) throws IOException {
+            MessageDigest digest = OBSUploadJournal.newMd5();
+            byte[] buffer = new byte[DIGEST_BUFFER_SIZE];
+            if (upload instanceof File) {
+                try (InputStream in = new FileInputStream((File) upload)) {
+                    for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                        digest.update(buffer, 0, n);
+                    }
+                }
+            } else {
+                InputStream in = (InputStream) upload;
+                if (!in.markSupported()) {
+                    return "";
+                }
+                in.mark(Integer.MAX_VALUE);
+                for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                    digest.update(buffer, 0, n);
+                }
+                in.reset();
+            }
+            return OBSUploadJournal.toHex(digest.digest());
+        }
+
         /**
          * Upload a block of data asynchronously.
          *
@@ -719,18 +1226,114 @@ class OBSBlockOutputStream extends OutputStream implements Syncable {
          */
         private void uploadBlockAsync(final OBSDataBlocks.DataBlock block) throws IOException {
             LOG.debug("Queueing upload of {}", block);
+            if (block instanceof OBSDataBlocks.StreamingBlock
+                    && ((OBSDataBlocks.StreamingBlock) block).isUploadStarted()) {
+                // the part is already being sent; closing the pipe lets the
+                // request finish once the remaining data is drained
+                block.startUpload();
+                nextPartOffset += block.dataSize();
+                return;
+            }
 
             final int size = block.dataSize();
             final int currentPartNumber = partETagsFutures.size() + 1;
+            final long partOffset = nextPartOffset;
+            nextPartOffset += size;
+            final Object upload = block.startUpload();
+            OBSUploadJournal.JournalPart stored = storedParts.remove(currentPartNumber);
+            if (stored != null && stored.getSize() == size && stored.getOffset() == partOffset) {
+                if (stripQuotes(stored.getEtag()).equalsIgnoreCase(md5Hex(upload))) {
+                    LOG.debug("Skipping upload of part {} for id '{}' stored by a previous writer",
+                            currentPartNumber, uploadId);
+                    OBSCommonUtils.closeAll(block);
+                    partETagsFutures.add(Futures.immediateFuture(
+                            new Pair<PartEtag, Integer>(new PartEtag(stored.getEtag(), currentPartNumber), size)));
+                    return;
+                }
+                LOG.info("Part {} of upload '{}' to {} stored by a previous writer differs, uploading it again",
+                        currentPartNumber, uploadId, key);
+            }
             final UploadPartRequest request;
-            if (block instanceof OBSDataBlocks.DiskBlock) {
+            if (upload instanceof File) {
                 request = writeOperationHelper.newUploadPartRequest(key, uploadId, currentPartNumber, size,
-                        (File) block.startUpload());
+                        (File) upload);
             } else {
                 request = writeOperationHelper.newUploadPartRequest(key, uploadId, currentPartNumber, size,
-                        (InputStream) block.startUpload());
+                        (InputStream) upload);
 
             }
+            submitPartUpload(block, currentPartNumber, partOffset, request);
+        }
+
+        /**
+         * Start uploading a block which is still being written, on a
+         * streaming thread of its own, as a part of the full block size. The
+         * caller holds a streaming permit, given back once the upload ends.
+         *
+         * @param block block to upload
+         * @throws IOException on failure to create the retry copy
+         */
+        private void uploadStreamingBlockAsync(final OBSDataBlocks.StreamingBlock block) throws IOException {
+            LOG.debug("Starting streaming upload of {}", block);
+            final int currentPartNumber = partETagsFutures.size() + 1;
+            final long partOffset = nextPartOffset;
+            final UploadPartRequest request = writeOperationHelper.newUploadPartRequest(key, uploadId,
+                    currentPartNumber, block.getPartSize(), block.openPipe());
+            partETagsFutures.add(fs.submitStreamingUpload(
+                    () -> uploadStreamingPart(block, currentPartNumber, partOffset, request)));
+        }
+
+        /**
+         * Stream one part; if that fails, or the block ends short of the
+         * part size, drain the rest of the block into its copy and upload
+         * the part again from the copy.
+         */
+        private Pair<PartEtag, Integer> uploadStreamingPart(final OBSDataBlocks.StreamingBlock block,
+                                                            final int currentPartNumber, final long partOffset,
+                                                            final UploadPartRequest request) throws IOException {
+            LOG.debug("Streaming part {} for id '{}'", currentPartNumber, uploadId);
+            try {
+                if (mockUploadPartError) {
+                    throw new ObsException("mock upload part error");
+                }
+                UploadPartResult uploadPartResult;
+                try {
+                    uploadPartResult = OBSCommonUtils.uploadPart(fs, request);
+                } catch (ObsException e) {
+                    LOG.debug("Streaming part {} for id '{}' failed, uploading it again from its copy",
+                            currentPartNumber, uploadId, e);
+                    block.drainPipe();
+                    OBSDataBlocks.DataBlock copy = block.getRetryCopy();
+                    UploadPartRequest retryRequest = writeOperationHelper.newUploadPartRequest(key, uploadId,
+                            currentPartNumber, copy.dataSize(), (File) copy.startUpload());
+                    uploadPartResult = OBSCommonUtils.uploadPart(fs, retryRequest);
+                }
+                PartEtag partETag = new PartEtag(uploadPartResult.getEtag(), uploadPartResult.getPartNumber());
+                LOG.debug("Completed streaming upload of {} to part {}", block, partETag);
+                journalPart(partETag, block.dataSize(), partOffset);
+                return new Pair<PartEtag, Integer>(partETag, block.dataSize());
+            } catch (ObsException e) {
+                hasException.set(true);
+                IOException ioException = OBSCommonUtils.translateException("UploadPart", key, e);
+                LOG.error("UploadPart failed (ObsException). {}", ioException.getMessage());
+                throw ioException;
+            } finally {
+                // close the pipe, which fails a writer still filling it, and
+                // the copy
+                OBSCommonUtils.closeAll(block);
+            }
+        }
+
+        /**
+         * Submit the upload of one part to the executor.
+         *
+         * @param block             block to upload
+         * @param currentPartNumber part number
+         * @param partOffset        offset of the part in the written data
+         * @param request           part upload request
+         */
+        private void submitPartUpload(final OBSDataBlocks.DataBlock block, final int currentPartNumber,
+                                      final long partOffset, final UploadPartRequest request) {
             ListenableFuture<Pair<PartEtag, Integer>> partETagFuture = executorService.submit(() -> {
                 // this is the queued upload operation
                 LOG.debug("Uploading part {} for id '{}'", currentPartNumber, uploadId);
@@ -745,6 +1348,7 @@ class OBSBlockOutputStream extends OutputStream implements Syncable {
                     if (LOG.isDebugEnabled()) {
                         LOG.debug("Completed upload of {} to part {}", block, partETag);
                     }
+                    journalPart(partETag, block.dataSize(), partOffset);
                 } catch (ObsException e) {
                     // catch all exception
                     hasException.set(true);
@@ -755,11 +1359,32 @@ class OBSBlockOutputStream extends OutputStream implements Syncable {
                     // close the stream and block
                     OBSCommonUtils.closeAll(block);
                 }
-                return new Pair<PartEtag, Integer>(partETag, size);
+                return new Pair<PartEtag, Integer>(partETag, block.dataSize());
             });
             partETagsFutures.add(partETagFuture);
         }
 
+        /**
+         * Record an uploaded part in the journal. The journal only saves work
+         * of a re-run writer, so failing to write it does not fail the part.
+         *
+         * @param partETag   uploaded part
+         * @param size       part size
+         * @param partOffset offset of the part in the written data
+         */
+        private void journalPart(final PartEtag partETag, final int size, final long partOffset) {
+            if (uploadJournal == null) {
+                return;
+            }
+            try {
+                uploadJournal.recordPart(new OBSUploadJournal.JournalPart(partETag.getPartNumber(),
+                        partETag.getEtag(), size, partOffset));
+            } catch (IOException e) {
+                LOG.warn("Failed to record part {} of upload '{}' in {}", partETag.getPartNumber(), uploadId,
+                        uploadJournal, e);
+            }
+        }
+
         /**
          * Block awaiting all outstanding uploads to complete.
          *
@@ -768,16 +1393,29 @@ class OBSBlockOutputStream extends OutputStream implements Syncable {
          */
         private List<Pair<PartEtag, Integer>> waitForAllPartUploads() throws IOException {
             LOG.debug("Waiting for {} uploads to complete", partETagsFutures.size());
+            return getAllPartUploads(Futures.allAsList(partETagsFutures));
+        }
+
+        /**
+         * Get the results of all part uploads, aborting the upload if any of
+         * them failed.
+         *
+         * @param allParts future of all part uploads
+         * @return list of results
+         * @throws IOException IO Problems
+         */
+        private List<Pair<PartEtag, Integer>> getAllPartUploads(
+                final ListenableFuture<List<Pair<PartEtag, Integer>>> allParts) throws IOException {
             try {
-                return Futures.allAsList(partETagsFutures).get();
+                return allParts.get();
             } catch (InterruptedException ie) {
                 LOG.warn("Interrupted partUpload", ie);
                 LOG.debug("Cancelling futures");
                 for (ListenableFuture<Pair<PartEtag, Integer>> future : partETagsFutures) {
                     future.cancel(true);
                 }
-                // abort multipartupload
-                this.abort();
+                // keep a journaled upload for a re-run writer to resume
+                this.abort(true);
                 throw new IOException("Interrupted multi-part upload with id '" + uploadId + "' to " + key);
             } catch (ExecutionException ee) {
                 // there is no way of recovering so abort
@@ -788,12 +1426,42 @@ class OBSBlockOutputStream extends OutputStream implements Syncable {
                     future.cancel(true);
                 }
                 // abort multipartupload
-                this.abort();
+                this.abort(false);
                 throw OBSCommonUtils.extractException("Multi-part upload with id '" + uploadId + "' to " + key, key,
                         ee);
             }
         }
 
+        /**
+         * Complete the upload once all parts have been uploaded, without
+         * blocking the caller. The completion runs on the transfer pool thread
+         * which finishes the last part, so no thread is held while waiting.
+         *
+         * @return future completing once the upload has been completed
+         */
+        private ListenableFuture<Void> completeAsync() {
+            LOG.debug("Completing {} uploads asynchronously", partETagsFutures.size());
+            final ListenableFuture<List<Pair<PartEtag, Integer>>> allParts = Futures.allAsList(partETagsFutures);
+            final SettableFuture<Void> completion = SettableFuture.create();
+            allParts.addListener(() -> {
+                try {
+                    List<PartEtag> listPartETags = new ArrayList<>();
+                    for (Pair<PartEtag, Integer> pair : getAllPartUploads(allParts)) {
+                        listPartETags.add(pair.getKey());
+                    }
+                    complete(listPartETags);
+                    writeOperationHelper.writeSuccessful(key);
+                    LOG.debug("Upload complete for {}", writeOperationHelper.toString(key));
+                    completion.set(null);
+                } catch (IOException | RuntimeException e) {
+                    LOG.error("Asynchronous completion of multi-part upload with id '{}' to {} failed", uploadId,
+                            key, e);
+                    completion.setException(e);
+                }
+            }, Runnable::run);
+            return completion;
+        }
+
         /**
          * This completes a multipart upload. Sometimes it fails; here retries
          * are handled to avoid losing all data on a transient failure.
@@ -808,7 +1476,12 @@ class OBSBlockOutputStream extends OutputStream implements Syncable {
                     partETags.size());
             try {
                 LOG.debug(operation);
-                return writeOperationHelper.completeMultipartUpload(key, uploadId, partETags);
+                CompleteMultipartUploadResult result = writeOperationHelper.completeMultipartUpload(key, uploadId,
+                        partETags);
+                if (uploadJournal != null) {
+                    uploadJournal.delete();
+                }
+                return result;
             } catch (ObsException e) {
                 throw OBSCommonUtils.translateException(operation, key, e);
             }
@@ -818,8 +1491,19 @@ class OBSBlockOutputStream extends OutputStream implements Syncable {
          * Abort a multi-part upload. Retries are attempted on failures.
          * IOExceptions are caught; this is expected to be run as a cleanup
          * process.
+         *
+         * @param resumable whether a re-run writer may resume the upload, in
+         *                  which case a journaled upload is kept
          */
-        void abort() {
+        void abort(final boolean resumable) {
+            if (uploadJournal != null) {
+                if (resumable) {
+                    LOG.warn("Keeping multi-part upload '{}' of {} to be resumed by a re-run writer with {}",
+                            uploadId, key, uploadJournal);
+                    return;
+                }
+                uploadJournal.delete();
+            }
             String operation = String.format("Aborting multi-part upload for '%s', id '%s", writeOperationHelper,
                     uploadId);
             try {
@@ -0,0 +1,251 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.fs.obs;
+
+import com.obs.services.exception.ObsException;
+import com.obs.services.model.ListObjectsRequest;
+import com.obs.services.model.ObjectListing;
+import com.obs.services.model.ObsObject;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Status lookups of many paths at once for {@link OBSFileSystem}.
+ */
+final class OBSBulkStatusUtils {
+    /**
+     * Class logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(OBSBulkStatusUtils.class);
+
+    private OBSBulkStatusUtils() {
+    }
+
+    /**
+     * Look up the statuses of the given paths concurrently on the status
+     * pool. Paths found in the status cache are answered from it. Paths
+     * sharing a parent with at least {@link
+     * OBSConstants#BULK_STATUS_LIST_THRESHOLD} others are resolved together
+     * by a listing of the parent which skips the keys between them; the other
+     * paths are looked up one by one.
+     *
+     * @param owner the filesystem
+     * @param paths the paths
+     * @return the outcome of every path, in input order
+     * @throws IOException if interrupted
+     */
+    static List<OBSFileStatusResult> getFileStatuses(final OBSFileSystem owner, final Collection<Path> paths)
+            throws IOException {
+        final Path[] inputs = paths.toArray(new Path[0]);
+        final OBSFileStatusResult[] results = new OBSFileStatusResult[inputs.length];
+        Map<Path, List<Integer>> byParent = new LinkedHashMap<>();
+        for (int i = 0; i < inputs.length; i++) {
+            results[i] = resolveCached(owner, inputs[i]);
+            if (results[i] == null) {
+                Path parent = OBSCommonUtils.qualify(owner, inputs[i]).getParent();
+                byParent.computeIfAbsent(parent, p -> new ArrayList<>()).add(i);
+            }
+        }
+
+        int listThreshold = OBSCommonUtils.intOption(owner.getConf(), OBSConstants.BULK_STATUS_LIST_THRESHOLD,
+                OBSConstants.DEFAULT_BULK_STATUS_LIST_THRESHOLD, 1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (Map.Entry<Path, List<Integer>> entry : byParent.entrySet()) {
+            final Path parent = entry.getKey();
+            final List<Integer> indexes = entry.getValue();
+            if (parent != null && indexes.size() >= listThreshold) {
+                futures.add(owner.getBoundedStatusThreadPool()
+                        .submit(() -> resolveByListing(owner, parent, indexes, inputs, results)));
+            } else {
+                for (final int index : indexes) {
+                    futures.add(owner.getBoundedStatusThreadPool()
+                            .submit(() -> results[index] = resolveOne(owner, inputs[index])));
+                }
+            }
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted getting statuses of " + inputs.length + " paths");
+        } catch (ExecutionException e) {
+            throw OBSCommonUtils.extractException("getFileStatuses", String.valueOf(inputs.length), e);
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+        LOG.debug("Got statuses of {} paths under {} parents", inputs.length, byParent.size());
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Resolve a path from the status cache.
+     *
+     * @return the cached outcome, or null if the path is not cached
+     */
+    private static OBSFileStatusResult resolveCached(final OBSFileSystem owner, final Path path) {
+        OBSFileStatusCache cache = owner.getFileStatusCache();
+        if (cache == null) {
+            return null;
+        }
+        try {
+            FileStatus status = cache.get(OBSCommonUtils.pathToKey(owner, OBSCommonUtils.qualify(owner, path)));
+            return status == null ? null : OBSFileStatusResult.found(path, status);
+        } catch (FileNotFoundException e) {
+            return OBSFileStatusResult.failed(path, e);
+        }
+    }
+
+    private static OBSFileStatusResult resolveOne(final OBSFileSystem owner, final Path path) {
+        try {
+            return OBSFileStatusResult.found(path, owner.getFileStatus(path));
+        } catch (IOException e) {
+            return OBSFileStatusResult.failed(path, e);
+        }
+    }
+
+    /**
+     * Resolve the children of one parent with a listing of the parent. The
+     * listing starts just before the smallest of their keys, and whenever a
+     * page ends before the next key it starts again just before that key
+     * rather than walking the keys in between, so it makes at most one
+     * request per child however far apart the children are.
+     */
+    private static void resolveByListing(final OBSFileSystem owner, final Path parent, final List<Integer> indexes,
+                                         final Path[] inputs, final OBSFileStatusResult[] results) {
+        long cacheGeneration = owner.getFileStatusCacheGeneration();
+        Map<String, FileStatus> found = new HashMap<>();
+        TreeMap<String, Path> wanted = new TreeMap<>();
+        for (int index : indexes) {
+            Path path = OBSCommonUtils.qualify(owner, inputs[index]);
+            wanted.put(OBSCommonUtils.pathToKey(owner, path), path);
+        }
+
+        try {
+            String prefix = OBSCommonUtils.maybeAddTrailingSlash(OBSCommonUtils.pathToKey(owner, parent));
+            ListObjectsRequest request = OBSCommonUtils.createListObjectsRequest(owner, prefix, "/");
+            request.setMarker(OBSCommonUtils.markerBefore(wanted.firstKey()));
+            ObjectListing objects = OBSCommonUtils.listObjects(owner, request);
+            while (true) {
+                for (ObsObject summary : objects.getObjects()) {
+                    String key = summary.getObjectKey();
+                    Path path = wanted.get(key);
+                    if (path != null) {
+                        found.put(key, OBSCommonUtils.createFileStatus(path, summary, owner.getDefaultBlockSize(path),
+                                owner.getShortUserName()));
+                    }
+                }
+                for (ObsObject prefixObject : objects.getExtenedCommonPrefixes()) {
+                    String prefixKey = prefixObject.getObjectKey();
+                    String key = prefixKey.endsWith("/") ? prefixKey.substring(0, prefixKey.length() - 1) : prefixKey;
+                    Path path = wanted.get(key);
+                    // a file wins over a directory of the same name
+                    if (path != null && !found.containsKey(key)) {
+                        long lastModified = prefixObject.getMetadata().getLastModified() == null
+                                ? System.currentTimeMillis()
+                                : OBSCommonUtils.dateToLong(prefixObject.getMetadata().getLastModified());
+                        found.put(key, new OBSFileStatus(path, lastModified, lastModified, owner.getShortUserName()));
+                    }
+                }
+                if (!objects.isTruncated()) {
+                    break;
+                }
+                String nextMarker = objects.getNextMarker();
+                if (nextMarker == null) {
+                    objects = OBSCommonUtils.continueListObjects(owner, objects);
+                    continue;
+                }
+                String next = nextWantedKey(wanted, prefix.length(), nextMarker);
+                if (next == null) {
+                    break;
+                }
+                // past the file entry of a key, only its directory entry is left
+                String skipTo = OBSCommonUtils.markerBefore(next.compareTo(nextMarker) <= 0 ? next + "/" : next);
+                if (skipTo.compareTo(nextMarker) > 0) {
+                    request.setMarker(skipTo);
+                    objects = OBSCommonUtils.listObjects(owner, request);
+                } else {
+                    objects = OBSCommonUtils.continueListObjects(owner, objects);
+                }
+            }
+        } catch (IOException | ObsException e) {
+            IOException failure = e instanceof ObsException
+                    ? OBSCommonUtils.translateException("getFileStatuses", parent, (ObsException) e)
+                    : (IOException) e;
+            for (int index : indexes) {
+                results[index] = OBSFileStatusResult.failed(inputs[index], failure);
+            }
+            return;
+        }
+
+        for (int index : indexes) {
+            Path path = OBSCommonUtils.qualify(owner, inputs[index]);
+            FileStatus status = found.get(OBSCommonUtils.pathToKey(owner, path));
+            if (status != null) {
+                owner.cacheFileStatus(status, cacheGeneration);
+                results[index] = OBSFileStatusResult.found(inputs[index], status);
+            } else {
+                results[index] = OBSFileStatusResult.failed(inputs[index],
+                        new FileNotFoundException("No such file or directory: " + path));
+            }
+        }
+    }
+
+    /**
+     * Return the smallest wanted key whose file or directory entry a listing
+     * continuing after the given position may still return: a key after the
+     * position, or a key the position starts with whose directory entry
+     * {@code key + "/"} sorts after the position.
+     *
+     * @param wanted       wanted keys
+     * @param prefixLength length of the listed prefix
+     * @param position     position of the listing
+     * @return the key, or null if the listing is past all the keys
+     */
+    private static String nextWantedKey(final TreeMap<String, Path> wanted, final int prefixLength,
+                                        final String position) {
+        for (int end = prefixLength + 1; end <= position.length(); end++) {
+            String key = position.substring(0, end);
+            if (wanted.containsKey(key) && (key + "/").compareTo(position) > 0) {
+                return key;
+            }
+        }
+        return wanted.higherKey(position);
+    }
+}
@@ -18,8 +18,17 @@ import org.slf4j.LoggerFactory;
 import java.io.*;
 import java.net.URI;
 import java.util.*;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Common utils for {@link OBSFileSystem}.
@@ -81,6 +90,22 @@ public final class OBSCommonUtils {
      * Max number of listing keys for checking folder empty.
      */
     static final int BYTE_TO_INT_MASK = 0xFF;
+    /**
+     * Highest code point, sorting after any character of a key.
+     */
+    static final String MAX_CHAR = new String(Character.toChars(Character.MAX_CODE_POINT));
+    /**
+     * Kind of a listing entry which is a file.
+     */
+    static final byte FILE_ENTRY = 0;
+    /**
+     * Kind of a listing entry which is a directory marker object.
+     */
+    static final byte DIRECTORY_MARKER_ENTRY = 1;
+    /**
+     * Kind of a listing entry which is a common prefix.
+     */
+    static final byte COMMON_PREFIX_ENTRY = 2;
     /**
      * Class logger.
      */
@@ -267,6 +292,27 @@ public final class OBSCommonUtils {
         }
     }
 
+    /**
+     * Return a listing marker sorting just before the given key, so that a
+     * listing from the marker starts with the key, unless keys follow the
+     * marker with the highest code point.
+     *
+     * @param key a non empty key
+     * @return the marker
+     */
+    static String markerBefore(final String key) {
+        int last = key.codePointBefore(key.length());
+        String head = key.substring(0, key.length() - Character.charCount(last));
+        if (last == 0) {
+            return head;
+        }
+        int previous = last - 1;
+        if (previous >= Character.MIN_SURROGATE && previous <= Character.MAX_SURROGATE) {
+            previous = Character.MIN_SURROGATE - 1;
+        }
+        return head + new String(Character.toChars(previous)) + MAX_CHAR;
+    }
+
     /**
      * Convert a path back to a key.
      *
@@ -655,10 +701,137 @@ public final class OBSCommonUtils {
      */
     static FileStatus[] innerListStatus(final OBSFileSystem owner, final Path f, final boolean recursive)
             throws FileNotFoundException, IOException, ObsException {
+        RemoteIterator<FileStatus> files = innerListStatusIterator(owner, f, recursive);
+        // sized for the first page, the only one fetched so far
+        List<FileStatus> result = new ArrayList<>(files instanceof OBSListing.FileStatusListingIterator
+                ? ((OBSListing.FileStatusListingIterator) files).getBatchSize()
+                : 1);
+        while (files.hasNext()) {
+            result.add(files.next());
+        }
+        return result.toArray(new FileStatus[result.size()]);
+    }
+
+    /**
+     * List the statuses of the files/directories in many paths, at most
+     * {@link OBSConstants#LIST_PARALLEL_FACTOR} paths at a time on the list
+     * pool. A path is listed without looking up its status first; only a
+     * path whose listing is empty is looked up, to tell an empty directory
+     * from a file or a missing path.
+     *
+     * @param owner the owner OBSFileSystem instance
+     * @param paths the paths
+     * @return the outcome of every distinct path, in input order: the
+     * statuses {@link #innerListStatus(OBSFileSystem, Path, boolean)} would
+     * return, or the failure it would throw
+     * @throws IOException if interrupted
+     */
+    static Map<Path, OBSListStatusResult> innerListStatuses(final OBSFileSystem owner,
+                                                            final Collection<Path> paths) throws IOException {
+        Map<Path, OBSListStatusResult> result = new LinkedHashMap<>();
+        CompletionService<FileStatus[]> completionService = new ExecutorCompletionService<>(
+                owner.getBoundedListThreadPool());
+        Deque<Path> pending = new ArrayDeque<>(new LinkedHashSet<>(paths));
+        Map<Future<FileStatus[]>, Path> inFlight = new HashMap<>();
+        for (Path path : pending) {
+            result.put(path, null);
+        }
+        try {
+            while (!pending.isEmpty() || !inFlight.isEmpty()) {
+                while (!pending.isEmpty() && inFlight.size() < owner.getListParallelFactor()) {
+                    Path path = pending.poll();
+                    try {
+                        inFlight.put(completionService.submit(() -> listDirectory(owner, path)), path);
+                    } catch (RejectedExecutionException e) {
+                        result.put(path, listDirectoryResult(owner, path));
+                    }
+                }
+                if (inFlight.isEmpty()) {
+                    continue;
+                }
+                Future<FileStatus[]> future = completionService.take();
+                Path path = inFlight.remove(future);
+                try {
+                    result.put(path, OBSListStatusResult.listed(path, future.get()));
+                } catch (ExecutionException e) {
+                    result.put(path, OBSListStatusResult.failed(path,
+                            extractException("listStatuses", path.toString(), e)));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while listing " + result.size() + " paths");
+        } finally {
+            for (Future<FileStatus[]> future : inFlight.keySet()) {
+                future.cancel(true);
+            }
+        }
+        LOG.debug("Listed {} paths", result.size());
+        return result;
+    }
+
+    private static OBSListStatusResult listDirectoryResult(final OBSFileSystem owner, final Path f)
+            throws InterruptedIOException {
+        try {
+            return OBSListStatusResult.listed(f, listDirectory(owner, f));
+        } catch (InterruptedIOException e) {
+            throw e;
+        } catch (IOException e) {
+            return OBSListStatusResult.failed(f, e);
+        } catch (ObsException e) {
+            return OBSListStatusResult.failed(f, translateException("listStatuses", f, e));
+        }
+    }
+
+    /**
+     * List one path of {@link #innerListStatuses(OBSFileSystem, Collection)},
+     * without prefetching, as it runs on the list pool.
+     */
+    private static FileStatus[] listDirectory(final OBSFileSystem owner, final Path f) throws IOException {
+        Path path = qualify(owner, f);
+        String key = maybeAddTrailingSlash(pathToKey(owner, path));
+        ListObjectsRequest request = createListObjectsRequest(owner, key, "/");
+        RemoteIterator<FileStatus> files = owner.getObsListing()
+                .createFileStatusListingIterator(path, request, OBSListing.ACCEPT_ALL,
+                        new OBSListing.AcceptAllButSelfAndS3nDirs(path), false);
+        List<FileStatus> statuses = new ArrayList<>();
+        while (files.hasNext()) {
+            statuses.add(files.next());
+        }
+        if (!statuses.isEmpty()) {
+            return statuses.toArray(new FileStatus[statuses.size()]);
+        }
+
+        // an empty directory, a file or nothing
+        final FileStatus fileStatus;
+        try {
+            fileStatus = innerGetFileStatusWithRetry(owner, path);
+        } catch (FileConflictException e) {
+            throw new AccessControlException(e);
+        }
+        return fileStatus.isDirectory() ? new FileStatus[0] : new FileStatus[] {fileStatus};
+    }
+
+    /**
+     * List the statuses of the files/directories in the given path if the path
+     * is a directory, page by page: only the pages being consumed and
+     * prefetched are held in memory.
+     *
+     * @param owner     the owner OBSFileSystem instance
+     * @param f         given path
+     * @param recursive whether to list the whole subtree
+     * @return an iterator over the statuses; a single status if the path is
+     * a file
+     * @throws FileNotFoundException when the path does not exist
+     * @throws IOException           due to an IO problem.
+     * @throws ObsException          on failures inside the OBS SDK
+     */
+    static RemoteIterator<FileStatus> innerListStatusIterator(final OBSFileSystem owner, final Path f,
+                                                              final boolean recursive)
+            throws FileNotFoundException, IOException, ObsException {
         Path path = qualify(owner, f);
         String key = pathToKey(owner, path);
 
-        List<FileStatus> result;
         final FileStatus fileStatus;
         try {
             fileStatus = innerGetFileStatusWithRetry(owner, path);
@@ -672,20 +845,12 @@ public final class OBSCommonUtils {
             ListObjectsRequest request = createListObjectsRequest(owner, key, delimiter);
             LOG.debug("listStatus: doing listObjects for directory {} - recursive {}", f, recursive);
 
-            OBSListing.FileStatusListingIterator files = owner.getObsListing()
+            return owner.getObsListing()
                     .createFileStatusListingIterator(path, request, OBSListing.ACCEPT_ALL,
                             new OBSListing.AcceptAllButSelfAndS3nDirs(path));
-            result = new ArrayList<>(files.getBatchSize());
-            while (files.hasNext()) {
-                result.add(files.next());
-            }
-
-            return result.toArray(new FileStatus[0]);
         } else {
             LOG.debug("Adding: rd (not a dir): {}", path);
-            FileStatus[] stats = new FileStatus[1];
-            stats[0] = fileStatus;
-            return stats;
+            return new OBSListing.SingleStatusRemoteIterator<>(fileStatus);
         }
     }
 
@@ -802,7 +967,8 @@ public final class OBSCommonUtils {
 
     /**
      * Initiate a {@code listObjects} operation, incrementing metrics in the
-     * process.
+     * process. The listing may be served from a listing manifest, so rename,
+     * delete and emptiness checks use {@link #listBucketObjects} instead.
      *
      * @param owner   the owner OBSFileSystem instance
      * @param request request to initiate
@@ -810,10 +976,35 @@ public final class OBSCommonUtils {
      * @throws IOException on any failure to list objects
      */
     static ObjectListing listObjects(final OBSFileSystem owner, final ListObjectsRequest request) throws IOException {
+        OBSListingManifest manifest = OBSListingManifest.find(owner, request);
+        if (manifest != null) {
+            return OBSManifestListing.listObjects(manifest, request);
+        }
+        return listBucketObjects(owner, request);
+    }
+
+    /**
+     * List objects from the bucket, never from a listing manifest.
+     *
+     * @param owner   the owner OBSFileSystem instance
+     * @param request the listing request
+     * @return the first page
+     * @throws IOException on any failure to list objects
+     */
+    static ObjectListing listBucketObjects(final OBSFileSystem owner, final ListObjectsRequest request)
+            throws IOException {
         if (request.getDelimiter() == null && request.getMarker() == null && owner.isFsBucket()
                 && owner.isObsClientDFSListEnable()) {
             return OBSFsDFSListing.fsDFSListObjects(owner, request);
         }
+        if (request.getDelimiter() == null && request.getMarker() == null && !owner.isFsBucket()
+                && owner.getObjectListShards() > 1) {
+            return OBSShardedListing.listObjects(owner, request);
+        }
+        if (request.getDelimiter() == null && request.getMarker() == null && !owner.isFsBucket()
+                && owner.isObjectParallelListEnable()) {
+            return OBSParallelTreeListing.listObjects(owner, request);
+        }
 
         return commonListObjects(owner, request);
     }
@@ -854,6 +1045,47 @@ public final class OBSCommonUtils {
         return owner.getObsClient().listObjects(request);
     }
 
+    /**
+     * Submit a listing to the list pool; if the pool rejects it, the listing
+     * is left to {@link #awaitListing(Future, String)}.
+     *
+     * @param owner   the owner OBSFileSystem instance
+     * @param request request to list
+     * @return the future of the listing
+     */
+    static Future<ObjectListing> submitListing(final OBSFileSystem owner, final ListObjectsRequest request) {
+        try {
+            return owner.getBoundedListThreadPool().submit(() -> commonListObjects(owner, request));
+        } catch (RejectedExecutionException e) {
+            LOG.debug("List pool is full, listing {} when awaited", request.getPrefix());
+            return new FutureTask<>(() -> commonListObjects(owner, request));
+        }
+    }
+
+    /**
+     * Wait for a listing from {@link #submitListing(OBSFileSystem,
+     * ListObjectsRequest)}. A listing no pool thread has started yet is run by
+     * the caller, so that a caller on the list pool cannot starve.
+     *
+     * @param future the future of the listing
+     * @param prefix prefix listed
+     * @return the listing
+     * @throws IOException on any failure to list objects
+     */
+    static ObjectListing awaitListing(final Future<ObjectListing> future, final String prefix) throws IOException {
+        if (future instanceof RunnableFuture) {
+            ((RunnableFuture<ObjectListing>) future).run();
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while listing prefix " + prefix);
+        } catch (ExecutionException e) {
+            throw extractException("listObjects", prefix, e);
+        }
+    }
+
     /**
      * List the next set of objects.
      *
@@ -864,6 +1096,15 @@ public final class OBSCommonUtils {
      */
     static ObjectListing continueListObjects(final OBSFileSystem owner, final ObjectListing objects)
             throws IOException {
+        if (objects instanceof OBSManifestListing) {
+            return OBSManifestListing.continueListObjects((OBSManifestListing) objects);
+        }
+        if (objects instanceof OBSShardedListing) {
+            return OBSShardedListing.continueListObjects((OBSShardedListing) objects);
+        }
+        if (objects instanceof OBSParallelTreeListing) {
+            return OBSParallelTreeListing.continueListObjects((OBSParallelTreeListing) objects);
+        }
         if (objects.getDelimiter() == null && owner.isFsBucket() && owner.isObsClientDFSListEnable()) {
             return OBSFsDFSListing.fsDFSContinueListObjects(owner, (OBSFsDFSListing) objects);
         }
@@ -1052,13 +1293,12 @@ public final class OBSCommonUtils {
      *
      * @param owner  the owner OBSFileSystem instance
      * @param status file status
-     * @return a located status with block locations set up from this FS.
+     * @return a located status, whose block locations are computed on first access
      * @throws IOException IO Problems.
      */
     static LocatedFileStatus toLocatedFileStatus(final OBSFileSystem owner, final FileStatus status)
             throws IOException {
-        return new LocatedFileStatus(status,
-                status.isFile() ? owner.getFileBlockLocations(status, 0, status.getLen()) : null);
+        return new OBSLocatedFileStatus(status, owner.getBlockLocations());
     }
 
     /**
@@ -1204,15 +1444,62 @@ public final class OBSCommonUtils {
      */
     static OBSFileStatus createFileStatus(final Path keyPath, final ObsObject summary, final long blockSize,
                                           final String owner) {
-        if (objectRepresentsDirectory(summary.getObjectKey(), summary.getMetadata().getContentLength())) {
-            long lastModified = summary.getMetadata().getLastModified() == null
-                    ? System.currentTimeMillis()
-                    : OBSCommonUtils.dateToLong(summary.getMetadata().getLastModified());
-            return new OBSFileStatus(keyPath, lastModified, owner);
-        } else {
-            return new OBSFileStatus(summary.getMetadata().getContentLength(),
-                    dateToLong(summary.getMetadata().getLastModified()), keyPath, blockSize, owner);
+        long length = summary.getMetadata().getContentLength();
+        byte kind = objectEntryKind(summary.getObjectKey(), length);
+        return createFileStatus(keyPath, length, entryModificationTime(kind, summary.getMetadata().getLastModified()),
+                kind, blockSize, owner, summary.getMetadata().getEtag());
+    }
+
+    /**
+     * Create a files status instance from the fields of a listing entry.
+     *
+     * @param keyPath          path to entry
+     * @param length           length of the entry; ignored for directories
+     * @param modificationTime modification time, from {@link
+     *                         #entryModificationTime(byte, Date)}
+     * @param kind             kind of the entry, such as {@link #FILE_ENTRY}
+     * @param blockSize        block size to declare.
+     * @param owner            owner of the file
+     * @param etag             ETag of a file, or null
+     * @return a status entry
+     */
+    static OBSFileStatus createFileStatus(final Path keyPath, final long length, final long modificationTime,
+                                          final byte kind, final long blockSize, final String owner,
+                                          final String etag) {
+        switch (kind) {
+            case FILE_ENTRY:
+                return new OBSFileStatus(length, modificationTime, keyPath, blockSize, owner, etag);
+            case DIRECTORY_MARKER_ENTRY:
+                return new OBSFileStatus(keyPath, modificationTime, owner);
+            default:
+                return new OBSFileStatus(keyPath, modificationTime, modificationTime, owner);
+        }
+    }
+
+    /**
+     * Return the kind of a listed object.
+     *
+     * @param key    object key
+     * @param length object length
+     * @return {@link #DIRECTORY_MARKER_ENTRY} or {@link #FILE_ENTRY}
+     */
+    static byte objectEntryKind(final String key, final long length) {
+        return objectRepresentsDirectory(key, length) ? DIRECTORY_MARKER_ENTRY : FILE_ENTRY;
+    }
+
+    /**
+     * Return the modification time of a listing entry. A directory listed
+     * without one gets the current time.
+     *
+     * @param kind         kind of the entry
+     * @param lastModified last modified date from OBS, or null
+     * @return the modification time in milliseconds
+     */
+    static long entryModificationTime(final byte kind, final Date lastModified) {
+        if (kind != FILE_ENTRY && lastModified == null) {
+            return System.currentTimeMillis();
         }
+        return dateToLong(lastModified);
     }
 
     /**
@@ -1604,12 +1891,29 @@ public final class OBSCommonUtils {
      */
     static FileStatus innerGetFileStatusWithRetry(final OBSFileSystem owner, final Path f)
             throws FileNotFoundException, IOException {
+        return innerGetFileStatusWithRetry(owner, f, OBSStatusProbe.ALL);
+    }
+
+    /**
+     * Return a file status object that represents the path, found with the
+     * given probes on object buckets.
+     *
+     * @param owner  the owner OBSFileSystem instance
+     * @param f      the path we want information from
+     * @param probes the probes to make
+     * @return a FileStatus object
+     * @throws FileNotFoundException when no probe finds the path
+     * @throws IOException           on other problems
+     */
+    static FileStatus innerGetFileStatusWithRetry(final OBSFileSystem owner, final Path f,
+                                                  final Set<OBSStatusProbe> probes)
+            throws FileNotFoundException, IOException {
         long delayMs;
         int retryTime = 0;
         long startTime = System.currentTimeMillis();
         while (System.currentTimeMillis() - startTime <= MAX_TIME_IN_MILLISECONDS_TO_RETRY) {
             try {
-                return owner.innerGetFileStatus(f);
+                return owner.innerGetFileStatus(f, probes);
             } catch (OBSIOException e) {
                 OBSFileSystem.LOG.debug("Failed to get file status for [{}], retry time [{}], " + "exception [{}]", f,
                         retryTime, e);
@@ -1624,7 +1928,7 @@ public final class OBSCommonUtils {
             }
         }
 
-        return owner.innerGetFileStatus(f);
+        return owner.innerGetFileStatus(f, probes);
     }
 
     public static long getSleepTimeInMs(final int retryTime) {
@@ -1647,4 +1951,23 @@ public final class OBSCommonUtils {
                     record.getOpName(), costTime);
         }
     }
+
+    /**
+     * Create the pool running the requests of an output committer, sized by
+     * {@link OBSConstants#COMMITTER_THREADS}.
+     *
+     * @param owner the filesystem
+     * @param name  thread name prefix
+     * @return the pool, to be shut down by the caller
+     */
+    static ThreadPoolExecutor newCommitThreadPool(final OBSFileSystem owner, final String name) {
+        int threads = intOption(owner.getConf(), OBSConstants.COMMITTER_THREADS,
+                OBSConstants.DEFAULT_COMMITTER_THREADS, 1);
+        long keepAliveTime = longOption(owner.getConf(), OBSConstants.KEEPALIVE_TIME,
+                OBSConstants.DEFAULT_KEEPALIVE_TIME, 0);
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, keepAliveTime, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), BlockingThreadPoolExecutorService.newDaemonThreadFactory(name));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
 }
@@ -335,6 +335,46 @@ public final class OBSConstants {
      */
     @InterfaceStability.Unstable
     static final int DEFAULT_FAST_UPLOAD_ACTIVE_BLOCKS = 4;
+    /**
+     * Stream each multipart part to OBS while its block is still being
+     * written, instead of uploading the block once it is full. Only a bounded
+     * pipe of {@link #FAST_UPLOAD_STREAMING_PIPE_SIZE} bytes is held in memory
+     * per active part, and an upload part request holds one of the {@link
+     * #FAST_UPLOAD_STREAMING_THREADS} streaming threads for as long as its
+     * block is being filled; a block which finds none free is buffered on
+     * disk and uploaded once full. The data of a streamed part is also
+     * written to a disk block, from which the part is uploaded again if
+     * streaming it fails or its block ends short of the part size. Value:
+     * {@value}
+     */
+    @InterfaceStability.Unstable
+    static final String FAST_UPLOAD_STREAMING = "fs.obs.fast.upload.streaming";
+    /**
+     * Default value of {@link #FAST_UPLOAD_STREAMING}.
+     */
+    static final boolean DEFAULT_FAST_UPLOAD_STREAMING = false;
+    /**
+     * Size of the in-memory pipe between the writer and the part upload when
+     * {@link #FAST_UPLOAD_STREAMING} is enabled. Value: {@value}
+     */
+    @InterfaceStability.Unstable
+    static final String FAST_UPLOAD_STREAMING_PIPE_SIZE = "fs.obs.fast.upload.streaming.pipe.size";
+    /**
+     * Default value of {@link #FAST_UPLOAD_STREAMING_PIPE_SIZE}.
+     */
+    static final int DEFAULT_FAST_UPLOAD_STREAMING_PIPE_SIZE = 4 * 1024 * 1024;
+    /**
+     * Maximum number of parts streamed at a time by all the output streams of
+     * a filesystem when {@link #FAST_UPLOAD_STREAMING} is enabled. Streamed
+     * parts have their own threads, as they wait for their writers. Value:
+     * {@value}
+     */
+    @InterfaceStability.Unstable
+    static final String FAST_UPLOAD_STREAMING_THREADS = "fs.obs.fast.upload.streaming.threads";
+    /**
+     * Default value of {@link #FAST_UPLOAD_STREAMING_THREADS}.
+     */
+    static final int DEFAULT_FAST_UPLOAD_STREAMING_THREADS = 8;
     /**
      * Canned acl options: Private | PublicRead | PublicReadWrite |
      * AuthenticatedRead | LogDeliveryWrite | BucketOwnerRead |
@@ -545,6 +585,67 @@ public final class OBSConstants {
      * Default value of {@link #LIST_PARALLEL_FACTOR}.
      */
     static final int DEFAULT_LIST_PARALLEL_FACTOR = 30;
+    /**
+     * Number of listing pages fetched ahead of the consumer of an object
+     * listing; 0 fetches every page on demand.
+     */
+    static final String LIST_PREFETCH_DEPTH = "fs.obs.list.prefetch.depth";
+    /**
+     * Default value of {@link #LIST_PREFETCH_DEPTH}.
+     */
+    static final int DEFAULT_LIST_PREFETCH_DEPTH = 1;
+    /**
+     * Enable the parallel recursive listing of object buckets, walking the
+     * one-level listings of every directory prefix on the list pool instead
+     * of one flat listing.
+     */
+    static final String OBJECT_PARALLEL_LIST_ENABLE = "fs.obs.object.parallel.list.enable";
+    /**
+     * Default value of {@link #OBJECT_PARALLEL_LIST_ENABLE}.
+     */
+    static final boolean DEFAULT_OBJECT_PARALLEL_LIST_ENABLE = false;
+    /**
+     * Number of key ranges a recursive listing of an object bucket is split
+     * into and listed concurrently, for large prefixes with little directory
+     * structure; 0 or 1 disables the split.
+     */
+    static final String OBJECT_LIST_SHARDS = "fs.obs.object.list.shards";
+    /**
+     * Default value of {@link #OBJECT_LIST_SHARDS}.
+     */
+    static final int DEFAULT_OBJECT_LIST_SHARDS = 0;
+    /**
+     * Maximum number of pages of a key range listed ahead of the consumer of
+     * a split listing.
+     */
+    static final String OBJECT_LIST_SHARD_PAGES_AHEAD = "fs.obs.object.list.shard.pages.ahead";
+    /**
+     * Default value of {@link #OBJECT_LIST_SHARD_PAGES_AHEAD}.
+     */
+    static final int DEFAULT_OBJECT_LIST_SHARD_PAGES_AHEAD = 4;
+    /**
+     * Hosts the synthetic block locations of files are spread over, one block
+     * per host in turn; empty for one "localhost" location per file.
+     */
+    static final String BLOCK_LOCATION_HOSTS = "fs.obs.block.location.hosts";
+    /**
+     * Listing manifests, written by {@link
+     * OBSFileSystem#writeListingManifest(org.apache.hadoop.fs.Path,
+     * org.apache.hadoop.fs.Path)}, to serve the listings under their prefixes
+     * from while they are valid.
+     */
+    static final String LISTING_MANIFESTS = "fs.obs.listing.manifests";
+    /**
+     * Time a listing manifest is valid for after it was written, in
+     * milliseconds; 0 for no expiry. Once expired, a manifest is only used on
+     * posix buckets, for the directories whose modification times have not
+     * changed.
+     */
+    static final String LISTING_MANIFEST_MAX_AGE = "fs.obs.listing.manifest.max.age";
+    /**
+     * Default value of {@link #LISTING_MANIFEST_MAX_AGE}: no expiry.
+     */
+    static final long DEFAULT_LISTING_MANIFEST_MAX_AGE = 0;
     /**
      * Switch for the fast delete.
      */
@@ -557,6 +658,16 @@ public final class OBSConstants {
      * Enable obs client dfs list or not.
      */
     static final String OBS_CLIENT_DFS_LIST_ENABLE = "fs.obs.client.dfs.list.enable";
+    /**
+     * Maximum number of entries the obs client dfs list queues beyond the
+     * page being returned; fewer one-level listings run in parallel as the
+     * queue fills.
+     */
+    static final String OBS_CLIENT_DFS_LIST_QUEUE_MAX = "fs.obs.client.dfs.list.queue.max";
+    /**
+     * Default value of {@link #OBS_CLIENT_DFS_LIST_QUEUE_MAX}.
+     */
+    static final int DEFAULT_OBS_CLIENT_DFS_LIST_QUEUE_MAX = 10000;
     /**
      * Default trash : false.
      */
@@ -656,6 +767,218 @@ public final class OBSConstants {
 
     static final String OUTPUT_STREAM_HFLUSH_POLICY_EMPTY = "empty"; // downgrade hflush/hsync to empty func, which means calling hflush/hsync will do nothing
 
+    /**
+     * Group commit the appends of {@link OBSBlockOutputStream#hflush()} and
+     * {@link OBSBlockOutputStream#hsync()} on a posix bucket when the hflush
+     * policy is {@link #OUTPUT_STREAM_HFLUSH_POLICY_SYNC}: calls close together
+     * are combined into one append and each caller still waits for its data
+     * to be acknowledged.
+     */
+    static final String OUTPUT_STREAM_HFLUSH_GROUP_COMMIT = "fs.obs.outputstream.hflush.group.commit";
+
+    /**
+     * Default value of {@link #OUTPUT_STREAM_HFLUSH_GROUP_COMMIT}.
+     */
+    static final boolean DEFAULT_OUTPUT_STREAM_HFLUSH_GROUP_COMMIT = false;
+
+    /**
+     * Time in milliseconds a group commit waits for more flushes before
+     * sending an append; 0 only combines the flushes made while the previous
+     * append was in flight.
+     */
+    static final String OUTPUT_STREAM_HFLUSH_GROUP_COMMIT_WINDOW = "fs.obs.outputstream.hflush.group.commit.window";
+
+    /**
+     * Default value of {@link #OUTPUT_STREAM_HFLUSH_GROUP_COMMIT_WINDOW}.
+     */
+    static final long DEFAULT_OUTPUT_STREAM_HFLUSH_GROUP_COMMIT_WINDOW = 2;
+
+    /**
+     * Maximum number of flushed blocks waiting for their group commit before
+     * further flushes block.
+     */
+    static final String OUTPUT_STREAM_HFLUSH_GROUP_COMMIT_DEPTH = "fs.obs.outputstream.hflush.group.commit.depth";
+
+    /**
+     * Default value of {@link #OUTPUT_STREAM_HFLUSH_GROUP_COMMIT_DEPTH}.
+     */
+    static final int DEFAULT_OUTPUT_STREAM_HFLUSH_GROUP_COMMIT_DEPTH = 16;
+
+    /**
+     * Let {@link OBSBlockOutputStream#close()} return once the last block has
+     * been handed off, completing the upload in the background. Completions
+     * are awaited by {@link OBSFileSystem#awaitPendingAsyncCloses()} and on
+     * filesystem close, where failures are reported.
+     */
+    static final String OUTPUT_STREAM_ASYNC_CLOSE = "fs.obs.outputstream.async.close";
+
+    /**
+     * Default value of {@link #OUTPUT_STREAM_ASYNC_CLOSE}.
+     */
+    static final boolean DEFAULT_OUTPUT_STREAM_ASYNC_CLOSE = false;
+
+    /**
+     * Local directory of the journals which let a multipart upload of {@link
+     * OBSBlockOutputStream} be resumed by a writer re-run after a failure. A
+     * journaled upload is kept when its writer is interrupted, and aborted
+     * when its parts cannot be uploaded. Journaling is disabled when empty,
+     * which is the default.
+     */
+    static final String OUTPUT_STREAM_UPLOAD_JOURNAL_DIR = "fs.obs.outputstream.upload.journal.dir";
+
+    /**
+     * Time after its last record, in milliseconds, after which a journaled
+     * upload is no longer resumed: the next writer of the key aborts it and
+     * starts a new one. Journals of keys never written again are left, and
+     * their uploads have to be purged by a bucket lifecycle rule.
+     */
+    static final String OUTPUT_STREAM_UPLOAD_JOURNAL_MAX_AGE = "fs.obs.outputstream.upload.journal.max.age";
+
+    /**
+     * Default value of {@link #OUTPUT_STREAM_UPLOAD_JOURNAL_MAX_AGE}: 7 days.
+     */
+    static final long DEFAULT_OUTPUT_STREAM_UPLOAD_JOURNAL_MAX_AGE = 7 * 24 * 3600 * 1000L;
+
+    /**
+     * Let {@link OBSMagicCommitter} write task output straight to its final
+     * keys: a file created under a {@code __magic} directory of an output
+     * path is uploaded as a multipart upload which is left uncompleted until
+     * the job commits.
+     */
+    static final String MAGIC_COMMITTER_ENABLED = "fs.obs.committer.magic.enabled";
+
+    /**
+     * Default value of {@link #MAGIC_COMMITTER_ENABLED}.
+     */
+    static final boolean DEFAULT_MAGIC_COMMITTER_ENABLED = false;
+
+    /**
+     * Number of threads an OBS output committer uses for the requests of a
+     * job or task commit.
+     */
+    static final String COMMITTER_THREADS = "fs.obs.committer.threads";
+
+    /**
+     * Default value of {@link #COMMITTER_THREADS}.
+     */
+    static final int DEFAULT_COMMITTER_THREADS = 8;
+
+    /**
+     * Size of the ranges {@link OBSFileSystem} downloads concurrently in
+     * {@code copyToLocalFile}; a range is the unit of retry.
+     */
+    static final String COPY_TO_LOCAL_RANGE_SIZE = "fs.obs.copytolocal.range.size";
+
+    /**
+     * Default value of {@link #COPY_TO_LOCAL_RANGE_SIZE}.
+     */
+    static final long DEFAULT_COPY_TO_LOCAL_RANGE_SIZE = 32 * 1024 * 1024;
+
+    /**
+     * Maximum number of files {@link OBSFileSystem} downloads at a time in
+     * {@code copyToLocalFile}; each holds an open local file.
+     */
+    static final String COPY_TO_LOCAL_MAX_FILES = "fs.obs.copytolocal.max.files";
+
+    /**
+     * Default value of {@link #COPY_TO_LOCAL_MAX_FILES}.
+     */
+    static final int DEFAULT_COPY_TO_LOCAL_MAX_FILES = 16;
+
+    /**
+     * Whether {@link OBSFileSystem} caches the statuses of paths, and the
+     * fact that paths are missing.
+     */
+    static final String FILE_STATUS_CACHE_ENABLED = "fs.obs.filestatus.cache.enabled";
+
+    /**
+     * Default value of {@link #FILE_STATUS_CACHE_ENABLED}.
+     */
+    static final boolean DEFAULT_FILE_STATUS_CACHE_ENABLED = false;
+
+    /**
+     * Time to live of a cached status, in milliseconds.
+     */
+    static final String FILE_STATUS_CACHE_TTL = "fs.obs.filestatus.cache.ttl";
+
+    /**
+     * Default value of {@link #FILE_STATUS_CACHE_TTL}.
+     */
+    static final long DEFAULT_FILE_STATUS_CACHE_TTL = 5000;
+
+    /**
+     * Maximum number of cached statuses.
+     */
+    static final String FILE_STATUS_CACHE_MAX_ENTRIES = "fs.obs.filestatus.cache.max.entries";
+
+    /**
+     * Default value of {@link #FILE_STATUS_CACHE_MAX_ENTRIES}.
+     */
+    static final int DEFAULT_FILE_STATUS_CACHE_MAX_ENTRIES = 10000;
+
+    /**
+     * How object buckets probe for the status of a path: {@link
+     * #OBJECT_STATUS_PROBE_SEQUENTIAL}, {@link #OBJECT_STATUS_PROBE_PARALLEL}
+     * or {@link #OBJECT_STATUS_PROBE_LIST}.
+     */
+    static final String OBJECT_STATUS_PROBE = "fs.obs.object.status.probe";
+
+    /**
+     * Make the file, directory marker and listing probes one after another,
+     * stopping at the first which finds the path.
+     */
+    static final String OBJECT_STATUS_PROBE_SEQUENTIAL = "sequential";
+
+    /**
+     * Make the probes in parallel on the list pool.
+     */
+    static final String OBJECT_STATUS_PROBE_PARALLEL = "parallel";
+
+    /**
+     * Classify the path with a single listing of the key as a prefix.
+     */
+    static final String OBJECT_STATUS_PROBE_LIST = "list";
+
+    /**
+     * Default value of {@link #OBJECT_STATUS_PROBE}.
+     */
+    static final String DEFAULT_OBJECT_STATUS_PROBE = OBJECT_STATUS_PROBE_SEQUENTIAL;
+
+    /**
+     * Number of threads looking up statuses in {@code getFileStatuses}.
+     */
+    static final String BULK_STATUS_THREADS = "fs.obs.bulk.status.threads";
+
+    /**
+     * Default value of {@link #BULK_STATUS_THREADS}.
+     */
+    static final int DEFAULT_BULK_STATUS_THREADS = 16;
+
+    /**
+     * Minimum number of paths sharing a parent for {@code getFileStatuses}
+     * to resolve them with one listing of the parent rather than one by one.
+     */
+    static final String BULK_STATUS_LIST_THRESHOLD = "fs.obs.bulk.status.list.threshold";
+
+    /**
+     * Default value of {@link #BULK_STATUS_LIST_THRESHOLD}.
+     */
+    static final int DEFAULT_BULK_STATUS_LIST_THRESHOLD = 2;
+
+    /**
+     * Whether {@link OBSFileSystem#globStatus(org.apache.hadoop.fs.Path)}
+     * expands patterns with listings of their literal prefix matched on the
+     * client, rather than with one listing per directory level. Patterns with
+     * a literal component after their first wildcard still use one listing
+     * per level, as a recursive listing could not skip anything for them.
+     */
+    static final String GLOB_LISTING_ENABLED = "fs.obs.glob.listing.enabled";
+
+    /**
+     * Default value of {@link #GLOB_LISTING_ENABLED}.
+     */
+    static final boolean DEFAULT_GLOB_LISTING_ENABLED = false;
+
     private OBSConstants() {
     }
 }
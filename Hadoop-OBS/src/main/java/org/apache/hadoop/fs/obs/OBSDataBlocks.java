@@ -755,6 +755,404 @@ final class OBSDataBlocks {
         }
     }
 
+    /**
+     * Callback used by a {@link StreamingBlock} to get its part upload started
+     * once the pipe is full and the writer cannot make progress otherwise.
+     */
+    interface StreamingUploadTrigger {
+        /**
+         * Start the upload of the block if a streaming upload thread is free;
+         * implementations are expected to call {@link
+         * StreamingBlock#openPipe()} when they do.
+         *
+         * @param block the block whose pipe is full
+         * @return true if the upload was started, false to keep buffering
+         * @throws IOException on any failure to start the upload
+         */
+        boolean trigger(StreamingBlock block) throws IOException;
+    }
+
+    /**
+     * A block which is uploaded while it is still being written. Data passes
+     * through a fixed in-memory pipe; the part upload reads from the pipe
+     * while the writer fills it, so only the pipe size is held in memory and
+     * the block limit just bounds the part size.
+     *
+     * <p>Until the upload is started the pipe simply buffers. A writer which
+     * fills the pipe before that asks the {@link StreamingUploadTrigger} to
+     * start it; if no streaming upload thread is free, the block spills to a
+     * disk block and is uploaded from it once complete. A block which never
+     * filled its pipe is uploaded from the pipe, with its known size.
+     *
+     * <p>A streamed part is sent with the block limit as its size. The data
+     * of a streamed block is also written to a disk copy, from which the part
+     * is uploaded again if streaming it fails, which is also the case of a
+     * block closed before reaching its limit.
+     */
+    static class StreamingBlock extends DataBlock {
+        /**
+         * Block size limit.
+         */
+        private final int limit;
+
+        /**
+         * Callback starting the upload when the pipe is full.
+         */
+        private final StreamingUploadTrigger uploadTrigger;
+
+        /**
+         * Factory of the disk copies of the block.
+         */
+        private final BlockFactory copyFactory;
+
+        /**
+         * Stream read by the part upload.
+         */
+        private final PipeInputStream inputStream;
+
+        /**
+         * Ring buffer of the pipe; null once the block is closed.
+         */
+        private byte[] pipe;
+
+        /**
+         * Read position in the ring buffer.
+         */
+        private int readPos;
+
+        /**
+         * Number of bytes buffered in the ring buffer.
+         */
+        private int buffered;
+
+        /**
+         * Written bytes count.
+         */
+        private int bytesWritten;
+
+        /**
+         * No more data will be written to the pipe.
+         */
+        private boolean writeClosed;
+
+        /**
+         * The reading side has gone away; writes must fail.
+         */
+        private boolean readClosed;
+
+        /**
+         * The part upload has been handed the pipe.
+         */
+        private boolean uploadStarted;
+
+        /**
+         * The block was closed before reaching the size of its streamed part,
+         * so the part upload must fail.
+         */
+        private boolean truncated;
+
+        /**
+         * The pipe filled up with no streaming thread free, so the data goes
+         * to the disk copy only.
+         */
+        private boolean spilled;
+
+        /**
+         * Disk copy of the data of a streamed or spilled block; null until
+         * the block is streamed or spilled.
+         */
+        private DataBlock diskCopy;
+
+        StreamingBlock(final long index, final int limitSize, final int pipeSize,
+                       final StreamingUploadTrigger trigger, final BlockFactory diskBlockFactory) {
+            super(index);
+            this.limit = limitSize;
+            this.pipe = new byte[Math.min(pipeSize, limitSize)];
+            this.uploadTrigger = trigger;
+            this.copyFactory = diskBlockFactory;
+            this.inputStream = new PipeInputStream();
+        }
+
+        @Override
+        synchronized int dataSize() {
+            return bytesWritten;
+        }
+
+        @Override
+        boolean hasCapacity(final long bytes) {
+            return dataSize() + bytes <= limit;
+        }
+
+        @Override
+        int remainingCapacity() {
+            return limit - dataSize();
+        }
+
+        /**
+         * Whether the part upload has been handed the pipe.
+         *
+         * @return true if the upload is running
+         */
+        synchronized boolean isUploadStarted() {
+            return uploadStarted;
+        }
+
+        /**
+         * Return the size of the part a streamed block is uploaded as.
+         *
+         * @return the block limit
+         */
+        int getPartSize() {
+            return limit;
+        }
+
+        /**
+         * Hand the pipe to a part upload which will run while the block is
+         * still being written. Only valid in the state {@code Writing}.
+         *
+         * @return the stream to upload from; it ends once {@link
+         * #startUpload()} has been called and the pipe is drained
+         * @throws IOException on failure to create the disk copy
+         */
+        InputStream openPipe() throws IOException {
+            DataBlock copy = copyFactory.create(getIndex(), limit);
+            try {
+                synchronized (this) {
+                    verifyState(DestState.Writing);
+                    Preconditions.checkState(!uploadStarted && !spilled, "Upload of block %s already started",
+                            getIndex());
+                    LOG.debug("Start streaming upload of datablock[{}]", getIndex());
+                    // nothing has been read yet, so the pipe holds all the data
+                    copyPipe(copy);
+                    diskCopy = copy;
+                    uploadStarted = true;
+                    return inputStream;
+                }
+            } catch (IOException | RuntimeException e) {
+                OBSCommonUtils.closeAll(copy);
+                throw e;
+            }
+        }
+
+        /**
+         * Return the disk copy of a streamed block, once all its data is
+         * written.
+         *
+         * @return the copy, holding all the data of the block
+         */
+        synchronized DataBlock getRetryCopy() {
+            return diskCopy;
+        }
+
+        /**
+         * Discard the rest of the pipe after a failed part upload, until the
+         * writer has finished the block into its copy.
+         *
+         * @throws IOException if the wait is interrupted
+         */
+        synchronized void drainPipe() throws IOException {
+            while (!writeClosed && !readClosed) {
+                buffered = 0;
+                readPos = 0;
+                notifyAll();
+                waitForPipe();
+            }
+            buffered = 0;
+            LOG.trace("Discarded streamed data of block {}", getIndex());
+        }
+
+        private void copyPipe(final DataBlock copy) throws IOException {
+            int first = Math.min(buffered, pipe.length - readPos);
+            copy.write(pipe, readPos, first);
+            copy.write(pipe, 0, buffered - first);
+        }
+
+        @Override
+        int write(final byte[] b, final int offset, final int len) throws IOException {
+            super.write(b, offset, len);
+            int written = Math.min(remainingCapacity(), len);
+            int pos = offset;
+            int remaining = written;
+            while (remaining > 0) {
+                if (pipeFullBeforeUpload()) {
+                    if (uploadTrigger.trigger(this)) {
+                        Preconditions.checkState(isUploadStarted(), "Upload of block %s was not started",
+                                getIndex());
+                    } else {
+                        spill();
+                    }
+                }
+                DataBlock copy;
+                int n;
+                synchronized (this) {
+                    if (spilled) {
+                        n = remaining;
+                        bytesWritten += n;
+                        diskCopy.write(b, pos, n);
+                        break;
+                    }
+                    while (uploadStarted && !readClosed && buffered == pipe.length) {
+                        waitForPipe();
+                    }
+                    if (readClosed) {
+                        throw new IOException("Upload of block " + getIndex() + " has been closed");
+                    }
+                    if (buffered == pipe.length) {
+                        continue;
+                    }
+                    int writePos = (readPos + buffered) % pipe.length;
+                    n = Math.min(remaining, Math.min(pipe.length - buffered, pipe.length - writePos));
+                    System.arraycopy(b, pos, pipe, writePos, n);
+                    buffered += n;
+                    bytesWritten += n;
+                    copy = diskCopy;
+                    notifyAll();
+                }
+                if (copy != null) {
+                    copy.write(b, pos, n);
+                }
+                pos += n;
+                remaining -= n;
+            }
+            return written;
+        }
+
+        private synchronized boolean pipeFullBeforeUpload() {
+            return !uploadStarted && !spilled && !readClosed && buffered == pipe.length;
+        }
+
+        /**
+         * Buffer the block on disk, as its upload could not be started.
+         *
+         * @throws IOException on failure to create or write the disk block
+         */
+        private void spill() throws IOException {
+            DataBlock copy = copyFactory.create(getIndex(), limit);
+            try {
+                synchronized (this) {
+                    copyPipe(copy);
+                    diskCopy = copy;
+                    spilled = true;
+                    buffered = 0;
+                    readPos = 0;
+                }
+            } catch (IOException | RuntimeException e) {
+                OBSCommonUtils.closeAll(copy);
+                throw e;
+            }
+            LOG.debug("No streaming upload thread for block {}, buffering it on disk", getIndex());
+        }
+
+        private void waitForPipe() throws InterruptedIOException {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting on pipe of block " + getIndex());
+            }
+        }
+
+        /**
+         * Close the writing side of the pipe; the upload reading from it ends
+         * once the buffered data is drained, or fails if the block is shorter
+         * than its streamed part.
+         *
+         * @return the stream to upload from, or the file of a spilled block
+         * @throws IOException trouble
+         */
+        @Override
+        Object startUpload() throws IOException {
+            super.startUpload();
+            DataBlock spill;
+            synchronized (this) {
+                writeClosed = true;
+                truncated = uploadStarted && bytesWritten < limit;
+                spill = spilled ? diskCopy : null;
+                notifyAll();
+            }
+            return spill == null ? inputStream : spill.startUpload();
+        }
+
+        @Override
+        protected void innerClose() {
+            DataBlock copy;
+            synchronized (this) {
+                writeClosed = true;
+                readClosed = true;
+                copy = diskCopy;
+                notifyAll();
+            }
+            OBSCommonUtils.closeAll(copy);
+        }
+
+        @Override
+        public String toString() {
+            return "StreamingBlock{" + "index=" + getIndex() + ", state=" + getState() + ", limit=" + limit
+                    + ", dataSize=" + dataSize() + ", uploadStarted=" + isUploadStarted() + '}';
+        }
+
+        /**
+         * Reading side of the pipe.
+         */
+        class PipeInputStream extends InputStream {
+            @Override
+            public int read() throws IOException {
+                byte[] single = new byte[1];
+                int n = read(single, 0, 1);
+                return n < 0 ? -1 : single[0] & OBSCommonUtils.BYTE_TO_INT_MASK;
+            }
+
+            @Override
+            public int read(final byte[] b, final int offset, final int length) throws IOException {
+                Preconditions.checkArgument(b != null, "Null buffer");
+                if (offset < 0 || length < 0 || b.length - offset < length) {
+                    throw new IndexOutOfBoundsException();
+                }
+                if (length == 0) {
+                    return 0;
+                }
+                synchronized (StreamingBlock.this) {
+                    while (buffered == 0 && !writeClosed && !readClosed) {
+                        waitForPipe();
+                    }
+                    if (readClosed) {
+                        throw new IOException(FSExceptionMessages.STREAM_IS_CLOSED);
+                    }
+                    if (buffered == 0 && truncated) {
+                        throw new EOFException("Block " + getIndex() + " ended at " + bytesWritten
+                                + " bytes, before the size of its part");
+                    }
+                    if (buffered == 0) {
+                        return -1;
+                    }
+                    int n = Math.min(length, Math.min(buffered, pipe.length - readPos));
+                    System.arraycopy(pipe, readPos, b, offset, n);
+                    readPos = (readPos + n) % pipe.length;
+                    buffered -= n;
+                    StreamingBlock.this.notifyAll();
+                    return n;
+                }
+            }
+
+            @Override
+            public int available() {
+                synchronized (StreamingBlock.this) {
+                    return buffered;
+                }
+            }
+
+            /**
+             * Leave the pipe open: a part upload which failed half way drains
+             * it with {@link #drainPipe()}, and the block is closed once the
+             * part upload is done with it.
+             */
+            @Override
+            public void close() {
+                LOG.trace("Part upload closed the pipe of block {}", getIndex());
+            }
+        }
+    }
+
     /**
      * Buffer blocks to disk.
      */
@@ -23,6 +23,8 @@ import org.apache.hadoop.classification.InterfaceStability;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.Path;
 
+import java.io.IOException;
+
 /**
  * File status for an OBS file.
  *
@@ -31,6 +33,13 @@ import org.apache.hadoop.fs.Path;
 @InterfaceAudience.Private
 @InterfaceStability.Evolving
 class OBSFileStatus extends FileStatus {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * ETag of the object of a file, if known.
+     */
+    private final String etag;
+
     /**
      * Create a directory status.
      *
@@ -39,6 +48,7 @@ class OBSFileStatus extends FileStatus {
      */
     OBSFileStatus(final Path path, final String owner) {
         super(0, true, 1, 0, 0, path);
+        this.etag = null;
         setOwner(owner);
         setGroup(owner);
     }
@@ -52,6 +62,7 @@ class OBSFileStatus extends FileStatus {
      */
     OBSFileStatus(final Path path, final long modificationTime, final String owner) {
         super(0, true, 1, 0, modificationTime, path);
+        this.etag = null;
         setOwner(owner);
         setGroup(owner);
     }
@@ -66,6 +77,7 @@ class OBSFileStatus extends FileStatus {
      */
     OBSFileStatus(final Path path, final long modificationTime, final long accessTime, final String owner) {
         super(0, true, 1, 0, modificationTime, accessTime, null, owner, owner, path);
+        this.etag = null;
     }
 
     /**
@@ -79,8 +91,54 @@ class OBSFileStatus extends FileStatus {
      */
     OBSFileStatus(final long length, final long modificationTime, final Path path, final long blockSize,
                   final String owner) {
+        this(length, modificationTime, path, blockSize, owner, null);
+    }
+
+    /**
+     * A simple file whose object ETag is known.
+     *
+     * @param length           file length
+     * @param modificationTime mod time
+     * @param path             path
+     * @param blockSize        block size
+     * @param owner            owner
+     * @param objectEtag       ETag of the object, or null
+     */
+    OBSFileStatus(final long length, final long modificationTime, final Path path, final long blockSize,
+                  final String owner, final String objectEtag) {
         super(length, false, 1, blockSize, modificationTime, path);
+        this.etag = objectEtag;
         setOwner(owner);
         setGroup(owner);
     }
+
+    /**
+     * Copy a status, with its ETag.
+     *
+     * @param other the status to copy
+     * @throws IOException if the symlink of the status cannot be copied
+     */
+    OBSFileStatus(final OBSFileStatus other) throws IOException {
+        super(other);
+        this.etag = other.etag;
+    }
+
+    /**
+     * Return the ETag of the object of a file.
+     *
+     * @return the ETag, or null if not known
+     */
+    String getEtag() {
+        return etag;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
 }
@@ -0,0 +1,312 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.fs.obs;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.fs.FileStatus;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of the statuses of the paths of one {@link OBSFileSystem}, enabled
+ * with {@link OBSConstants#FILE_STATUS_CACHE_ENABLED}.
+ *
+ * <p>Entries are keyed by object key and hold either a status or the fact
+ * that the path does not exist. They expire after {@link
+ * OBSConstants#FILE_STATUS_CACHE_TTL} milliseconds, and the least recently
+ * used entries are evicted beyond {@link
+ * OBSConstants#FILE_STATUS_CACHE_MAX_ENTRIES}. The filesystem invalidates
+ * the entries of the paths it changes, with their ancestors; changes made by
+ * other clients are only seen once the entries expire.
+ *
+ * <p>Every invalidation starts a new generation. A status is only cached if
+ * no invalidation happened since the generation read before the request
+ * returning it, so that a request racing with a change cannot bring back the
+ * entry the change dropped.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public final class OBSFileStatusCache {
+    /**
+     * Entries by object key, in access order.
+     */
+    private final LinkedHashMap<String, Entry> entries;
+
+    /**
+     * Time to live of an entry, in nanoseconds.
+     */
+    private final long ttlNanos;
+
+    /**
+     * Number of invalidations, guarded by {@link #entries}.
+     */
+    private long generation;
+
+    /**
+     * Number of lookups answered by an entry.
+     */
+    private final AtomicLong hitCount = new AtomicLong();
+
+    /**
+     * Number of lookups answered by an entry for a missing path.
+     */
+    private final AtomicLong negativeHitCount = new AtomicLong();
+
+    /**
+     * Number of lookups not answered by the cache.
+     */
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Create a cache.
+     *
+     * @param ttlMillis  time to live of an entry, in milliseconds
+     * @param maxEntries maximum number of entries
+     */
+    OBSFileStatusCache(final long ttlMillis, final int maxEntries) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Look up the status of a key.
+     *
+     * @param key object key
+     * @return a copy of the cached status, or null if the key is not cached
+     * @throws FileNotFoundException if the key is cached as missing
+     */
+    FileStatus get(final String key) throws FileNotFoundException {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && System.nanoTime() - entry.createTime > ttlNanos) {
+                entries.remove(key);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        if (entry.status == null) {
+            negativeHitCount.incrementAndGet();
+            throw new FileNotFoundException("No such file or directory: " + key + " (cached)");
+        }
+        return copyOf(entry.status);
+    }
+
+    /**
+     * Copy a status, as callers may change the statuses they get.
+     *
+     * @param status the status
+     * @return the copy, of the class of the status if it is an {@link
+     * OBSFileStatus}
+     */
+    private static FileStatus copyOf(final FileStatus status) {
+        try {
+            return status instanceof OBSFileStatus
+                    ? new OBSFileStatus((OBSFileStatus) status)
+                    : new FileStatus(status);
+        } catch (IOException e) {
+            return status;
+        }
+    }
+
+    /**
+     * Return the current generation, to read before a request whose result
+     * is to be cached.
+     *
+     * @return the generation
+     */
+    long generation() {
+        synchronized (entries) {
+            return generation;
+        }
+    }
+
+    /**
+     * Cache the status of a key, unless an invalidation happened since the
+     * given generation.
+     *
+     * @param key        object key
+     * @param status     status of the key
+     * @param generation generation read before requesting the status
+     */
+    void put(final String key, final FileStatus status, final long generation) {
+        FileStatus copy = copyOf(status);
+        synchronized (entries) {
+            if (generation == this.generation) {
+                entries.put(key, new Entry(copy));
+            }
+        }
+    }
+
+    /**
+     * Cache that a key does not exist, unless an invalidation happened since
+     * the given generation.
+     *
+     * @param key        object key
+     * @param generation generation read before probing the key
+     */
+    void putMissing(final String key, final long generation) {
+        synchronized (entries) {
+            if (generation == this.generation) {
+                entries.put(key, new Entry(null));
+            }
+        }
+    }
+
+    /**
+     * Invalidate a key and its ancestors, whose existence and modification
+     * time follow from it.
+     *
+     * @param key object key
+     */
+    void invalidate(final String key) {
+        synchronized (entries) {
+            generation++;
+            String current = OBSCommonUtils.maybeDeleteBeginningSlash(key);
+            while (true) {
+                if (current.endsWith("/")) {
+                    current = current.substring(0, current.length() - 1);
+                }
+                entries.remove(current);
+                int index = current.lastIndexOf('/');
+                if (current.isEmpty()) {
+                    break;
+                }
+                current = index < 0 ? "" : current.substring(0, index);
+            }
+        }
+    }
+
+    /**
+     * Invalidate a key, its ancestors and every key under it.
+     *
+     * @param key object key
+     */
+    void invalidateTree(final String key) {
+        invalidate(key);
+        String prefix = OBSCommonUtils.maybeAddTrailingSlash(OBSCommonUtils.maybeDeleteBeginningSlash(key));
+        synchronized (entries) {
+            generation++;
+            if (prefix.isEmpty()) {
+                entries.clear();
+                return;
+            }
+            Iterator<String> iterator = entries.keySet().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().startsWith(prefix)) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the number of lookups answered by the cache, missing paths
+     * included.
+     *
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Return the number of lookups answered by the cache for missing paths.
+     *
+     * @return the negative hit count
+     */
+    public long getNegativeHitCount() {
+        return negativeHitCount.get();
+    }
+
+    /**
+     * Return the number of lookups not answered by the cache.
+     *
+     * @return the miss count
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Return the ratio of lookups answered by the cache.
+     *
+     * @return the hit rate, 0 before any lookup
+     */
+    public double getHitRate() {
+        long hits = hitCount.get();
+        long lookups = hits + missCount.get();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Return the number of entries, expired ones included.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "OBSFileStatusCache{size=" + size() + ", hits=" + hitCount.get() + ", negativeHits="
+                + negativeHitCount.get() + ", misses=" + missCount.get() + ", hitRate=" + String.format("%.3f",
+                getHitRate()) + '}';
+    }
+
+    /**
+     * Cached status of a key.
+     */
+    private static final class Entry {
+        /**
+         * Status of the key; null if the key does not exist.
+         */
+        private final FileStatus status;
+
+        /**
+         * Creation time, in nanoseconds.
+         */
+        private final long createTime = System.nanoTime();
+
+        private Entry(final FileStatus fileStatus) {
+            this.status = fileStatus;
+        }
+    }
+}
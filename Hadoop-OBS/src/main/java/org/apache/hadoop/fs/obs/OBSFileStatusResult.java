@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.fs.obs;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+/**
+ * Outcome of the status lookup of one path in {@link
+ * OBSFileSystem#getFileStatuses(java.util.Collection)}: either the status
+ * or the failure which {@link OBSFileSystem#getFileStatus(Path)} would have
+ * thrown.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public final class OBSFileStatusResult {
+    /**
+     * Path looked up.
+     */
+    private final Path path;
+
+    /**
+     * Status of the path; null on failure.
+     */
+    private final FileStatus status;
+
+    /**
+     * Failure of the lookup; null on success.
+     */
+    private final IOException exception;
+
+    private OBSFileStatusResult(final Path path, final FileStatus status, final IOException exception) {
+        this.path = path;
+        this.status = status;
+        this.exception = exception;
+    }
+
+    static OBSFileStatusResult found(final Path path, final FileStatus status) {
+        return new OBSFileStatusResult(path, status, null);
+    }
+
+    static OBSFileStatusResult failed(final Path path, final IOException exception) {
+        return new OBSFileStatusResult(path, null, exception);
+    }
+
+    /**
+     * Return the path looked up, as given.
+     *
+     * @return the path
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Return the status of the path.
+     *
+     * @return the status
+     * @throws FileNotFoundException if the path does not exist
+     * @throws IOException           the failure of the lookup
+     */
+    public FileStatus getFileStatus() throws IOException {
+        if (exception != null) {
+            throw exception;
+        }
+        return status;
+    }
+
+    /**
+     * Return the failure of the lookup.
+     *
+     * @return the failure, a {@link FileNotFoundException} if the path does
+     * not exist; null if the status was found
+     */
+    public IOException getException() {
+        return exception;
+    }
+
+    /**
+     * Return whether the status was found.
+     *
+     * @return true if the status was found
+     */
+    public boolean isFound() {
+        return exception == null;
+    }
+
+    @Override
+    public String toString() {
+        return "OBSFileStatusResult{path=" + path + (exception == null
+                ? ", status=" + status
+                : ", exception=" + exception) + '}';
+    }
+}
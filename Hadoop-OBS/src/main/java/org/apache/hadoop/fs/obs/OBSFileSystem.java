@@ -19,7 +19,9 @@
 package org.apache.hadoop.fs.obs;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.obs.services.ObsClient;
 import com.obs.services.exception.ObsException;
 import com.obs.services.model.AccessControlList;
@@ -48,13 +50,27 @@ import org.slf4j.LoggerFactory;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -121,6 +137,24 @@ public class OBSFileSystem extends FileSystem {
      * enabled.
      */
     private boolean obsClientDFSListEnable = true;
+    /**
+     * Maximum number of entries queued by the OBS client DFS list.
+     */
+    private int obsClientDFSListQueueMax;
+    /**
+     * Flag indicating if the parallel recursive listing of object buckets is
+     * enabled.
+     */
+    private boolean objectParallelListEnable;
+    /**
+     * Number of key ranges a recursive listing of an object bucket is split
+     * into.
+     */
+    private int objectListShards;
+    /**
+     * Maximum number of pages of a key range listed ahead of the consumer.
+     */
+    private int objectListShardPagesAhead;
     /**
      * Bucket name.
      */
@@ -157,6 +191,15 @@ public class OBSFileSystem extends FileSystem {
      * Bounded thread pool for multipart upload.
      */
     private ListeningExecutorService boundedMultipartUploadThreadPool;
+    /**
+     * Thread pool of streamed part uploads, which never queues: the number
+     * of streamed parts is bounded by {@link #streamingUploadPermits}.
+     */
+    private ListeningExecutorService streamingUploadThreadPool;
+    /**
+     * Permits of streamed part uploads.
+     */
+    private Semaphore streamingUploadPermits;
     /**
      * Bounded thread pool for copy.
      */
@@ -173,10 +216,26 @@ public class OBSFileSystem extends FileSystem {
      * Bounded thread pool for list.
      */
     private ThreadPoolExecutor boundedListThreadPool;
+    /**
+     * Bounded thread pool for bulk status lookups.
+     */
+    private ThreadPoolExecutor boundedStatusThreadPool;
     /**
      * List parallel factor.
      */
     private int listParallelFactor;
+    /**
+     * Number of listing pages fetched ahead of the consumer.
+     */
+    private int listPrefetchDepth;
+    /**
+     * How object buckets probe for the status of a path.
+     */
+    private String objectStatusProbe = OBSConstants.DEFAULT_OBJECT_STATUS_PROBE;
+    /**
+     * Whether globs are expanded with prefix listings.
+     */
+    private boolean globListingEnabled;
     /**
      * Read ahead range.
      */
@@ -197,6 +256,20 @@ public class OBSFileSystem extends FileSystem {
      * {@link #boundedMultipartUploadThreadPool}.
      */
     private int blockOutputActiveBlocks;
+    /**
+     * Flag indicating if multipart parts are streamed while their block is
+     * still being written.
+     */
+    private boolean fastUploadStreaming;
+    /**
+     * Size of the pipe buffering a streamed part.
+     */
+    private int fastUploadStreamingPipeSize;
+    /**
+     * Flag indicating if files created under a magic directory are written
+     * as pending uploads for {@link OBSMagicCommitter}.
+     */
+    private boolean magicCommitterEnabled;
     /**
      * Copy part size.
      */
@@ -221,6 +294,23 @@ public class OBSFileSystem extends FileSystem {
      * Block size for {@link FileSystem#getDefaultBlockSize()}.
      */
     private long blockSize;
+    /**
+     * Synthetic block locations of the files.
+     */
+    private OBSBlockLocations blockLocations;
+    /**
+     * Listing manifests to serve listings from, the last added first.
+     */
+    private final List<OBSListingManifest> listingManifests = new CopyOnWriteArrayList<>();
+    /**
+     * Whether the listing manifests of the configuration were loaded.
+     */
+    private boolean listingManifestsLoaded;
+    /**
+     * Time a listing manifest is valid for after it was written; 0 for no
+     * expiry.
+     */
+    private long listingManifestMaxAge;
     /**
      * Whether to implement  {@link FileSystem#getCanonicalServiceName()} switch.
      */
@@ -234,6 +324,17 @@ public class OBSFileSystem extends FileSystem {
 
     private boolean enableFileVisibilityAfterCreate = false;
 
+    /**
+     * Completions of output streams closed asynchronously. Successful ones are
+     * dropped when they finish; failed ones are kept until they are awaited.
+     */
+    private final Map<ListenableFuture<Void>, String> pendingAsyncCloses = new ConcurrentHashMap<>();
+
+    /**
+     * Cache of path statuses; null if disabled.
+     */
+    private OBSFileStatusCache fileStatusCache;
+
     /**
      * Close all {@link FSDataOutputStream} opened by the owner {@link
      * OBSFileSystem}.
@@ -270,6 +371,64 @@ public class OBSFileSystem extends FileSystem {
         }
     }
 
+    /**
+     * Register the background completion of an output stream closed
+     * asynchronously.
+     *
+     * @param file       the file being completed
+     * @param completion the completion future
+     */
+    void addPendingAsyncClose(final String file, final ListenableFuture<Void> completion) {
+        pendingAsyncCloses.put(completion, file);
+        completion.addListener(() -> {
+            try {
+                completion.get();
+                pendingAsyncCloses.remove(completion);
+            } catch (InterruptedException | ExecutionException | CancellationException e) {
+                // keep the failure until it is awaited
+                LOG.debug("Asynchronous close of {} failed", file, e);
+            }
+        }, Runnable::run);
+    }
+
+    /**
+     * Wait for all output streams closed asynchronously by this filesystem to
+     * complete their uploads. Committers call this before committing work
+     * written with {@link OBSConstants#OUTPUT_STREAM_ASYNC_CLOSE} enabled.
+     *
+     * @throws IOException the failure of the first upload which did not
+     *                     complete; the others are logged
+     */
+    public void awaitPendingAsyncCloses() throws IOException {
+        IOException firstFailure = null;
+        for (Map.Entry<ListenableFuture<Void>, String> entry : new ArrayList<>(pendingAsyncCloses.entrySet())) {
+            ListenableFuture<Void> completion = entry.getKey();
+            String file = entry.getValue();
+            IOException failure = null;
+            try {
+                completion.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted awaiting asynchronous close of " + file);
+            } catch (ExecutionException e) {
+                failure = OBSCommonUtils.extractException("Asynchronous close of " + file, file, e);
+            } catch (CancellationException e) {
+                failure = new IOException("Asynchronous close of " + file + " was cancelled", e);
+            }
+            pendingAsyncCloses.remove(completion);
+            if (failure != null) {
+                if (firstFailure == null) {
+                    firstFailure = failure;
+                } else {
+                    LOG.error("Asynchronous close of {} failed", file, failure);
+                }
+            }
+        }
+        if (firstFailure != null) {
+            throw firstFailure;
+        }
+    }
+
     /**
      * Check if a file is being written.
      *
@@ -352,6 +511,25 @@ public class OBSFileSystem extends FileSystem {
             readTransformEnable = conf.getBoolean(OBSConstants.READAHEAD_TRANSFORM_ENABLE, true);
             multiDeleteThreshold = conf.getInt(OBSConstants.MULTI_DELETE_THRESHOLD,
                     OBSConstants.MULTI_DELETE_DEFAULT_THRESHOLD);
+            objectStatusProbe = conf.getTrimmed(OBSConstants.OBJECT_STATUS_PROBE,
+                    OBSConstants.DEFAULT_OBJECT_STATUS_PROBE).toLowerCase(Locale.ROOT);
+            if (!OBSConstants.OBJECT_STATUS_PROBE_SEQUENTIAL.equals(objectStatusProbe)
+                    && !OBSConstants.OBJECT_STATUS_PROBE_PARALLEL.equals(objectStatusProbe)
+                    && !OBSConstants.OBJECT_STATUS_PROBE_LIST.equals(objectStatusProbe)) {
+                LOG.warn("Unknown {} '{}': forcing to {}.", OBSConstants.OBJECT_STATUS_PROBE, objectStatusProbe,
+                        OBSConstants.DEFAULT_OBJECT_STATUS_PROBE);
+                objectStatusProbe = OBSConstants.DEFAULT_OBJECT_STATUS_PROBE;
+            }
+            globListingEnabled = conf.getBoolean(OBSConstants.GLOB_LISTING_ENABLED,
+                    OBSConstants.DEFAULT_GLOB_LISTING_ENABLED);
+            if (conf.getBoolean(OBSConstants.FILE_STATUS_CACHE_ENABLED,
+                    OBSConstants.DEFAULT_FILE_STATUS_CACHE_ENABLED)) {
+                fileStatusCache = new OBSFileStatusCache(
+                        OBSCommonUtils.longOption(conf, OBSConstants.FILE_STATUS_CACHE_TTL,
+                                OBSConstants.DEFAULT_FILE_STATUS_CACHE_TTL, 0),
+                        OBSCommonUtils.intOption(conf, OBSConstants.FILE_STATUS_CACHE_MAX_ENTRIES,
+                                OBSConstants.DEFAULT_FILE_STATUS_CACHE_MAX_ENTRIES, 1));
+            }
 
             initThreadPools(conf);
 
@@ -369,6 +547,17 @@ public class OBSFileSystem extends FileSystem {
                     OBSConstants.DEFAULT_FAST_UPLOAD_ACTIVE_BLOCKS, 1);
             LOG.debug("Using OBSBlockOutputStream with buffer = {}; block={};" + " queue limit={}", blockOutputBuffer,
                     partSize, blockOutputActiveBlocks);
+            fastUploadStreaming = conf.getBoolean(OBSConstants.FAST_UPLOAD_STREAMING,
+                    OBSConstants.DEFAULT_FAST_UPLOAD_STREAMING);
+            fastUploadStreamingPipeSize = (int) OBSCommonUtils.longBytesOption(conf,
+                    OBSConstants.FAST_UPLOAD_STREAMING_PIPE_SIZE, OBSConstants.DEFAULT_FAST_UPLOAD_STREAMING_PIPE_SIZE,
+                    1);
+            magicCommitterEnabled = conf.getBoolean(OBSConstants.MAGIC_COMMITTER_ENABLED,
+                    OBSConstants.DEFAULT_MAGIC_COMMITTER_ENABLED);
+            if (magicCommitterEnabled && isFsBucket()) {
+                LOG.warn("The bucket [{}] is posix, magic committer is not supported.", bucket);
+                magicCommitterEnabled = false;
+            }
 
             String readPolicy = conf.getTrimmed(OBSConstants.READAHEAD_POLICY, OBSConstants.READAHEAD_POLICY_PRIMARY);
             inputPolicyFactory = InputPolicys.createFactory(readPolicy);
@@ -492,6 +681,11 @@ public class OBSFileSystem extends FileSystem {
                 OBSConstants.DEFAULT_MAX_TOTAL_TASKS, 1);
         boundedMultipartUploadThreadPool = BlockingThreadPoolExecutorService.newInstance(maxThreads,
                 maxThreads + totalTasks, keepAliveTime, "obs-transfer-shared");
+        streamingUploadPermits = new Semaphore(OBSCommonUtils.intOption(conf,
+                OBSConstants.FAST_UPLOAD_STREAMING_THREADS, OBSConstants.DEFAULT_FAST_UPLOAD_STREAMING_THREADS, 1));
+        streamingUploadThreadPool = MoreExecutors.listeningDecorator(
+                new ThreadPoolExecutor(0, Integer.MAX_VALUE, keepAliveTime, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                        BlockingThreadPoolExecutorService.newDaemonThreadFactory("obs-streaming-upload")));
 
         int maxDeleteThreads = conf.getInt(OBSConstants.MAX_DELETE_THREADS, OBSConstants.DEFAULT_MAX_DELETE_THREADS);
         if (maxDeleteThreads < 2) {
@@ -504,26 +698,47 @@ public class OBSFileSystem extends FileSystem {
                 BlockingThreadPoolExecutorService.newDaemonThreadFactory("obs-delete-transfer-shared"));
         boundedDeleteThreadPool.allowCoreThreadTimeOut(true);
 
+        // the list pool also prefetches listing pages, so it exists for
+        // every bucket type
+        int coreListThreads = conf.getInt(OBSConstants.CORE_LIST_THREADS, OBSConstants.DEFAULT_CORE_LIST_THREADS);
+        int maxListThreads = conf.getInt(OBSConstants.MAX_LIST_THREADS, OBSConstants.DEFAULT_MAX_LIST_THREADS);
+        int listWorkQueueCapacity = conf.getInt(OBSConstants.LIST_WORK_QUEUE_CAPACITY,
+                OBSConstants.DEFAULT_LIST_WORK_QUEUE_CAPACITY);
+        listParallelFactor = conf.getInt(OBSConstants.LIST_PARALLEL_FACTOR, OBSConstants.DEFAULT_LIST_PARALLEL_FACTOR);
+        if (listParallelFactor < 1) {
+            LOG.warn(OBSConstants.LIST_PARALLEL_FACTOR + " must be at least 1: forcing to 1.");
+            listParallelFactor = 1;
+        }
+        boundedListThreadPool = new ThreadPoolExecutor(coreListThreads, maxListThreads, keepAliveTime,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<>(listWorkQueueCapacity),
+                BlockingThreadPoolExecutorService.newDaemonThreadFactory("obs-list-transfer-shared"));
+        boundedListThreadPool.allowCoreThreadTimeOut(true);
+        int statusThreads = OBSCommonUtils.intOption(conf, OBSConstants.BULK_STATUS_THREADS,
+                OBSConstants.DEFAULT_BULK_STATUS_THREADS, 1);
+        boundedStatusThreadPool = new ThreadPoolExecutor(statusThreads, statusThreads, keepAliveTime,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                BlockingThreadPoolExecutorService.newDaemonThreadFactory("obs-status-shared"));
+        boundedStatusThreadPool.allowCoreThreadTimeOut(true);
+        blockLocations = new OBSBlockLocations(conf.getTrimmedStrings(OBSConstants.BLOCK_LOCATION_HOSTS));
+        listingManifestMaxAge = OBSCommonUtils.longOption(conf, OBSConstants.LISTING_MANIFEST_MAX_AGE,
+                OBSConstants.DEFAULT_LISTING_MANIFEST_MAX_AGE, 0);
+        listPrefetchDepth = conf.getInt(OBSConstants.LIST_PREFETCH_DEPTH, OBSConstants.DEFAULT_LIST_PREFETCH_DEPTH);
+        if (listPrefetchDepth < 0) {
+            LOG.warn(OBSConstants.LIST_PREFETCH_DEPTH + " must not be negative: forcing to 0.");
+            listPrefetchDepth = 0;
+        }
+
         if (enablePosix) {
             obsClientDFSListEnable = conf.getBoolean(OBSConstants.OBS_CLIENT_DFS_LIST_ENABLE, true);
-            if (obsClientDFSListEnable) {
-                int coreListThreads = conf.getInt(OBSConstants.CORE_LIST_THREADS,
-                        OBSConstants.DEFAULT_CORE_LIST_THREADS);
-                int maxListThreads = conf.getInt(OBSConstants.MAX_LIST_THREADS, OBSConstants.DEFAULT_MAX_LIST_THREADS);
-                int listWorkQueueCapacity = conf.getInt(OBSConstants.LIST_WORK_QUEUE_CAPACITY,
-                        OBSConstants.DEFAULT_LIST_WORK_QUEUE_CAPACITY);
-                listParallelFactor = conf.getInt(OBSConstants.LIST_PARALLEL_FACTOR,
-                        OBSConstants.DEFAULT_LIST_PARALLEL_FACTOR);
-                if (listParallelFactor < 1) {
-                    LOG.warn(OBSConstants.LIST_PARALLEL_FACTOR + " must be at least 1: forcing to 1.");
-                    listParallelFactor = 1;
-                }
-                boundedListThreadPool = new ThreadPoolExecutor(coreListThreads, maxListThreads, keepAliveTime,
-                        TimeUnit.SECONDS, new LinkedBlockingQueue<>(listWorkQueueCapacity),
-                        BlockingThreadPoolExecutorService.newDaemonThreadFactory("obs-list-transfer-shared"));
-                boundedListThreadPool.allowCoreThreadTimeOut(true);
-            }
+            obsClientDFSListQueueMax = OBSCommonUtils.intOption(conf, OBSConstants.OBS_CLIENT_DFS_LIST_QUEUE_MAX,
+                    OBSConstants.DEFAULT_OBS_CLIENT_DFS_LIST_QUEUE_MAX, 1);
         } else {
+            objectParallelListEnable = conf.getBoolean(OBSConstants.OBJECT_PARALLEL_LIST_ENABLE,
+                    OBSConstants.DEFAULT_OBJECT_PARALLEL_LIST_ENABLE);
+            objectListShards = OBSCommonUtils.intOption(conf, OBSConstants.OBJECT_LIST_SHARDS,
+                    OBSConstants.DEFAULT_OBJECT_LIST_SHARDS, 0);
+            objectListShardPagesAhead = OBSCommonUtils.intOption(conf, OBSConstants.OBJECT_LIST_SHARD_PAGES_AHEAD,
+                    OBSConstants.DEFAULT_OBJECT_LIST_SHARD_PAGES_AHEAD, 1);
             int maxCopyThreads = conf.getInt(OBSConstants.MAX_COPY_THREADS, OBSConstants.DEFAULT_MAX_COPY_THREADS);
             if (maxCopyThreads < 2) {
                 LOG.warn(OBSConstants.MAX_COPY_THREADS + " must be at least 2: forcing to 2.");
@@ -722,7 +937,8 @@ public class OBSFileSystem extends FileSystem {
         LOG.debug("Opening '{}' for reading.", f);
         final FileStatus fileStatus;
         try {
-            fileStatus = OBSCommonUtils.innerGetFileStatusWithRetry(this, f);
+            // only a file can be opened, so directories need not be probed
+            fileStatus = OBSCommonUtils.innerGetFileStatusWithRetry(this, f, OBSStatusProbe.FILE);
         } catch (FileConflictException e) {
             endTime = System.currentTimeMillis();
             if (getMetricSwitch()) {
@@ -778,6 +994,9 @@ public class OBSFileSystem extends FileSystem {
             throws IOException {
         checkOpen();
         String key = OBSCommonUtils.pathToKey(this, f);
+        if (magicCommitterEnabled && OBSMagicCommitUtils.isMagicKey(key)) {
+            return createMagicFile(f, key, overwrite);
+        }
         final FileStatus status;
         long startTime = System.currentTimeMillis();
         long endTime;
@@ -854,6 +1073,83 @@ public class OBSFileSystem extends FileSystem {
         return outputStream;
     }
 
+    /**
+     * Create a file under a magic directory. Its data is uploaded to the
+     * destination key as a multipart upload which close leaves uncompleted,
+     * saving a manifest of the pending upload next to the magic path instead.
+     * A magic file exists once its manifest is saved.
+     *
+     * @param f         the magic path
+     * @param magicKey  key of the magic path
+     * @param overwrite whether to replace a magic file already written
+     * @return the output stream
+     * @throws FileAlreadyExistsException if the magic file exists and
+     *                                    overwrite is false
+     * @throws IOException                on any failure to start the stream
+     */
+    private FSDataOutputStream createMagicFile(final Path f, final String magicKey, final boolean overwrite)
+            throws IOException {
+        String destKey = OBSMagicCommitUtils.destinationKey(magicKey);
+        LOG.debug("create: Writing magic file {} as a pending upload to {}", f, destKey);
+        checkPermission(OBSCommonUtils.keyToQualifiedPath(this, destKey), AccessType.WRITE);
+        if (!overwrite) {
+            try {
+                OBSCommonUtils.innerGetFileStatusWithRetry(this,
+                        OBSCommonUtils.keyToQualifiedPath(this, magicKey + OBSMagicCommitUtils.PENDING_SUFFIX),
+                        OBSStatusProbe.FILE);
+                throw new FileAlreadyExistsException(f + " already exists");
+            } catch (FileNotFoundException e) {
+                LOG.debug("Magic file {} does not exist yet", f);
+            }
+        }
+        FSDataOutputStream outputStream = new FSDataOutputStream(new OBSBlockOutputStream(this, destKey, 0,
+                new SemaphoredDelegatingExecutor(boundedMultipartUploadThreadPool, blockOutputActiveBlocks, true), false,
+                magicKey + OBSMagicCommitUtils.PENDING_SUFFIX), null);
+        synchronized (filesBeingWritten) {
+            filesBeingWritten.put(destKey, outputStream);
+        }
+        return outputStream;
+    }
+
+    /**
+     * Create a writer of a file whose parts are filled concurrently and
+     * uploaded as they are closed; the file only becomes visible when the
+     * writer is committed.
+     *
+     * @param f         the file path to create
+     * @param overwrite if a file with this name already exists, then if true,
+     *                  the file will be overwritten, and if false an error
+     *                  will be thrown
+     * @return the parallel writer
+     * @throws IOException on any failure to start the writer
+     * @see OBSParallelWriter
+     */
+    public OBSParallelWriter createParallelWriter(final Path f, final boolean overwrite) throws IOException {
+        checkOpen();
+        String key = OBSCommonUtils.pathToKey(this, f);
+        try {
+            FileStatus status;
+            try {
+                status = OBSCommonUtils.innerGetFileStatusWithRetry(this, f);
+            } catch (FileConflictException e) {
+                throw new ParentNotDirectoryException(e.getMessage());
+            }
+            if (status.isDirectory()) {
+                throw new FileAlreadyExistsException(f + " is a directory");
+            }
+            if (!overwrite) {
+                throw new FileAlreadyExistsException(f + " already exists");
+            }
+            LOG.debug("createParallelWriter: Overwriting file {}", f);
+        } catch (FileNotFoundException e) {
+            LOG.debug("createParallelWriter: Creating new file {}", f);
+        }
+
+        checkPermission(f, AccessType.WRITE);
+        return new OBSParallelWriter(this, key,
+                new SemaphoredDelegatingExecutor(boundedMultipartUploadThreadPool, blockOutputActiveBlocks, true));
+    }
+
     /**
      * Return the part size for multipart upload used by {@link
      * OBSBlockOutputStream}.
@@ -873,6 +1169,35 @@ public class OBSFileSystem extends FileSystem {
         return blockFactory;
     }
 
+    /**
+     * Return whether {@link OBSBlockOutputStream} streams parts while their
+     * block is still being written.
+     *
+     * @return true if streaming part upload is enabled
+     */
+    boolean isFastUploadStreaming() {
+        return fastUploadStreaming;
+    }
+
+    /**
+     * Return the size of the pipe buffering a streamed part.
+     *
+     * @return the pipe size
+     */
+    int getFastUploadStreamingPipeSize() {
+        return fastUploadStreamingPipeSize;
+    }
+
+    /**
+     * Return whether files created under a magic directory are written as
+     * pending uploads for {@link OBSMagicCommitter}.
+     *
+     * @return true if the magic committer is enabled
+     */
+    boolean isMagicCommitterEnabled() {
+        return magicCommitterEnabled;
+    }
+
     /**
      * Return the write helper used by {@link OBSBlockOutputStream}.
      *
@@ -1156,7 +1481,11 @@ public class OBSFileSystem extends FileSystem {
         }
 
         checkPermission(f, AccessType.WRITE);
-        OBSPosixBucketUtils.innerFsTruncateWithRetry(this, f, newLength);
+        try {
+            OBSPosixBucketUtils.innerFsTruncateWithRetry(this, f, newLength);
+        } finally {
+            invalidateFileStatus(f);
+        }
 
         return true;
     }
@@ -1247,6 +1576,8 @@ public class OBSFileSystem extends FileSystem {
             endTime = System.currentTimeMillis();
             LOG.debug("Rename path {} to {} finished, thread:{}, " + "timeUsedInMilliSec:{}.", src, dst, threadId,
                     endTime - startTime);
+            invalidateFileStatusTree(src);
+            invalidateFileStatusTree(dst);
         }
     }
 
@@ -1268,6 +1599,33 @@ public class OBSFileSystem extends FileSystem {
         return listParallelFactor;
     }
 
+    /**
+     * Return the number of listing pages fetched ahead of the consumer.
+     *
+     * @return the list prefetch depth
+     */
+    int getListPrefetchDepth() {
+        return listPrefetchDepth;
+    }
+
+    /**
+     * Return bounded thread pool for bulk status lookups.
+     *
+     * @return bounded thread pool for bulk status lookups
+     */
+    ThreadPoolExecutor getBoundedStatusThreadPool() {
+        return boundedStatusThreadPool;
+    }
+
+    /**
+     * Return how object buckets probe for the status of a path.
+     *
+     * @return one of the {@link OBSConstants#OBJECT_STATUS_PROBE} values
+     */
+    String getObjectStatusProbe() {
+        return objectStatusProbe;
+    }
+
     /**
      * Return bounded thread pool for list.
      *
@@ -1287,6 +1645,46 @@ public class OBSFileSystem extends FileSystem {
         return obsClientDFSListEnable;
     }
 
+    /**
+     * Return the maximum number of entries queued by the OBS client DFS list
+     * beyond the page being returned.
+     *
+     * @return the maximum number of queued entries
+     */
+    int getObsClientDFSListQueueMax() {
+        return obsClientDFSListQueueMax;
+    }
+
+    /**
+     * Return a flag that indicates if the parallel recursive listing of
+     * object buckets is enabled.
+     *
+     * @return the flag
+     */
+    boolean isObjectParallelListEnable() {
+        return objectParallelListEnable;
+    }
+
+    /**
+     * Return the number of key ranges a recursive listing of an object bucket
+     * is split into.
+     *
+     * @return the number of ranges; 0 or 1 if listings are not split
+     */
+    int getObjectListShards() {
+        return objectListShards;
+    }
+
+    /**
+     * Return the maximum number of pages of a key range listed ahead of the
+     * consumer of a split listing.
+     *
+     * @return the number of pages
+     */
+    int getObjectListShardPagesAhead() {
+        return objectListShardPagesAhead;
+    }
+
     /**
      * Return the {@link FileSystem.Statistics} instance used by this
      * filesystem.
@@ -1380,6 +1778,8 @@ public class OBSFileSystem extends FileSystem {
                 OBSCommonUtils.setMetricsInfo(this, record);
             }
             throw OBSCommonUtils.translateException("delete", f, e);
+        } finally {
+            invalidateFileStatusTree(f);
         }
     }
 
@@ -1440,6 +1840,38 @@ public class OBSFileSystem extends FileSystem {
         }
     }
 
+    /**
+     * List the statuses of the files/directories in many paths concurrently,
+     * without looking up the status of every path first: only paths whose
+     * listing is empty are looked up.
+     *
+     * @param paths the paths
+     * @return for every path in input order, the statuses {@link
+     * #listStatus(Path)} would have returned or the failure it would have
+     * thrown
+     * @throws IOException if the filesystem is closed or the call interrupted
+     */
+    public List<OBSListStatusResult> listStatuses(final Collection<Path> paths) throws IOException {
+        checkOpen();
+        List<Path> readable = new ArrayList<>(paths.size());
+        Map<Path, OBSListStatusResult> denied = new HashMap<>();
+        for (Path path : paths) {
+            try {
+                checkPermission(path, AccessType.READ);
+                readable.add(path);
+            } catch (IOException e) {
+                denied.put(path, OBSListStatusResult.failed(path, e));
+            }
+        }
+        Map<Path, OBSListStatusResult> listed = OBSCommonUtils.innerListStatuses(this, readable);
+        List<OBSListStatusResult> results = new ArrayList<>(paths.size());
+        for (Path path : paths) {
+            OBSListStatusResult result = denied.get(path);
+            results.add(result != null ? result : listed.get(path));
+        }
+        return results;
+    }
+
     /**
      * This public interface is provided specially for Huawei MRS. List the
      * statuses of the files/directories in the given path if the path is a
@@ -1482,6 +1914,102 @@ public class OBSFileSystem extends FileSystem {
         }
     }
 
+    /**
+     * List the statuses of the files/directories in the given path if the path
+     * is a directory, one listing page at a time. Only the page being consumed
+     * and the pages prefetched after it, as set by {@link
+     * OBSConstants#LIST_PREFETCH_DEPTH}, are held in memory.
+     *
+     * @param p given path
+     * @return an iterator over the statuses of the files/directories in the
+     * given path
+     * @throws FileNotFoundException when the path does not exist
+     * @throws IOException           see specific implementation
+     */
+    @Override
+    public RemoteIterator<FileStatus> listStatusIterator(final Path p) throws FileNotFoundException, IOException {
+        checkOpen();
+        checkPermission(p, AccessType.READ);
+        try {
+            return OBSCommonUtils.innerListStatusIterator(this, p, false);
+        } catch (ObsException e) {
+            throw OBSCommonUtils.translateException("listStatusIterator", p, e);
+        }
+    }
+
+    /**
+     * Write a manifest of the recursive listing of a directory, that later
+     * listings under it can be served from once added with {@link
+     * #addListingManifest(Path)} or {@link OBSConstants#LISTING_MANIFESTS}.
+     *
+     * @param f        the directory
+     * @param manifest path of the manifest file, on any filesystem
+     * @return the number of objects in the manifest
+     * @throws IOException on any failure to list the directory or write the
+     *                     manifest
+     */
+    public long writeListingManifest(final Path f, final Path manifest) throws IOException {
+        checkOpen();
+        checkPermission(f, AccessType.READ);
+        try {
+            return OBSListingManifest.write(this, f, manifest);
+        } catch (ObsException e) {
+            throw OBSCommonUtils.translateException("writeListingManifest", f, e);
+        }
+    }
+
+    /**
+     * Serve the listings under the prefix of a manifest from it while it is
+     * valid, instead of any manifest of the same prefix added before.
+     *
+     * @param manifest path of the manifest file, on any filesystem
+     * @throws IOException if the manifest cannot be read, or is of another
+     *                     bucket
+     */
+    public void addListingManifest(final Path manifest) throws IOException {
+        checkOpen();
+        OBSListingManifest listingManifest = OBSListingManifest.load(manifest.getFileSystem(getConf()), manifest);
+        if (!listingManifest.getBucket().equals(bucket)) {
+            throw new IOException("Listing manifest " + manifest + " is of bucket " + listingManifest.getBucket()
+                    + ", not " + bucket);
+        }
+        listingManifests.removeIf(added -> added.getPrefix().equals(listingManifest.getPrefix()));
+        listingManifests.add(0, listingManifest);
+        LOG.debug("Added {}", listingManifest);
+    }
+
+    /**
+     * Return the listing manifests to serve listings from, loading those of
+     * {@link OBSConstants#LISTING_MANIFESTS} on first use.
+     *
+     * @return the listing manifests
+     */
+    List<OBSListingManifest> getListingManifests() {
+        synchronized (listingManifests) {
+            if (!listingManifestsLoaded) {
+                // set first, as loading from this filesystem may list
+                listingManifestsLoaded = true;
+                for (String manifest : getConf().getTrimmedStrings(OBSConstants.LISTING_MANIFESTS)) {
+                    try {
+                        addListingManifest(new Path(manifest));
+                    } catch (IOException e) {
+                        LOG.warn("Failed to add listing manifest {}", manifest, e);
+                    }
+                }
+            }
+        }
+        return listingManifests;
+    }
+
+    /**
+     * Return the time a listing manifest is valid for after it was written.
+     *
+     * @return the time in milliseconds; 0 if manifests do not expire by age
+     */
+    long getListingManifestMaxAge() {
+        return listingManifestMaxAge;
+    }
+
     /**
      * Return the OBSListing instance used by this filesystem.
      *
@@ -1560,6 +2088,8 @@ public class OBSFileSystem extends FileSystem {
                 OBSCommonUtils.setMetricsInfo(this, record);
             }
             throw OBSCommonUtils.translateException("mkdirs", path, e);
+        } finally {
+            invalidateFileStatus(path);
         }
     }
 
@@ -1577,7 +2107,9 @@ public class OBSFileSystem extends FileSystem {
         long startTime = System.currentTimeMillis();
         long endTime;
         try {
-            FileStatus fileStatus = OBSCommonUtils.innerGetFileStatusWithRetry(this, f);
+            FileStatus fileStatus = fileStatusCache == null
+                    ? OBSCommonUtils.innerGetFileStatusWithRetry(this, f)
+                    : getFileStatusCached(f);
             endTime = System.currentTimeMillis();
             if (getMetricSwitch()) {
                 BasicMetricsConsumer.MetricRecord record = new BasicMetricsConsumer.MetricRecord(null,
@@ -1598,6 +2130,169 @@ public class OBSFileSystem extends FileSystem {
         }
     }
 
+    /**
+     * Return all the files that match the pattern.
+     * If {@link OBSConstants#GLOB_LISTING_ENABLED} is set, the pattern is
+     * expanded with listings of its literal prefix matched on the client.
+     *
+     * @param pathPattern a glob specifying a path pattern
+     * @return an array of paths that match the path pattern
+     * @throws IOException IO failure
+     */
+    @Override
+    public FileStatus[] globStatus(final Path pathPattern) throws IOException {
+        return globStatus(pathPattern, OBSListing.ACCEPT_ALL);
+    }
+
+    /**
+     * Return an array of the statuses of the files matching the pattern and
+     * accepted by the filter. If {@link OBSConstants#GLOB_LISTING_ENABLED} is
+     * set, the pattern is expanded with listings of its literal prefix
+     * matched on the client; patterns with escapes, with alternatives
+     * spanning directories or with a literal component after a wildcard use
+     * the generic globber.
+     *
+     * @param pathPattern a glob specifying the path pattern
+     * @param filter      a user-supplied path filter
+     * @return an array of statuses, sorted by path; null if the pattern has
+     * no wildcard and the path does not exist
+     * @throws IOException IO failure
+     */
+    @Override
+    public FileStatus[] globStatus(final Path pathPattern, final PathFilter filter) throws IOException {
+        checkOpen();
+        OBSGlobber globber = globListingEnabled ? OBSGlobber.create(this, pathPattern) : null;
+        if (globber == null) {
+            return super.globStatus(pathPattern, filter);
+        }
+        checkPermission(globber.getBasePath(), AccessType.READ);
+        return globber.glob(filter);
+    }
+
+    /**
+     * Return the statuses of many paths, looked up concurrently. Paths
+     * sharing a parent are resolved together by one listing of the parent.
+     *
+     * @param paths the paths
+     * @return for every path in input order, its status or the failure which
+     * {@link #getFileStatus(Path)} would have thrown
+     * @throws IOException if the filesystem is closed or the call interrupted
+     */
+    public List<OBSFileStatusResult> getFileStatuses(final Collection<Path> paths) throws IOException {
+        checkOpen();
+        return OBSBulkStatusUtils.getFileStatuses(this, paths);
+    }
+
+    private FileStatus getFileStatusCached(final Path f) throws IOException {
+        String key = OBSCommonUtils.pathToKey(this, f);
+        FileStatus fileStatus = fileStatusCache.get(key);
+        if (fileStatus != null) {
+            return fileStatus;
+        }
+        long generation = fileStatusCache.generation();
+        try {
+            fileStatus = OBSCommonUtils.innerGetFileStatusWithRetry(this, f);
+        } catch (FileNotFoundException e) {
+            fileStatusCache.putMissing(key, generation);
+            throw e;
+        }
+        fileStatusCache.put(key, fileStatus, generation);
+        return fileStatus;
+    }
+
+    /**
+     * Return the cache of path statuses.
+     *
+     * @return the cache, or null if {@link OBSConstants#FILE_STATUS_CACHE_ENABLED}
+     * is not set
+     */
+    public OBSFileStatusCache getFileStatusCache() {
+        return fileStatusCache;
+    }
+
+    /**
+     * Return the generation of the status cache, to read before a listing
+     * whose statuses are cached with {@link #cacheFileStatus(FileStatus,
+     * long)}.
+     *
+     * @return the generation; 0 if the cache is disabled
+     */
+    long getFileStatusCacheGeneration() {
+        return fileStatusCache == null ? 0 : fileStatusCache.generation();
+    }
+
+    /**
+     * Cache a status returned by a listing, unless a path was invalidated
+     * since the listing started.
+     *
+     * @param status     the status
+     * @param generation cache generation read before the listing
+     */
+    void cacheFileStatus(final FileStatus status, final long generation) {
+        if (fileStatusCache != null) {
+            fileStatusCache.put(OBSCommonUtils.pathToKey(this, status.getPath()), status, generation);
+        }
+    }
+
+    /**
+     * Drop the cached status of an object key and of its ancestors, and the
+     * listing manifests covering it.
+     *
+     * @param key the object key
+     */
+    void invalidateFileStatus(final String key) {
+        if (fileStatusCache != null) {
+            fileStatusCache.invalidate(key);
+        }
+        invalidateListingManifests(key);
+    }
+
+    /**
+     * Drop the cached status of a path and of its ancestors, and the listing
+     * manifests covering it.
+     *
+     * @param f the path
+     */
+    void invalidateFileStatus(final Path f) {
+        invalidateFileStatus(OBSCommonUtils.pathToKey(this, f));
+    }
+
+    /**
+     * Drop the cached statuses of a path, of its ancestors and of the paths
+     * under it, and the listing manifests covering any of them.
+     *
+     * @param f the path
+     */
+    void invalidateFileStatusTree(final Path f) {
+        String key = OBSCommonUtils.pathToKey(this, f);
+        if (fileStatusCache != null) {
+            fileStatusCache.invalidateTree(key);
+        }
+        invalidateListingManifests(key);
+    }
+
+    /**
+     * Stop serving listings from the manifests whose prefix contains a key
+     * written, deleted or renamed by this filesystem, or is under it: they
+     * no longer match the bucket.
+     *
+     * @param key the object key
+     */
+    private void invalidateListingManifests(final String key) {
+        List<OBSListingManifest> manifests = getListingManifests();
+        if (manifests.isEmpty()) {
+            return;
+        }
+        String dirKey = OBSCommonUtils.maybeAddTrailingSlash(key);
+        manifests.removeIf(manifest -> {
+            boolean stale = key.startsWith(manifest.getPrefix()) || manifest.getPrefix().startsWith(dirKey);
+            if (stale) {
+                LOG.info("Dropping listing manifest {} after a change to {}", manifest, key);
+            }
+            return stale;
+        });
+    }
+
     /**
      * Inner implementation without retry for {@link #getFileStatus(Path)}.
      *
@@ -1607,12 +2302,26 @@ public class OBSFileSystem extends FileSystem {
      */
     @VisibleForTesting
     OBSFileStatus innerGetFileStatus(final Path f) throws IOException {
+        return innerGetFileStatus(f, OBSStatusProbe.ALL);
+    }
+
+    /**
+     * Inner implementation without retry for {@link #getFileStatus(Path)},
+     * limited to the given probes on object buckets; posix buckets answer
+     * with a single request whatever the probes.
+     *
+     * @param f      the path we want information from
+     * @param probes the probes to make
+     * @return a FileStatus object
+     * @throws IOException on IO failure
+     */
+    OBSFileStatus innerGetFileStatus(final Path f, final Set<OBSStatusProbe> probes) throws IOException {
         OBSFileStatus fileStatus;
         if (enablePosix) {
             fileStatus = OBSPosixBucketUtils.innerFsGetObjectStatus(this, f);
             return fileStatus;
         }
-        fileStatus = OBSObjectBucketUtils.innerGetObjectStatus(this, f);
+        fileStatus = OBSObjectBucketUtils.innerGetObjectStatus(this, f, probes);
         return fileStatus;
     }
 
@@ -1706,7 +2415,7 @@ public class OBSFileSystem extends FileSystem {
         long startTime = System.currentTimeMillis();
         long endTime;
         try {
-            super.copyFromLocalFile(delSrc, overwrite, src, dst);
+            OBSLocalCopyUtils.copyFromLocalFile(this, delSrc, overwrite, src, dst);
             endTime = System.currentTimeMillis();
             if (getMetricSwitch()) {
                 BasicMetricsConsumer.MetricRecord record = new BasicMetricsConsumer.MetricRecord(null,
@@ -1721,6 +2430,45 @@ public class OBSFileSystem extends FileSystem {
                 OBSCommonUtils.setMetricsInfo(this, record);
             }
             throw OBSCommonUtils.translateException("copyFromLocalFile(" + src + ", " + dst + ")", src, e);
+        } finally {
+            invalidateFileStatusTree(dst);
+        }
+    }
+
+    /**
+     * Copy the {@code src} file or directory of the filesystem to the local
+     * disk at the given {@code dst} name. Objects are downloaded in ranges in
+     * parallel and written directly, so no checksum files are created
+     * whatever {@code useRawLocalFileSystem} says.
+     *
+     * @param delSrc                whether to delete the src
+     * @param src                   path
+     * @param dst                   path
+     * @param useRawLocalFileSystem whether to use the raw local filesystem
+     * @throws IOException IO problem
+     */
+    @Override
+    public void copyToLocalFile(final boolean delSrc, final Path src, final Path dst,
+                                final boolean useRawLocalFileSystem) throws IOException {
+        checkOpen();
+        long startTime = System.currentTimeMillis();
+        long endTime;
+        try {
+            OBSLocalCopyUtils.copyToLocalFile(this, delSrc, src, dst);
+            endTime = System.currentTimeMillis();
+            if (getMetricSwitch()) {
+                BasicMetricsConsumer.MetricRecord record = new BasicMetricsConsumer.MetricRecord(null,
+                        BasicMetricsConsumer.MetricRecord.COPYTOLOCAL, true, endTime - startTime);
+                OBSCommonUtils.setMetricsInfo(this, record);
+            }
+        } catch (IOException e) {
+            endTime = System.currentTimeMillis();
+            if (getMetricSwitch()) {
+                BasicMetricsConsumer.MetricRecord record = new BasicMetricsConsumer.MetricRecord(null,
+                        BasicMetricsConsumer.MetricRecord.COPYTOLOCAL, false, endTime - startTime);
+                OBSCommonUtils.setMetricsInfo(this, record);
+            }
+            throw e;
         }
     }
 
@@ -1736,6 +2484,12 @@ public class OBSFileSystem extends FileSystem {
         }
         long startTime = System.currentTimeMillis();
         closeAllFilesBeingWritten();
+        IOException asyncCloseFailure = null;
+        try {
+            awaitPendingAsyncCloses();
+        } catch (IOException e) {
+            asyncCloseFailure = e;
+        }
 
         closed = true;
         long endTime = System.currentTimeMillis();
@@ -1753,11 +2507,15 @@ public class OBSFileSystem extends FileSystem {
             }
             obs.close();
         } finally {
-            OBSCommonUtils.shutdownAll(boundedMultipartUploadThreadPool, boundedCopyThreadPool, boundedDeleteThreadPool,
-                    boundedCopyPartThreadPool, boundedListThreadPool);
+            OBSCommonUtils.shutdownAll(boundedMultipartUploadThreadPool, streamingUploadThreadPool,
+                    boundedCopyThreadPool, boundedDeleteThreadPool, boundedCopyPartThreadPool, boundedListThreadPool,
+                    boundedStatusThreadPool);
         }
 
         LOG.info("Finish closing filesystem instance for uri: {}", uri);
+        if (asyncCloseFailure != null) {
+            throw asyncCloseFailure;
+        }
     }
 
     @Override
@@ -1811,6 +2569,55 @@ public class OBSFileSystem extends FileSystem {
         return boundedCopyThreadPool;
     }
 
+    /**
+     * Take a permit to stream a part, if a streaming thread is free.
+     *
+     * @return true if a permit was taken; it is given back by the task of
+     * {@link #submitStreamingUpload(Callable)}
+     */
+    boolean tryAcquireStreamingUpload() {
+        return streamingUploadPermits.tryAcquire();
+    }
+
+    /**
+     * Give back a permit from {@link #tryAcquireStreamingUpload()} which was
+     * not handed to {@link #submitStreamingUpload(Callable)}.
+     */
+    void releaseStreamingUpload() {
+        streamingUploadPermits.release();
+    }
+
+    /**
+     * Run a streamed part upload on a thread of its own, with a permit from
+     * {@link #tryAcquireStreamingUpload()} which is given back once the task
+     * ends.
+     *
+     * @param task the part upload
+     * @param <T>  result type
+     * @return the future of the part upload
+     * @throws RejectedExecutionException once the filesystem is closed; the
+     *                                    permit is then still the caller's
+     */
+    <T> ListenableFuture<T> submitStreamingUpload(final Callable<T> task) {
+        return streamingUploadThreadPool.submit(() -> {
+            try {
+                return task.call();
+            } finally {
+                streamingUploadPermits.release();
+            }
+        });
+    }
+
+    /**
+     * Return bounded thread pool for multipart upload, shared by the output
+     * streams and local file transfers.
+     *
+     * @return the bounded thread pool for multipart upload
+     */
+    ListeningExecutorService getBoundedMultipartUploadThreadPool() {
+        return boundedMultipartUploadThreadPool;
+    }
+
     /**
      * Imitate HDFS to return the number of bytes that large input files should
      * be optimally split into to minimize I/O time for compatibility.
@@ -1836,6 +2643,34 @@ public class OBSFileSystem extends FileSystem {
         return blockSize;
     }
 
+    /**
+     * Return the synthetic locations of the blocks of a file overlapping a
+     * range. They are spread over the hosts of {@link
+     * OBSConstants#BLOCK_LOCATION_HOSTS} if any, and shared between files of
+     * the same length and block size.
+     *
+     * @param file  the file status
+     * @param start start of the range
+     * @param len   length of the range
+     * @return the block locations, null if the file is null
+     */
+    @Override
+    public BlockLocation[] getFileBlockLocations(FileStatus file, long start, long len) {
+        if (file == null) {
+            return null;
+        }
+        return blockLocations.locate(file.getPath(), file.getLen(), file.getBlockSize(), start, len);
+    }
+
+    /**
+     * Return the synthetic block locations of the files.
+     *
+     * @return the block locations
+     */
+    OBSBlockLocations getBlockLocations() {
+        return blockLocations;
+    }
+
     /**
      * Return a string that describes this filesystem instance.
      *
@@ -1858,6 +2693,9 @@ public class OBSFileSystem extends FileSystem {
             sb.append(", blockFactory=").append(blockFactory);
         }
         sb.append(", boundedMultipartUploadThreadPool=").append(boundedMultipartUploadThreadPool);
+        if (fileStatusCache != null) {
+            sb.append(", fileStatusCache=").append(fileStatusCache);
+        }
         sb.append(", statistics {").append(statistics).append("}");
         sb.append(", metrics {").append("}");
         sb.append('}');
@@ -1919,7 +2757,7 @@ public class OBSFileSystem extends FileSystem {
                 throw new AccessControlException(e);
             }
             if (fileStatus.isFile()) {
-                locatedFileStatus = new OBSListing.SingleStatusRemoteIterator(
+                locatedFileStatus = new OBSListing.SingleStatusRemoteIterator<>(
                         OBSCommonUtils.toLocatedFileStatus(this, fileStatus));
 
                 endTime = System.currentTimeMillis();
@@ -2019,7 +2857,7 @@ public class OBSFileSystem extends FileSystem {
             if (fileStatus.isFile()) {
                 // simple case: File
                 LOG.debug("Path is a file");
-                locatedFileStatusRemoteList = new OBSListing.SingleStatusRemoteIterator(
+                locatedFileStatusRemoteList = new OBSListing.SingleStatusRemoteIterator<>(
                         filter.accept(path) ? OBSCommonUtils.toLocatedFileStatus(this, fileStatus) : null);
                 endTime = System.currentTimeMillis();
                 if (getMetricSwitch()) {
@@ -2,6 +2,7 @@ package org.apache.hadoop.fs.obs;
 
 import com.obs.services.model.ListObjectsRequest;
 import com.obs.services.model.ObjectListing;
+import com.obs.services.model.ObjectMetadata;
 import com.obs.services.model.ObsObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -55,18 +56,30 @@ class OBSFsDFSListing extends ObjectListing {
     }
 
     static void increaseLevelStats(final List<LevelStats> levelStatsList, final int level, final boolean isDir) {
+        if (isDir) {
+            getLevelStats(levelStatsList, level).increaseDirNum();
+        } else {
+            getLevelStats(levelStatsList, level).increaseFileNum();
+        }
+    }
+
+    private static LevelStats getLevelStats(final List<LevelStats> levelStatsList, final int level) {
         int currMaxLevel = levelStatsList.size() - 1;
         if (currMaxLevel < level) {
             for (int i = 0; i < level - currMaxLevel; i++) {
                 levelStatsList.add(new LevelStats(currMaxLevel + 1 + i));
             }
         }
+        return levelStatsList.get(level);
+    }
 
-        if (isDir) {
-            levelStatsList.get(level).increaseDirNum();
-        } else {
-            levelStatsList.get(level).increaseFileNum();
-        }
+    /**
+     * Queue a result beyond the current batch.
+     */
+    private static void enqueueResult(final Queue<ListEntity> resultQueue, final ListEntity listEntity,
+                                      final List<LevelStats> levelStatsList) {
+        resultQueue.add(listEntity);
+        getLevelStats(levelStatsList, listEntity.getLevel()).increaseQueuedNum();
     }
 
     static String fsDFSListNextBatch(final OBSFileSystem owner, final Stack<ListEntity> listStack,
@@ -81,7 +94,7 @@ class OBSFsDFSListing extends ObjectListing {
                 throw new RuntimeException("cannot put list tail (" + resultQueue.peek() + ") into result queue");
             } else if (!marker.equals(resultQueue.peek().getType() == ListEntityType.COMMON_PREFIX
                     ? resultQueue.peek().getCommonPrefix()
-                    : resultQueue.peek().getObjectSummary().getObjectKey())) {
+                    : resultQueue.peek().getObjectKey())) {
                 throw new IllegalArgumentException(
                         "marker (" + marker + ") does not match with result queue peek (" + resultQueue.peek() + ")");
             }
@@ -104,7 +117,7 @@ class OBSFsDFSListing extends ObjectListing {
                 throw new RuntimeException("cannot put list tail (" + resultQueue.peek() + ") into result queue");
             } else {
                 nextMarker = resultQueue.peek().getType() == ListEntityType.COMMON_PREFIX ? resultQueue.peek()
-                        .getCommonPrefix() : resultQueue.peek().getObjectSummary().getObjectKey();
+                        .getCommonPrefix() : resultQueue.peek().getObjectKey();
             }
         }
         return nextMarker;
@@ -119,8 +132,13 @@ class OBSFsDFSListing extends ObjectListing {
             List<Future<ObjectListing>> oneLevelListFutures = new ArrayList<>();
             List<Integer> levels = new ArrayList<>();
             List<ObjectListing> oneLevelObjectListings = new ArrayList<>();
-            // a. submit some one-level list tasks in parallel
-            submitOneLevelListTasks(owner, listStack, maxKeyNum, oneLevelListRequests, oneLevelListFutures, levels);
+            // a. submit some one-level list tasks in parallel, no more than
+            // the result queue has room left for
+            int perTaskKeyNum = Math.min(maxKeyNum, owner.getMaxKeys());
+            int queueRoom = owner.getObsClientDFSListQueueMax() - resultQueue.size();
+            int parallelNum = Math.max(1, Math.min(owner.getListParallelFactor(), queueRoom / perTaskKeyNum));
+            submitOneLevelListTasks(owner, listStack, maxKeyNum, parallelNum, oneLevelListRequests,
+                    oneLevelListFutures, levels);
 
             // b. wait these tasks to complete
             waitForOneLevelListTasksFinished(oneLevelListRequests, oneLevelListFutures, oneLevelObjectListings);
@@ -173,7 +191,7 @@ class OBSFsDFSListing extends ObjectListing {
                     increaseLevelStats(levelStatsList, levels.get(i), true);
                     newResultNum++;
                 } else {
-                    resultQueue.add(new ListEntity(extenedCommonPrefixes, levels.get(i)));
+                    enqueueResult(resultQueue, new ListEntity(extenedCommonPrefixes, levels.get(i)), levelStatsList);
                 }
             }
 
@@ -189,7 +207,7 @@ class OBSFsDFSListing extends ObjectListing {
                     increaseLevelStats(levelStatsList, levels.get(i), obj.getObjectKey().endsWith("/"));
                     newResultNum++;
                 } else {
-                    resultQueue.add(new ListEntity(obj, levels.get(i)));
+                    enqueueResult(resultQueue, new ListEntity(obj, levels.get(i)), levelStatsList);
                 }
             }
         }
@@ -229,9 +247,10 @@ class OBSFsDFSListing extends ObjectListing {
     }
 
     static void submitOneLevelListTasks(final OBSFileSystem owner, final Stack<ListEntity> listStack,
-                                        final int maxKeyNum, final List<ListObjectsRequest> oneLevelListRequests,
+                                        final int maxKeyNum, final int parallelNum,
+                                        final List<ListObjectsRequest> oneLevelListRequests,
                                         final List<Future<ObjectListing>> oneLevelListFutures, final List<Integer> levels) {
-        for (int i = 0; i < owner.getListParallelFactor() && !listStack.empty(); i++) {
+        for (int i = 0; i < parallelNum && !listStack.empty(); i++) {
             ListEntity listEntity = listStack.pop();
             if (listEntity.getType() == ListEntityType.LIST_TAIL) {
                 if (listEntity.getNextMarker() != null) {
@@ -252,7 +271,7 @@ class OBSFsDFSListing extends ObjectListing {
             } else {
                 String oneLevelListPrefix = listEntity.getType() == ListEntityType.COMMON_PREFIX
                         ? listEntity.getCommonPrefix()
-                        : listEntity.getObjectSummary().getObjectKey();
+                        : listEntity.getObjectKey();
                 ListObjectsRequest oneLevelListRequest = OBSCommonUtils.createListObjectsRequest(owner,
                         oneLevelListPrefix, "/", maxKeyNum);
                 oneLevelListRequests.add(oneLevelListRequest);
@@ -317,8 +336,8 @@ class OBSFsDFSListing extends ObjectListing {
                 throw new RuntimeException("cannot put common prefix (" + listEntity + ") into result queue");
             } else {
                 objectSummaries.add(listEntity.getObjectSummary());
-                increaseLevelStats(levelStatsList, listEntity.getLevel(),
-                        listEntity.getObjectSummary().getObjectKey().endsWith("/"));
+                getLevelStats(levelStatsList, listEntity.getLevel()).decreaseQueuedNum();
+                increaseLevelStats(levelStatsList, listEntity.getLevel(), listEntity.getObjectKey().endsWith("/"));
                 resultNum++;
             }
         }
@@ -340,7 +359,7 @@ class OBSFsDFSListing extends ObjectListing {
         }
 
         Stack<ListEntity> listStack = new Stack<>();
-        Queue<ListEntity> resultQueue = new LinkedList<>();
+        Queue<ListEntity> resultQueue = new ArrayDeque<>();
         List<LevelStats> levelStatsList = new ArrayList<>();
 
         listStack.push(new ListEntity(prefix, 0));
@@ -363,6 +382,8 @@ class OBSFsDFSListing extends ObjectListing {
                         .append(levelStats.getDirNum())
                         .append(", fileNum=")
                         .append(levelStats.getFileNum())
+                        .append(", peakQueueDepth=")
+                        .append(levelStats.getPeakQueuedNum())
                         .append("; ");
             }
             LOG.debug("[list level statistics info] " + levelStatsStringBuilder.toString());
@@ -405,6 +426,8 @@ class OBSFsDFSListing extends ObjectListing {
                         .append(levelStats.getDirNum())
                         .append(", fileNum=")
                         .append(levelStats.getFileNum())
+                        .append(", peakQueueDepth=")
+                        .append(levelStats.getPeakQueuedNum())
                         .append("; ");
             }
             LOG.debug("[list level statistics info] " + levelStatsStringBuilder.toString());
@@ -445,9 +468,16 @@ class OBSFsDFSListing extends ObjectListing {
     }
 
     /**
-     * List entity for OBS depth first search listing.
+     * List entity for OBS depth first search listing. An object summary is
+     * kept as the key, length and modification time its consumers read, not
+     * as the listed {@link ObsObject}.
      */
     static class ListEntity {
+        /**
+         * Modification time of an object summary listed without one.
+         */
+        private static final long UNKNOWN_LAST_MODIFIED = Long.MIN_VALUE;
+
         /**
          * Entity level.
          */
@@ -462,9 +492,24 @@ class OBSFsDFSListing extends ObjectListing {
         private String commonPrefix = null;
 
         /**
-         * For OBJECT_SUMMARY.
+         * Key, for OBJECT_SUMMARY.
+         */
+        private String objectKey = null;
+
+        /**
+         * Content length, for OBJECT_SUMMARY.
+         */
+        private long contentLength;
+
+        /**
+         * Modification time in milliseconds, for OBJECT_SUMMARY.
+         */
+        private long lastModified = UNKNOWN_LAST_MODIFIED;
+
+        /**
+         * ETag, for OBJECT_SUMMARY.
          */
-        private ObsObject objectSummary = null;
+        private String etag = null;
 
         /**
          * For LIST_TAIL.
@@ -484,7 +529,15 @@ class OBSFsDFSListing extends ObjectListing {
 
         ListEntity(final ObsObject summary, final int entityLevel) {
             this.type = ListEntityType.OBJECT_SUMMARY;
-            this.objectSummary = summary;
+            this.objectKey = summary.getObjectKey();
+            ObjectMetadata metadata = summary.getMetadata();
+            if (metadata != null) {
+                this.contentLength = metadata.getContentLength() == null ? 0 : metadata.getContentLength();
+                if (metadata.getLastModified() != null) {
+                    this.lastModified = metadata.getLastModified().getTime();
+                }
+                this.etag = metadata.getEtag();
+            }
             this.level = entityLevel;
         }
 
@@ -507,7 +560,25 @@ class OBSFsDFSListing extends ObjectListing {
             return commonPrefix;
         }
 
+        String getObjectKey() {
+            return objectKey;
+        }
+
+        /**
+         * Rebuild the object summary.
+         *
+         * @return a summary with the key, length, modification time and ETag
+         */
         ObsObject getObjectSummary() {
+            ObjectMetadata metadata = new ObjectMetadata();
+            metadata.setContentLength(contentLength);
+            metadata.setEtag(etag);
+            if (lastModified != UNKNOWN_LAST_MODIFIED) {
+                metadata.setLastModified(new Date(lastModified));
+            }
+            ObsObject objectSummary = new ObsObject();
+            objectSummary.setObjectKey(objectKey);
+            objectSummary.setMetadata(metadata);
             return objectSummary;
         }
 
@@ -522,7 +593,7 @@ class OBSFsDFSListing extends ObjectListing {
         @Override
         public String toString() {
             return "type: " + type + ", commonPrefix: " + (commonPrefix != null ? commonPrefix : "")
-                    + ", objectSummary: " + (objectSummary != null ? objectSummary : "") + ", prefix: " + (prefix != null
+                    + ", objectKey: " + (objectKey != null ? objectKey : "") + ", prefix: " + (prefix != null
                     ? prefix
                     : "") + ", nextMarker: " + (nextMarker != null ? nextMarker : "");
         }
@@ -547,6 +618,16 @@ class OBSFsDFSListing extends ObjectListing {
          */
         private long fileNum;
 
+        /**
+         * Number of entries of the level in the result queue.
+         */
+        private long queuedNum;
+
+        /**
+         * Highest number of entries of the level in the result queue.
+         */
+        private long peakQueuedNum;
+
         LevelStats(final int entityLevel) {
             this.level = entityLevel;
             this.dirNum = 0;
@@ -561,6 +642,15 @@ class OBSFsDFSListing extends ObjectListing {
             fileNum++;
         }
 
+        void increaseQueuedNum() {
+            queuedNum++;
+            peakQueuedNum = Math.max(peakQueuedNum, queuedNum);
+        }
+
+        void decreaseQueuedNum() {
+            queuedNum--;
+        }
+
         int getLevel() {
             return level;
         }
@@ -572,5 +662,9 @@ class OBSFsDFSListing extends ObjectListing {
         long getFileNum() {
             return fileNum;
         }
+
+        long getPeakQueuedNum() {
+            return peakQueuedNum;
+        }
     }
 }
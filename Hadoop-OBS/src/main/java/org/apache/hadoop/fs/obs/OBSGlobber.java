@@ -0,0 +1,313 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.fs.obs;
+
+import com.obs.services.exception.ObsException;
+import com.obs.services.model.ListObjectsRequest;
+import com.obs.services.model.ObjectListing;
+import com.obs.services.model.ObsObject;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.GlobPattern;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Glob expansion for {@link OBSFileSystem} with listings of the literal
+ * prefix of the pattern, matched on the client, instead of one listing per
+ * directory level and wildcard.
+ *
+ * <p>A pattern whose wildcards are all in its last component is expanded
+ * with one delimited listing. Otherwise the prefix is listed recursively,
+ * and whenever a page ends inside a subtree whose fate is decided, because a
+ * level of it does not match or because it matches the whole pattern, the
+ * listing resumes after that subtree. Patterns with a literal component
+ * after a wildcard, such as {@code /data/*}{@code /_SUCCESS}, are left to
+ * the generic globber: the files next to the literal name do not decide any
+ * subtree, so the recursive listing would walk all of them.
+ */
+final class OBSGlobber {
+    /**
+     * Class logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(OBSGlobber.class);
+
+    /**
+     * Characters starting a wildcard in a path component.
+     */
+    private static final String WILDCARD_CHARS = "*?[{\\";
+
+    /**
+     * Filesystem to glob.
+     */
+    private final OBSFileSystem owner;
+
+    /**
+     * Key of the deepest directory with no wildcard in its path, with a
+     * trailing slash; empty for the root.
+     */
+    private final String baseKey;
+
+    /**
+     * Literal start of the first component with a wildcard.
+     */
+    private final String literalStart;
+
+    /**
+     * Compiled pattern of every component after the base directory.
+     */
+    private final List<Pattern> levels;
+
+    /**
+     * Matches found, by key.
+     */
+    private final Map<String, FileStatus> matches = new HashMap<>();
+
+    private OBSGlobber(final OBSFileSystem owner, final String baseKey, final String literalStart,
+                       final List<Pattern> levels) {
+        this.owner = owner;
+        this.baseKey = baseKey;
+        this.literalStart = literalStart;
+        this.levels = levels;
+    }
+
+    /**
+     * Create a globber for a pattern.
+     *
+     * @param owner   the filesystem
+     * @param pattern the pattern
+     * @return the globber, or null if the pattern has no wildcard or needs
+     * the generic globber: escapes, alternatives spanning directories, or
+     * literal components after a wildcard
+     */
+    static OBSGlobber create(final OBSFileSystem owner, final Path pattern) {
+        String patternPath = pattern.toUri().getPath();
+        if (patternPath.indexOf('\\') >= 0) {
+            return null;
+        }
+        int braceDepth = 0;
+        for (char c : patternPath.toCharArray()) {
+            if (c == '{') {
+                braceDepth++;
+            } else if (c == '}') {
+                braceDepth--;
+            } else if (c == '/' && braceDepth > 0) {
+                return null;
+            }
+        }
+
+        String key = OBSCommonUtils.pathToKey(owner, OBSCommonUtils.qualify(owner, pattern));
+        String[] components = key.isEmpty() ? new String[0] : key.split("/");
+        StringBuilder base = new StringBuilder();
+        List<Pattern> levels = new ArrayList<>();
+        String literalStart = "";
+        for (String component : components) {
+            if (levels.isEmpty() && !new GlobPattern(component).hasWildcard()) {
+                base.append(component).append('/');
+                continue;
+            }
+            if (levels.isEmpty()) {
+                int wildcard = 0;
+                while (wildcard < component.length() && WILDCARD_CHARS.indexOf(component.charAt(wildcard)) < 0) {
+                    wildcard++;
+                }
+                literalStart = component.substring(0, wildcard);
+            } else if (!new GlobPattern(component).hasWildcard()) {
+                return null;
+            }
+            levels.add(GlobPattern.compile(component));
+        }
+        if (levels.isEmpty()) {
+            return null;
+        }
+        return new OBSGlobber(owner, base.toString(), literalStart, levels);
+    }
+
+    /**
+     * Return the deepest directory with no wildcard in its path, under which
+     * the pattern is expanded.
+     *
+     * @return the base directory
+     */
+    Path getBasePath() {
+        return OBSCommonUtils.keyToQualifiedPath(owner,
+                baseKey.isEmpty() ? baseKey : baseKey.substring(0, baseKey.length() - 1));
+    }
+
+    /**
+     * Expand the pattern.
+     *
+     * @param filter filter of the matches
+     * @return the matching statuses, sorted by path
+     * @throws IOException on any failure to list
+     */
+    FileStatus[] glob(final PathFilter filter) throws IOException {
+        long startTime = System.currentTimeMillis();
+        int requests;
+        try {
+            requests = levels.size() == 1 ? listLevel() : listTree();
+        } catch (ObsException e) {
+            throw OBSCommonUtils.translateException("globStatus", baseKey + literalStart, e);
+        }
+        List<FileStatus> result = new ArrayList<>(matches.size());
+        for (FileStatus status : matches.values()) {
+            if (filter.accept(status.getPath())) {
+                result.add(status);
+            }
+        }
+        LOG.debug("Globbed {} matches of {} levels under {} with {} listings in {} ms", result.size(),
+                levels.size(), baseKey, requests, System.currentTimeMillis() - startTime);
+        FileStatus[] statuses = result.toArray(new FileStatus[0]);
+        // matches are collected by key, unordered
+        Arrays.sort(statuses);
+        return statuses;
+    }
+
+    /**
+     * List the children of the base directory with a delimiter.
+     *
+     * @return the number of listing requests
+     * @throws IOException on any failure to list
+     */
+    private int listLevel() throws IOException {
+        ListObjectsRequest request = newRequest("/", null);
+        ObjectListing objects = OBSCommonUtils.commonContinueListObjects(owner, request);
+        int requests = 1;
+        while (true) {
+            for (ObsObject summary : objects.getObjects()) {
+                String name = summary.getObjectKey().substring(baseKey.length());
+                if (!name.isEmpty() && !name.endsWith("/") && levels.get(0).matcher(name).matches()) {
+                    addFile(summary);
+                }
+            }
+            for (String prefix : objects.getCommonPrefixes()) {
+                String name = prefix.substring(baseKey.length(), prefix.length() - 1);
+                if (levels.get(0).matcher(name).matches()) {
+                    addDirectory(prefix.substring(0, prefix.length() - 1));
+                }
+            }
+            if (!objects.isTruncated()) {
+                return requests;
+            }
+            objects = OBSCommonUtils.commonContinueListObjects(owner, newRequest("/", objects.getNextMarker()));
+            requests++;
+        }
+    }
+
+    /**
+     * List the base directory recursively, skipping decided subtrees at page
+     * boundaries.
+     *
+     * @return the number of listing requests
+     * @throws IOException on any failure to list
+     */
+    private int listTree() throws IOException {
+        ObjectListing objects = OBSCommonUtils.commonContinueListObjects(owner, newRequest(null, null));
+        int requests = 1;
+        while (true) {
+            String skip = null;
+            for (ObsObject summary : objects.getObjects()) {
+                skip = match(summary);
+            }
+            if (!objects.isTruncated()) {
+                return requests;
+            }
+            // resume after the subtree of the last key if it is decided
+            String marker = skip != null ? skip + OBSCommonUtils.MAX_CHAR : objects.getNextMarker();
+            objects = OBSCommonUtils.commonContinueListObjects(owner, newRequest(null, marker));
+            requests++;
+        }
+    }
+
+    /**
+     * Match a key of the recursive listing against the levels.
+     *
+     * @param summary the object
+     * @return the prefix, with a trailing slash, of the decided subtree the
+     * key is in; null if undecided
+     */
+    private String match(final ObsObject summary) {
+        String key = summary.getObjectKey();
+        String relative = key.substring(baseKey.length());
+        if (relative.isEmpty()) {
+            return null;
+        }
+        boolean marker = relative.endsWith("/");
+        String[] components = (marker ? relative.substring(0, relative.length() - 1) : relative).split("/");
+        int depth = Math.min(components.length, levels.size());
+        int prefixLength = baseKey.length();
+        for (int i = 0; i < depth; i++) {
+            prefixLength += components[i].length() + 1;
+            boolean directory = i < components.length - 1 || marker;
+            if (!levels.get(i).matcher(components[i]).matches()) {
+                return directory ? key.substring(0, prefixLength) : null;
+            }
+        }
+        if (components.length < levels.size()) {
+            return null;
+        }
+        if (components.length == levels.size() && !marker) {
+            addFile(summary);
+            return null;
+        }
+        // a directory at the depth of the pattern, marked or implied
+        addDirectory(key.substring(0, prefixLength - 1));
+        return key.substring(0, prefixLength);
+    }
+
+    private ListObjectsRequest newRequest(final String delimiter, final String marker) {
+        ListObjectsRequest request = new ListObjectsRequest();
+        request.setBucketName(owner.getBucket());
+        request.setPrefix(baseKey + literalStart);
+        request.setMaxKeys(owner.getMaxKeys());
+        if (delimiter != null) {
+            request.setDelimiter(delimiter);
+        }
+        if (marker != null) {
+            request.setMarker(marker);
+        }
+        return request;
+    }
+
+    private void addFile(final ObsObject summary) {
+        Path path = toPath(summary.getObjectKey());
+        // a file wins over a directory of the same name
+        matches.put(summary.getObjectKey(), OBSCommonUtils.createFileStatus(path, summary,
+                owner.getDefaultBlockSize(path), owner.getShortUserName()));
+    }
+
+    private void addDirectory(final String key) {
+        if (!matches.containsKey(key)) {
+            matches.put(key, new OBSFileStatus(toPath(key), owner.getShortUserName()));
+        }
+    }
+
+    private Path toPath(final String key) {
+        return OBSCommonUtils.keyToQualifiedPath(owner, key);
+    }
+}
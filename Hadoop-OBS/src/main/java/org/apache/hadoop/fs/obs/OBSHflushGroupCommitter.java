@@ -0,0 +1,340 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.fs.obs;
+
+import com.google.common.base.Preconditions;
+import com.obs.services.model.fs.WriteFileRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Group commit of the appends issued by {@link OBSBlockOutputStream#hflush()}
+ * and {@link OBSBlockOutputStream#hsync()} on a posix bucket.
+ *
+ * <p>Flushed blocks are sealed into a queue instead of being appended one by
+ * one. A single sender on the transfer pool drains the queue, combining every
+ * block sealed within {@link OBSConstants#OUTPUT_STREAM_HFLUSH_GROUP_COMMIT_WINDOW}
+ * or while the previous append was in flight into one append request. Each
+ * caller waits until the position it sealed has been acknowledged.
+ *
+ * <p>OBS appends must land at the current length of the object, so append
+ * requests are issued in order; at most {@link
+ * OBSConstants#OUTPUT_STREAM_HFLUSH_GROUP_COMMIT_DEPTH} sealed blocks can be
+ * waiting for acknowledgement before sealing blocks the writer.
+ */
+final class OBSHflushGroupCommitter {
+    /**
+     * Class logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(OBSHflushGroupCommitter.class);
+
+    /**
+     * Owner FileSystem.
+     */
+    private final OBSFileSystem fs;
+
+    /**
+     * Key of the object being appended.
+     */
+    private final String key;
+
+    /**
+     * Executor running the sender.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Time to wait for more blocks before sending a batch, in milliseconds.
+     */
+    private final long windowMs;
+
+    /**
+     * Maximum number of sealed blocks waiting for acknowledgement.
+     */
+    private final int depth;
+
+    /**
+     * Sealed blocks not yet sent.
+     */
+    private final Deque<SealedBlock> pending = new ArrayDeque<>();
+
+    /**
+     * Number of sealed blocks not yet acknowledged, including the batch in
+     * flight.
+     */
+    private int unacknowledged;
+
+    /**
+     * Object length once every sealed block has been appended.
+     */
+    private long sealedPosition;
+
+    /**
+     * Object length acknowledged by OBS.
+     */
+    private long durablePosition;
+
+    /**
+     * Whether the sender is running.
+     */
+    private boolean senderRunning;
+
+    /**
+     * First append failure; every later call fails with it.
+     */
+    private IOException failure;
+
+    /**
+     * Create a group committer for an object whose current length is known.
+     *
+     * @param owner        the filesystem
+     * @param objectKey    key of the object to append to
+     * @param execService  executor running the sender
+     * @param objectLength current length of the object
+     */
+    OBSHflushGroupCommitter(final OBSFileSystem owner, final String objectKey, final ExecutorService execService,
+                            final long objectLength) {
+        this.fs = owner;
+        this.key = objectKey;
+        this.executor = execService;
+        this.windowMs = owner.getConf()
+                .getLong(OBSConstants.OUTPUT_STREAM_HFLUSH_GROUP_COMMIT_WINDOW,
+                        OBSConstants.DEFAULT_OUTPUT_STREAM_HFLUSH_GROUP_COMMIT_WINDOW);
+        this.depth = OBSCommonUtils.intOption(owner.getConf(), OBSConstants.OUTPUT_STREAM_HFLUSH_GROUP_COMMIT_DEPTH,
+                OBSConstants.DEFAULT_OUTPUT_STREAM_HFLUSH_GROUP_COMMIT_DEPTH, 1);
+        this.sealedPosition = objectLength;
+        this.durablePosition = objectLength;
+    }
+
+    /**
+     * Seal a block for appending. The block must have entered the upload
+     * state; it is closed once it has been appended or the committer failed.
+     *
+     * @param block  the block
+     * @param upload the upload source returned by the block, a file or stream
+     * @return the object length the caller has to wait for
+     * @throws IOException if a previous append failed or the caller was
+     *                     interrupted while waiting for room in the pipeline
+     */
+    synchronized long seal(final OBSDataBlocks.DataBlock block, final Object upload) throws IOException {
+        Preconditions.checkArgument(upload instanceof File || upload instanceof InputStream,
+                "Unsupported upload source %s", upload);
+        while (failure == null && unacknowledged >= depth) {
+            waitForProgress();
+        }
+        if (failure != null) {
+            OBSCommonUtils.closeAll(block);
+            throw new IOException("Append to " + key + " failed", failure);
+        }
+        pending.addLast(new SealedBlock(block, upload, block.dataSize()));
+        unacknowledged++;
+        sealedPosition += block.dataSize();
+        if (!senderRunning) {
+            try {
+                executor.execute(this::sendBatches);
+            } catch (RuntimeException e) {
+                failure = new IOException("Cannot start group append to " + key, e);
+                notifyAll();
+                throw failure;
+            }
+            senderRunning = true;
+        }
+        notifyAll();
+        return sealedPosition;
+    }
+
+    /**
+     * Object length once every sealed block has been appended.
+     *
+     * @return the sealed length
+     */
+    synchronized long getSealedPosition() {
+        return sealedPosition;
+    }
+
+    /**
+     * Wait until the object length acknowledged by OBS reaches the given
+     * position.
+     *
+     * @param position position returned by {@link #seal}
+     * @throws IOException if an append failed or the caller was interrupted
+     */
+    synchronized void awaitDurable(final long position) throws IOException {
+        while (failure == null && durablePosition < position) {
+            waitForProgress();
+        }
+        if (durablePosition < position) {
+            throw new IOException("Append to " + key + " failed", failure);
+        }
+    }
+
+    private void waitForProgress() throws InterruptedIOException {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for append to " + key);
+        }
+    }
+
+    /**
+     * Sender loop: append batches until the queue is empty.
+     */
+    private void sendBatches() {
+        while (true) {
+            List<SealedBlock> batch;
+            long position;
+            synchronized (this) {
+                lingerForBatch();
+                if (pending.isEmpty() || failure != null) {
+                    senderRunning = false;
+                    return;
+                }
+                batch = new ArrayList<>(pending);
+                pending.clear();
+                position = durablePosition;
+            }
+
+            long size = 0;
+            for (SealedBlock sealed : batch) {
+                size += sealed.size;
+            }
+            try {
+                append(batch, position);
+                synchronized (this) {
+                    durablePosition = position + size;
+                    unacknowledged -= batch.size();
+                    notifyAll();
+                }
+            } catch (IOException | RuntimeException e) {
+                LOG.error("Group append of {} blocks to {} at position {} failed", batch.size(), key, position, e);
+                synchronized (this) {
+                    failure = e instanceof IOException ? (IOException) e : new IOException(e);
+                    for (SealedBlock sealed : pending) {
+                        OBSCommonUtils.closeAll(sealed.block);
+                    }
+                    pending.clear();
+                    senderRunning = false;
+                    notifyAll();
+                }
+                return;
+            } finally {
+                for (SealedBlock sealed : batch) {
+                    OBSCommonUtils.closeAll(sealed.block);
+                }
+            }
+        }
+    }
+
+    /**
+     * Give writers the group commit window to seal more blocks into the
+     * batch about to be sent.
+     */
+    private void lingerForBatch() {
+        if (windowMs <= 0 || pending.isEmpty()) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() + windowMs;
+        long remaining = windowMs;
+        while (remaining > 0 && failure == null && unacknowledged < depth) {
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            remaining = deadline - System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Append a batch of sealed blocks in one request.
+     *
+     * @param batch    the blocks, in sealing order
+     * @param position current object length
+     * @throws IOException on any failure
+     */
+    private void append(final List<SealedBlock> batch, final long position) throws IOException {
+        LOG.debug("Group append of {} blocks to {} at position {}", batch.size(), key, position);
+        WriteFileRequest writeFileReq;
+        List<InputStream> streams = new ArrayList<>(batch.size());
+        try {
+            if (batch.size() == 1 && batch.get(0).upload instanceof File) {
+                writeFileReq = new WriteFileRequest(fs.getBucket(), key, (File) batch.get(0).upload, position);
+            } else {
+                for (SealedBlock sealed : batch) {
+                    streams.add(sealed.upload instanceof File
+                            ? new FileInputStream((File) sealed.upload)
+                            : (InputStream) sealed.upload);
+                }
+                writeFileReq = new WriteFileRequest(fs.getBucket(), key,
+                        new SequenceInputStream(Collections.enumeration(streams)), position);
+            }
+            writeFileReq.setAcl(fs.getCannedACL());
+            OBSCommonUtils.appendFile(fs, writeFileReq);
+        } finally {
+            OBSCommonUtils.closeAll(streams.toArray(new InputStream[0]));
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "OBSHflushGroupCommitter{key=" + key + ", sealedPosition=" + sealedPosition + ", durablePosition="
+                + durablePosition + ", unacknowledged=" + unacknowledged + '}';
+    }
+
+    /**
+     * A block sealed for appending.
+     */
+    private static final class SealedBlock {
+        /**
+         * The block, closed once appended.
+         */
+        private final OBSDataBlocks.DataBlock block;
+
+        /**
+         * Upload source of the block.
+         */
+        private final Object upload;
+
+        /**
+         * Data size of the block.
+         */
+        private final int size;
+
+        private SealedBlock(final OBSDataBlocks.DataBlock dataBlock, final Object uploadSource, final int dataSize) {
+            this.block = dataBlock;
+            this.upload = uploadSource;
+            this.size = dataSize;
+        }
+    }
+}
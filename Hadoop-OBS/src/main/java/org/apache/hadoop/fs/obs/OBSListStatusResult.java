@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.fs.obs;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+/**
+ * Outcome of the listing of one path in {@link
+ * OBSFileSystem#listStatuses(java.util.Collection)}: either the statuses
+ * {@link OBSFileSystem#listStatus(Path)} would have returned or the failure
+ * it would have thrown.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public final class OBSListStatusResult {
+    /**
+     * Path listed.
+     */
+    private final Path path;
+
+    /**
+     * Statuses of the path; null on failure.
+     */
+    private final FileStatus[] statuses;
+
+    /**
+     * Failure of the listing; null on success.
+     */
+    private final IOException exception;
+
+    private OBSListStatusResult(final Path path, final FileStatus[] statuses, final IOException exception) {
+        this.path = path;
+        this.statuses = statuses;
+        this.exception = exception;
+    }
+
+    static OBSListStatusResult listed(final Path path, final FileStatus[] statuses) {
+        return new OBSListStatusResult(path, statuses, null);
+    }
+
+    static OBSListStatusResult failed(final Path path, final IOException exception) {
+        return new OBSListStatusResult(path, null, exception);
+    }
+
+    /**
+     * Return the path listed, as given.
+     *
+     * @return the path
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Return the statuses of the path.
+     *
+     * @return the statuses of the entries of a directory, or the status of a
+     * file
+     * @throws FileNotFoundException if the path does not exist
+     * @throws IOException           the failure of the listing
+     */
+    public FileStatus[] getFileStatuses() throws IOException {
+        if (exception != null) {
+            throw exception;
+        }
+        return statuses;
+    }
+
+    /**
+     * Return the failure of the listing.
+     *
+     * @return the failure, a {@link FileNotFoundException} if the path does
+     * not exist; null if the path was listed
+     */
+    public IOException getException() {
+        return exception;
+    }
+
+    /**
+     * Return whether the path was listed.
+     *
+     * @return true if the path was listed
+     */
+    public boolean isListed() {
+        return exception == null;
+    }
+
+    @Override
+    public String toString() {
+        return "OBSListStatusResult{path=" + path + (exception == null
+                ? ", statuses=" + statuses.length
+                : ", exception=" + exception) + '}';
+    }
+}
@@ -27,10 +27,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.NoSuchElementException;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * OBS listing implementation.
@@ -79,7 +82,30 @@ class OBSListing {
      */
     FileStatusListingIterator createFileStatusListingIterator(final Path listPath, final ListObjectsRequest request,
                                                               final PathFilter filter, final FileStatusAcceptor acceptor) throws IOException {
-        return new FileStatusListingIterator(new ObjectListingIterator(listPath, request), filter, acceptor);
+        return createFileStatusListingIterator(listPath, request, filter, acceptor, true);
+    }
+
+    /**
+     * Create a FileStatus iterator against a path, with a given list object
+     * request, and the prefetch of its pages on the list pool turned on or
+     * off. Listings run on the list pool turn it off, so as not to wait for
+     * pages queued behind them.
+     *
+     * @param listPath path of the listing
+     * @param request  initial request to make
+     * @param filter   the filter on which paths to accept
+     * @param acceptor the class/predicate to decide which entries to accept in
+     *                 the listing based on the full file status.
+     * @param prefetch whether to prefetch pages
+     * @return the iterator
+     * @throws IOException IO Problems
+     */
+    FileStatusListingIterator createFileStatusListingIterator(final Path listPath, final ListObjectsRequest request,
+                                                              final PathFilter filter, final FileStatusAcceptor acceptor,
+                                                              final boolean prefetch) throws IOException {
+        long cacheGeneration = owner.getFileStatusCacheGeneration();
+        return new FileStatusListingIterator(new ObjectListingIterator(listPath, request, prefetch), filter,
+                acceptor, cacheGeneration);
     }
 
     /**
@@ -99,51 +125,80 @@ class OBSListing {
     interface FileStatusAcceptor {
 
         /**
-         * Predicate to decide whether or not to accept a summary entry.
+         * Predicate to decide whether or not to accept a summary entry, from
+         * its key, so that no path is built for the entries rejected.
          *
-         * @param keyPath qualified path to the entry
-         * @param summary summary entry
+         * @param key           key of the entry
+         * @param contentLength length of the entry
          * @return true if the entry is accepted (i.e. that a status entry
          * should be generated.
          */
-        boolean accept(Path keyPath, ObsObject summary);
+        boolean accept(String key, long contentLength);
 
         /**
          * Predicate to decide whether or not to accept a prefix.
          *
-         * @param keyPath      qualified path to the entry
          * @param commonPrefix the prefix
          * @return true if the entry is accepted (i.e. that a status entry
          * should be generated.)
          */
-        boolean accept(Path keyPath, String commonPrefix);
+        boolean accept(String commonPrefix);
     }
 
     /**
-     * A remote iterator which only iterates over a single `LocatedFileStatus`
-     * value.
+     * Return the key of a qualified path, to compare entry keys with.
+     *
+     * @param qualifiedPath a qualified path
+     * @return the key, "" for the root
+     */
+    private static String toSelfKey(final Path qualifiedPath) {
+        return qualifiedPath.toUri().getPath().substring(1);
+    }
+
+    /**
+     * Return whether a key maps to the path of the given key, as {@link
+     * OBSCommonUtils#keyToQualifiedPath(OBSFileSystem, String)} drops the
+     * trailing and repeated slashes of a key.
+     *
+     * @param key     key of an entry
+     * @param selfKey key of the listed path
+     * @return true if the key maps to the listed path
+     */
+    private static boolean isSelfKey(final String key, final String selfKey) {
+        String normalized = key.contains("//") ? OBSCommonUtils.keyToPath(key).toUri().getPath().substring(1) : key;
+        int end = normalized.length();
+        while (end > 0 && normalized.charAt(end - 1) == '/') {
+            end--;
+        }
+        return end == selfKey.length() && normalized.startsWith(selfKey);
+    }
+
+    /**
+     * A remote iterator which only iterates over a single status value.
      *
      * <p>If the status value is null, the iterator declares that it has no
      * data. This iterator is used to handle
-     * {@link OBSFileSystem#listStatus(Path)}
-     * calls where the path handed in refers to a file, not a directory: this is
-     * the iterator returned.
+     * {@link OBSFileSystem#listStatusIterator(Path)} and {@link
+     * OBSFileSystem#listLocatedStatus(Path)} calls where the path handed in
+     * refers to a file, not a directory: this is the iterator returned.
+     *
+     * @param <T> type of the status
      */
-    static final class SingleStatusRemoteIterator implements RemoteIterator<LocatedFileStatus> {
+    static final class SingleStatusRemoteIterator<T extends FileStatus> implements RemoteIterator<T> {
 
         /**
          * The status to return; set to null after the first iteration.
          */
-        private LocatedFileStatus status;
+        private T status;
 
         /**
          * Constructor.
          *
-         * @param locatedFileStatus status value: may be null, in which case the
-         *                          iterator is empty.
+         * @param fileStatus status value: may be null, in which case the
+         *                   iterator is empty.
          */
-        SingleStatusRemoteIterator(final LocatedFileStatus locatedFileStatus) {
-            this.status = locatedFileStatus;
+        SingleStatusRemoteIterator(final T fileStatus) {
+            this.status = fileStatus;
         }
 
         /**
@@ -163,14 +218,13 @@ class OBSListing {
          * @return the non-null status element passed in when the instance was
          * constructed, if it ha not already been retrieved.
          * @throws NoSuchElementException if this is the second call, or it is
-         *                                the first call and a null {@link
-         *                                LocatedFileStatus} entry was passed to
-         *                                the constructor.
+         *                                the first call and a null entry was
+         *                                passed to the constructor.
          */
         @Override
-        public LocatedFileStatus next() {
+        public T next() {
             if (hasNext()) {
-                LocatedFileStatus s = this.status;
+                T s = this.status;
                 status = null;
                 return s;
             } else {
@@ -185,39 +239,37 @@ class OBSListing {
      */
     static class AcceptFilesOnly implements FileStatusAcceptor {
         /**
-         * path to qualify.
+         * Key of the qualified path.
          */
-        private final Path qualifiedPath;
+        private final String selfKey;
 
         AcceptFilesOnly(final Path path) {
-            this.qualifiedPath = path;
+            this.selfKey = toSelfKey(path);
         }
 
         /**
          * Reject a summary entry if the key path is the qualified Path, or it
          * ends with {@code "_$folder$"}.
          *
-         * @param keyPath key path of the entry
-         * @param summary summary entry
+         * @param key           key of the entry
+         * @param contentLength length of the entry
          * @return true if the entry is accepted (i.e. that a status entry
          * should be generated.
          */
         @Override
-        public boolean accept(final Path keyPath, final ObsObject summary) {
-            return !keyPath.equals(qualifiedPath) && !summary.getObjectKey().endsWith(OBSConstants.OBS_FOLDER_SUFFIX)
-                    && !OBSCommonUtils.objectRepresentsDirectory(summary.getObjectKey(),
-                    summary.getMetadata().getContentLength());
+        public boolean accept(final String key, final long contentLength) {
+            return !isSelfKey(key, selfKey) && !key.endsWith(OBSConstants.OBS_FOLDER_SUFFIX)
+                    && !OBSCommonUtils.objectRepresentsDirectory(key, contentLength);
         }
 
         /**
          * Accept no directory paths.
          *
-         * @param keyPath qualified path to the entry
-         * @param prefix  common prefix in listing.
+         * @param prefix common prefix in listing.
          * @return false, always.
          */
         @Override
-        public boolean accept(final Path keyPath, final String prefix) {
+        public boolean accept(final String prefix) {
             return false;
         }
     }
@@ -229,9 +281,9 @@ class OBSListing {
     static class AcceptAllButSelfAndS3nDirs implements FileStatusAcceptor {
 
         /**
-         * Base path.
+         * Key of the base path.
          */
-        private final Path qualifiedPath;
+        private final String selfKey;
 
         /**
          * Constructor.
@@ -239,34 +291,33 @@ class OBSListing {
          * @param path an already-qualified path.
          */
         AcceptAllButSelfAndS3nDirs(final Path path) {
-            this.qualifiedPath = path;
+            this.selfKey = toSelfKey(path);
         }
 
         /**
          * Reject a summary entry if the key path is the qualified Path, or it
          * ends with {@code "_$folder$"}.
          *
-         * @param keyPath key path of the entry
-         * @param summary summary entry
+         * @param key           key of the entry
+         * @param contentLength length of the entry
          * @return true if the entry is accepted (i.e. that a status entry
          * should be generated.)
          */
         @Override
-        public boolean accept(final Path keyPath, final ObsObject summary) {
-            return !keyPath.equals(qualifiedPath) && !summary.getObjectKey().endsWith(OBSConstants.OBS_FOLDER_SUFFIX);
+        public boolean accept(final String key, final long contentLength) {
+            return !isSelfKey(key, selfKey) && !key.endsWith(OBSConstants.OBS_FOLDER_SUFFIX);
         }
 
         /**
          * Accept all prefixes except the one for the base path, "self".
          *
-         * @param keyPath qualified path to the entry
-         * @param prefix  common prefix in listing.
+         * @param prefix common prefix in listing.
          * @return true if the entry is accepted (i.e. that a status entry
          * should be generated.
          */
         @Override
-        public boolean accept(final Path keyPath, final String prefix) {
-            return !keyPath.equals(qualifiedPath);
+        public boolean accept(final String prefix) {
+            return !isSelfKey(prefix, selfKey);
         }
     }
 
@@ -319,9 +370,24 @@ class OBSListing {
         private int batchSize;
 
         /**
-         * Iterator over the current set of results.
+         * Entries of the current batch.
+         */
+        private StatusPage page = new StatusPage(0);
+
+        /**
+         * Position of the next entry in the current batch.
+         */
+        private int position;
+
+        /**
+         * Path of the entry at the position, once built for the path filter.
+         */
+        private Path positionPath;
+
+        /**
+         * Generation of the status cache before the listing started.
          */
-        private ListIterator<FileStatus> statusBatchIterator;
+        private final long cacheGeneration;
 
         /**
          * Create an iterator over file status entries.
@@ -332,13 +398,17 @@ class OBSListing {
          * @param fileStatusAcceptor the class/predicate to decide which entries
          *                           to accept in the listing based on the full
          *                           file status.
+         * @param generation         generation of the status cache read
+         *                           before the listing started
          * @throws IOException IO Problems
          */
         FileStatusListingIterator(final ObjectListingIterator listPath, final PathFilter pathFilter,
-                                  final FileStatusAcceptor fileStatusAcceptor) throws IOException {
+                                  final FileStatusAcceptor fileStatusAcceptor, final long generation)
+                throws IOException {
             this.source = listPath;
             this.filter = pathFilter;
             this.acceptor = fileStatusAcceptor;
+            this.cacheGeneration = generation;
             // build the first set of results. This will not trigger any
             // remote IO, assuming the source iterator is in its initial
             // iteration
@@ -355,7 +425,7 @@ class OBSListing {
          */
         @Override
         public boolean hasNext() throws IOException {
-            return statusBatchIterator.hasNext() || requestNextBatch();
+            return skipToAccepted() || requestNextBatch();
         }
 
         @Override
@@ -363,7 +433,42 @@ class OBSListing {
             if (!hasNext()) {
                 throw new NoSuchElementException();
             }
-            return statusBatchIterator.next();
+            String key = page.keys[position];
+            Path keyPath = positionPath != null ? positionPath : OBSCommonUtils.keyToQualifiedPath(owner, key);
+            FileStatus status = OBSCommonUtils.createFileStatus(keyPath, page.lengths[position],
+                    page.modificationTimes[position], page.kinds[position], owner.getDefaultBlockSize(keyPath),
+                    owner.getShortUserName(), page.etags[position]);
+            // release the entry
+            page.keys[position] = null;
+            page.etags[position] = null;
+            position++;
+            positionPath = null;
+            LOG.debug("Adding: {}", status);
+            owner.cacheFileStatus(status, cacheGeneration);
+            return status;
+        }
+
+        /**
+         * Move to the next entry of the current batch accepted by the path
+         * filter, building its path only if the filter needs it.
+         *
+         * @return true if there is such an entry
+         */
+        private boolean skipToAccepted() {
+            if (positionPath != null || filter == ACCEPT_ALL) {
+                return position < page.size;
+            }
+            while (position < page.size) {
+                Path keyPath = OBSCommonUtils.keyToQualifiedPath(owner, page.keys[position]);
+                if (filter.accept(keyPath)) {
+                    positionPath = keyPath;
+                    return true;
+                }
+                LOG.debug("Ignoring: {}", keyPath);
+                page.keys[position] = null;
+                position++;
+            }
+            return false;
         }
 
         /**
@@ -394,7 +499,8 @@ class OBSListing {
         }
 
         /**
-         * Build the next status batch from a listing.
+         * Build the next status batch from a listing, keeping the key, length
+         * and modification time of the accepted entries.
          *
          * @param objects the next object listing
          * @return true if this added any entries after filtering
@@ -403,24 +509,24 @@ class OBSListing {
             // counters for debug logs
             int added = 0;
             int ignored = 0;
-            // list to fill in with results. Initial size will be list maximum.
-            List<FileStatus> stats = new ArrayList<>(objects.getObjects().size() + objects.getCommonPrefixes().size());
+            // entries to fill in. Initial size will be list maximum.
+            StatusPage stats = new StatusPage(objects.getObjects().size() + objects.getCommonPrefixes().size());
             // objects
             for (ObsObject summary : objects.getObjects()) {
                 String key = summary.getObjectKey();
-                Path keyPath = OBSCommonUtils.keyToQualifiedPath(owner, key);
+                long contentLength = summary.getMetadata().getContentLength();
                 if (LOG.isDebugEnabled()) {
-                    LOG.debug("{}: {}", keyPath, OBSCommonUtils.stringify(summary));
+                    LOG.debug("{}: {}", key, OBSCommonUtils.stringify(summary));
                 }
                 // Skip over keys that are ourselves and old OBS _$folder$ files
-                if (acceptor.accept(keyPath, summary) && filter.accept(keyPath)) {
-                    FileStatus status = OBSCommonUtils.createFileStatus(keyPath, summary,
-                            owner.getDefaultBlockSize(keyPath), owner.getShortUserName());
-                    LOG.debug("Adding: {}", status);
-                    stats.add(status);
+                if (acceptor.accept(key, contentLength)) {
+                    byte kind = OBSCommonUtils.objectEntryKind(key, contentLength);
+                    stats.add(key, contentLength,
+                            OBSCommonUtils.entryModificationTime(kind, summary.getMetadata().getLastModified()), kind,
+                            summary.getMetadata().getEtag());
                     added++;
                 } else {
-                    LOG.debug("Ignoring: {}", keyPath);
+                    LOG.debug("Ignoring: {}", key);
                     ignored++;
                 }
             }
@@ -428,26 +534,22 @@ class OBSListing {
             // prefixes: always directories
             for (ObsObject prefix : objects.getExtenedCommonPrefixes()) {
                 String key = prefix.getObjectKey();
-                Path keyPath = OBSCommonUtils.keyToQualifiedPath(owner, key);
-                if (acceptor.accept(keyPath, key) && filter.accept(keyPath)) {
-                    long lastModified = prefix.getMetadata().getLastModified() == null
-                            ? System.currentTimeMillis()
-                            : OBSCommonUtils.dateToLong(prefix.getMetadata().getLastModified());
-                    FileStatus status = new OBSFileStatus(keyPath, lastModified, lastModified,
-                            owner.getShortUserName());
-                    LOG.debug("Adding directory: {}", status);
+                if (acceptor.accept(key)) {
+                    stats.add(key, 0, OBSCommonUtils.entryModificationTime(OBSCommonUtils.COMMON_PREFIX_ENTRY,
+                            prefix.getMetadata().getLastModified()), OBSCommonUtils.COMMON_PREFIX_ENTRY, null);
                     added++;
-                    stats.add(status);
                 } else {
-                    LOG.debug("Ignoring directory: {}", keyPath);
+                    LOG.debug("Ignoring directory: {}", key);
                     ignored++;
                 }
             }
 
             // finish up
-            batchSize = stats.size();
-            statusBatchIterator = stats.listIterator();
-            boolean hasNext = statusBatchIterator.hasNext();
+            batchSize = stats.size;
+            page = stats;
+            position = 0;
+            positionPath = null;
+            boolean hasNext = skipToAccepted();
             LOG.debug("Added {} entries; ignored {}; hasNext={}; hasMoreObjects={}", added, ignored, hasNext,
                     objects.isTruncated());
             return hasNext;
@@ -463,6 +565,61 @@ class OBSListing {
         }
     }
 
+    /**
+     * Entries of one listing page, kept as the key, length, modification
+     * time, kind and ETag of each entry in arrays, so that the paths and statuses are
+     * only built for the entries returned.
+     */
+    private static final class StatusPage {
+        /**
+         * Keys of the entries.
+         */
+        private final String[] keys;
+
+        /**
+         * Lengths of the entries.
+         */
+        private final long[] lengths;
+
+        /**
+         * Modification times of the entries, in milliseconds.
+         */
+        private final long[] modificationTimes;
+
+        /**
+         * Kinds of the entries, such as {@link OBSCommonUtils#FILE_ENTRY}.
+         */
+        private final byte[] kinds;
+
+        /**
+         * ETags of the entries, kept in the statuses of files only.
+         */
+        private final String[] etags;
+
+        /**
+         * Number of entries.
+         */
+        private int size;
+
+        private StatusPage(final int capacity) {
+            this.keys = new String[capacity];
+            this.lengths = new long[capacity];
+            this.modificationTimes = new long[capacity];
+            this.kinds = new byte[capacity];
+            this.etags = new String[capacity];
+        }
+
+        private void add(final String key, final long length, final long modificationTime, final byte kind,
+                         final String etag) {
+            keys[size] = key;
+            lengths[size] = length;
+            modificationTimes[size] = modificationTime;
+            kinds[size] = kind;
+            etags[size] = etag;
+            size++;
+        }
+    }
+
     /**
      * Wraps up OBS `ListObjects` requests in a remote iterator which will ask
      * for more listing data if needed.
@@ -511,19 +668,56 @@ class OBSListing {
          */
         private int maxKeys;
 
+        /**
+         * Maximum number of pages fetched ahead of the consumer; 0 fetches
+         * every page on demand.
+         */
+        private final int prefetchDepth;
+
+        /**
+         * Pages fetched ahead and not consumed yet, guarded by this
+         * iterator.
+         */
+        private final Deque<ObjectListing> prefetched = new ArrayDeque<>();
+
+        /**
+         * Last page fetched, from which the next one is requested.
+         */
+        private ObjectListing lastFetched;
+
+        /**
+         * Whether a prefetch is running on the list pool.
+         */
+        private boolean fetching;
+
+        /**
+         * Failure of the last prefetch, rethrown to the consumer.
+         */
+        private IOException prefetchFailure;
+
         /**
          * Constructor -calls {@link OBSCommonUtils#listObjects} on the request
          * to populate the initial set of results/fail if there was a problem
          * talking to the bucket.
          *
-         * @param path    path of the listing
-         * @param request initial request to make
+         * @param path     path of the listing
+         * @param request  initial request to make
+         * @param prefetch whether to prefetch pages on the list pool
          * @throws IOException on any failure to list objects
          */
-        ObjectListingIterator(final Path path, final ListObjectsRequest request) throws IOException {
+        ObjectListingIterator(final Path path, final ListObjectsRequest request, final boolean prefetch)
+                throws IOException {
             this.listPath = path;
             this.maxKeys = owner.getMaxKeys();
             this.objects = OBSCommonUtils.listObjects(owner, request);
+            this.lastFetched = objects;
+            // the dfs and sharded listings already fan out on the list pool
+            // and wait for it, so running them from a pool thread could
+            // starve them; manifest pages are read from memory
+            this.prefetchDepth = !prefetch || objects instanceof OBSFsDFSListing
+                    || objects instanceof OBSShardedListing || objects instanceof OBSManifestListing
+                    ? 0
+                    : owner.getListPrefetchDepth();
         }
 
         /**
@@ -538,42 +732,122 @@ class OBSListing {
 
         /**
          * Ask for the next listing. For the first invocation, this returns the
-         * initial set, with no remote IO. For later requests, OBS will be
-         * queried, hence the calls may block or fail.
+         * initial set, with no remote IO. For later requests, the page is
+         * taken from those prefetched on the list pool, or OBS is queried,
+         * hence the calls may block or fail. Every page handed out starts the
+         * prefetch of the following ones, up to the prefetch depth.
          *
          * @return the next object listing.
          * @throws IOException            if a query made of OBS fails.
          * @throws NoSuchElementException if there is no more data to list.
          */
         @Override
-        public ObjectListing next() throws IOException {
+        public synchronized ObjectListing next() throws IOException {
             if (firstListing) {
                 // on the first listing, don't request more data.
                 // Instead just clear the firstListing flag so that it future
                 // calls will request new data.
                 firstListing = false;
             } else {
-                try {
-                    if (!objects.isTruncated()) {
-                        // nothing more to request: fail.
-                        throw new NoSuchElementException("No more results in listing of " + listPath);
-                    }
-                    // need to request a new set of objects.
-                    LOG.debug("[{}], Requesting next {} objects under {}", listingCount, maxKeys, listPath);
-                    objects = OBSCommonUtils.continueListObjects(owner, objects);
-                    listingCount++;
-                    LOG.debug("New listing status: {}", this);
-                } catch (ObsException e) {
-                    throw OBSCommonUtils.translateException("listObjects()", listPath, e);
+                if (!objects.isTruncated()) {
+                    // nothing more to request: fail.
+                    throw new NoSuchElementException("No more results in listing of " + listPath);
                 }
+                objects = nextPage();
+                listingCount++;
+                LOG.debug("New listing status: {}", this);
             }
+            startPrefetch();
             return objects;
         }
 
+        /**
+         * Take the next page, waiting for a running prefetch or querying OBS
+         * when none is running.
+         *
+         * @return the next page
+         * @throws IOException on any failure to list the page
+         */
+        private ObjectListing nextPage() throws IOException {
+            while (prefetched.isEmpty() && prefetchFailure == null && fetching) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted listing " + listPath);
+                }
+            }
+            if (!prefetched.isEmpty()) {
+                return prefetched.poll();
+            }
+            if (prefetchFailure != null) {
+                IOException e = prefetchFailure;
+                prefetchFailure = null;
+                throw e;
+            }
+            // need to request a new set of objects.
+            LOG.debug("[{}], Requesting next {} objects under {}", listingCount, maxKeys, listPath);
+            lastFetched = fetch(lastFetched);
+            return lastFetched;
+        }
+
+        private ObjectListing fetch(final ObjectListing previous) throws IOException {
+            try {
+                return OBSCommonUtils.continueListObjects(owner, previous);
+            } catch (ObsException e) {
+                throw OBSCommonUtils.translateException("listObjects()", listPath, e);
+            }
+        }
+
+        /**
+         * Fetch the page after the last one fetched on the list pool, unless
+         * a prefetch is running, the prefetch depth is reached or the listing
+         * is complete. Called with the iterator lock held.
+         */
+        private void startPrefetch() {
+            if (fetching || prefetchFailure != null || prefetched.size() >= prefetchDepth
+                    || !lastFetched.isTruncated()) {
+                return;
+            }
+            final ObjectListing previous = lastFetched;
+            fetching = true;
+            try {
+                owner.getBoundedListThreadPool().execute(() -> prefetch(previous));
+            } catch (RejectedExecutionException e) {
+                // the pool is saturated: the consumer fetches on demand
+                LOG.debug("List pool saturated, not prefetching after page {} of {}", listingCount, listPath);
+                fetching = false;
+            }
+        }
+
+        private void prefetch(final ObjectListing previous) {
+            LOG.debug("Prefetching next {} objects under {}", maxKeys, listPath);
+            ObjectListing page = null;
+            IOException failure = null;
+            try {
+                page = fetch(previous);
+            } catch (IOException e) {
+                failure = e;
+            } catch (RuntimeException e) {
+                failure = new IOException("Failed to prefetch listing of " + listPath, e);
+            }
+            synchronized (this) {
+                fetching = false;
+                if (page != null) {
+                    prefetched.add(page);
+                    lastFetched = page;
+                    startPrefetch();
+                } else {
+                    prefetchFailure = failure;
+                }
+                notifyAll();
+            }
+        }
+
         @Override
-        public String toString() {
+        public synchronized String toString() {
             return "Object listing iterator against " + listPath + "; listing count " + listingCount + "; isTruncated="
-                    + objects.isTruncated();
+                    + objects.isTruncated() + "; prefetched=" + prefetched.size();
         }
 
     }
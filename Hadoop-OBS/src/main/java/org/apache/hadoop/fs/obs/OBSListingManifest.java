@@ -0,0 +1,472 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.fs.obs;
+
+import com.obs.services.model.ListObjectsRequest;
+import com.obs.services.model.ObjectListing;
+import com.obs.services.model.ObjectMetadata;
+import com.obs.services.model.ObsObject;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocalFileSystem;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Sorted snapshot of the recursive listing of a prefix, written to a local or
+ * OBS file, that later listings under the prefix are served from while it is
+ * valid.
+ *
+ * <p>A manifest is valid for {@link OBSConstants#LISTING_MANIFEST_MAX_AGE}
+ * milliseconds after it was written, or forever if that is 0, which suits
+ * prefixes never written again. On posix buckets, an expired manifest is
+ * still valid for the one-level listing of a directory whose modification
+ * time, to the second, is the one in the manifest and before the manifest
+ * was written.
+ *
+ * <p>The file holds a header, the entries in key order, the offsets of the
+ * entries and a trailer:
+ * <pre>
+ *   header:  magic, version, creation time, bucket, prefix
+ *   entry:   key, length, modification time, etag
+ *   offsets: offset of every entry
+ *   trailer: offset of the offsets, number of entries, magic
+ * </pre>
+ * Integers are big endian, strings are their UTF-8 length then bytes. Local
+ * files are memory mapped; other files are read in memory when added.
+ */
+final class OBSListingManifest {
+    /**
+     * Class logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(OBSListingManifest.class);
+
+    /**
+     * Magic number at the start and the end of a manifest.
+     */
+    private static final int MAGIC = 0x4F424C4D;
+
+    /**
+     * Version of the manifest format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Length of the trailer.
+     */
+    private static final int TRAILER_LENGTH = 16;
+
+    /**
+     * Length of an entry besides its key and etag: their lengths, the
+     * length and modification time, and its offset.
+     */
+    private static final int ENTRY_OVERHEAD = 32;
+
+    /**
+     * Largest manifest, whose offsets fit in an int.
+     */
+    private static final long MAX_MANIFEST_SIZE = Integer.MAX_VALUE;
+
+    /**
+     * Path of the manifest file.
+     */
+    private final Path path;
+
+    /**
+     * Content of the manifest file.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Time the listing of the manifest started.
+     */
+    private final long creationTime;
+
+    /**
+     * Bucket listed.
+     */
+    private final String bucket;
+
+    /**
+     * Prefix listed.
+     */
+    private final String prefix;
+
+    /**
+     * Position of the offsets of the entries.
+     */
+    private final int offsetsPosition;
+
+    /**
+     * Number of entries.
+     */
+    private final int count;
+
+    private OBSListingManifest(final Path manifestPath, final ByteBuffer content) throws IOException {
+        this.path = manifestPath;
+        this.buffer = content;
+        int size = content.limit();
+        if (size < 8 + TRAILER_LENGTH || content.getInt(0) != MAGIC || content.getInt(size - 4) != MAGIC) {
+            throw new IOException("Not a listing manifest: " + manifestPath);
+        }
+        if (content.getInt(4) != VERSION) {
+            throw new IOException("Unsupported version " + content.getInt(4) + " of listing manifest: "
+                    + manifestPath);
+        }
+        this.creationTime = content.getLong(8);
+        this.bucket = readString(16);
+        this.prefix = readString(16 + 4 + content.getInt(16));
+        this.offsetsPosition = (int) content.getLong(size - TRAILER_LENGTH);
+        this.count = content.getInt(size - 8);
+    }
+
+    /**
+     * Write the manifest of the recursive listing of a directory.
+     *
+     * <p>The entries are held in memory to be sorted before they are written,
+     * as posix listings are not in key order, so writing a manifest takes
+     * about as much heap as the manifest file. The listing fails as soon as
+     * the manifest would exceed 2GB, the most it can hold.
+     *
+     * @param owner    the owner OBSFileSystem instance
+     * @param dir      the directory
+     * @param manifest path of the manifest file, on any filesystem
+     * @return the number of entries written
+     * @throws IOException on any failure to list or write
+     */
+    static long write(final OBSFileSystem owner, final Path dir, final Path manifest) throws IOException {
+        String key = OBSCommonUtils.pathToKey(owner, OBSCommonUtils.qualify(owner, dir));
+        String listPrefix = key.isEmpty() ? key : OBSCommonUtils.maybeAddTrailingSlash(key);
+        long startTime = System.currentTimeMillis();
+        List<Entry> entries = new ArrayList<>();
+        long size = 4 + 4 + 8 + 4 + utf8Length(owner.getBucket()) + 4 + utf8Length(listPrefix) + TRAILER_LENGTH;
+        ListObjectsRequest request = OBSCommonUtils.createListObjectsRequest(owner, listPrefix, null);
+        ObjectListing objects = OBSCommonUtils.listBucketObjects(owner, request);
+        while (true) {
+            for (ObsObject object : objects.getObjects()) {
+                ObjectMetadata metadata = object.getMetadata();
+                Entry entry = new Entry(object.getObjectKey(), metadata.getContentLength(),
+                        OBSCommonUtils.dateToLong(metadata.getLastModified()), metadata.getEtag());
+                size += ENTRY_OVERHEAD + utf8Length(entry.key) + utf8Length(entry.etag);
+                if (size > MAX_MANIFEST_SIZE) {
+                    throw new IOException("Listing manifest of " + dir + " larger than 2GB after "
+                            + entries.size() + " objects");
+                }
+                entries.add(entry);
+            }
+            if (!objects.isTruncated()) {
+                break;
+            }
+            objects = OBSCommonUtils.continueListObjects(owner, objects);
+        }
+        // posix listings are depth first rather than in key order
+        entries.sort(Comparator.comparing(entry -> entry.key));
+
+        FileSystem fs = manifest.getFileSystem(owner.getConf());
+        try (FSDataOutputStream stream = fs.create(manifest, true)) {
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(startTime);
+            writeString(out, owner.getBucket());
+            writeString(out, listPrefix);
+            long[] offsets = new long[entries.size()];
+            for (int i = 0; i < entries.size(); i++) {
+                Entry entry = entries.get(i);
+                offsets[i] = out.size();
+                writeString(out, entry.key);
+                out.writeLong(entry.length);
+                out.writeLong(entry.modificationTime);
+                writeString(out, entry.etag == null ? "" : entry.etag);
+            }
+            long offsetsPosition = out.size();
+            for (long offset : offsets) {
+                out.writeLong(offset);
+            }
+            out.writeLong(offsetsPosition);
+            out.writeInt(entries.size());
+            out.writeInt(MAGIC);
+            out.flush();
+        }
+        LOG.debug("Wrote listing manifest {} of {} with {} entries", manifest, listPrefix, entries.size());
+        return entries.size();
+    }
+
+    /**
+     * Read a manifest, memory mapping it if it is a local file.
+     *
+     * @param fs       filesystem of the manifest
+     * @param manifest path of the manifest file
+     * @return the manifest
+     * @throws IOException if the manifest cannot be read or is not valid
+     */
+    static OBSListingManifest load(final FileSystem fs, final Path manifest) throws IOException {
+        ByteBuffer content;
+        if (fs instanceof LocalFileSystem) {
+            File file = ((LocalFileSystem) fs).pathToFile(manifest);
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+                checkSize(manifest, channel.size());
+                content = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        } else {
+            FileStatus status = fs.getFileStatus(manifest);
+            checkSize(manifest, status.getLen());
+            byte[] bytes = new byte[(int) status.getLen()];
+            try (FSDataInputStream in = fs.open(manifest)) {
+                in.readFully(0, bytes);
+            }
+            content = ByteBuffer.wrap(bytes);
+        }
+        return new OBSListingManifest(manifest, content);
+    }
+
+    private static void checkSize(final Path manifest, final long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Listing manifest larger than 2GB: " + manifest);
+        }
+    }
+
+    /**
+     * Return a manifest of the owner the listing of a request can be served
+     * from.
+     *
+     * @param owner   the owner OBSFileSystem instance
+     * @param request the listing request
+     * @return the manifest, or null if none is valid for the request
+     */
+    static OBSListingManifest find(final OBSFileSystem owner, final ListObjectsRequest request) {
+        String listPrefix = request.getPrefix() == null ? "" : request.getPrefix();
+        for (OBSListingManifest manifest : owner.getListingManifests()) {
+            if (listPrefix.startsWith(manifest.prefix) && manifest.isValid(owner, listPrefix,
+                    request.getDelimiter())) {
+                return manifest;
+            }
+        }
+        return null;
+    }
+
+    private boolean isValid(final OBSFileSystem owner, final String listPrefix, final String delimiter) {
+        long maxAge = owner.getListingManifestMaxAge();
+        if (maxAge == 0 || System.currentTimeMillis() - creationTime < maxAge) {
+            return true;
+        }
+        if (!owner.isFsBucket() || !"/".equals(delimiter) || !listPrefix.endsWith("/")) {
+            return false;
+        }
+        int index = lowerBound(listPrefix, 0);
+        if (index == count || !key(index).equals(listPrefix)) {
+            return false;
+        }
+        try {
+            long dirTime = OBSPosixBucketUtils.innerFsGetObjectStatus(owner,
+                    OBSCommonUtils.keyToQualifiedPath(owner, listPrefix.substring(0, listPrefix.length() - 1)))
+                    .getModificationTime() / 1000;
+            return dirTime == modificationTime(index) / 1000 && dirTime < creationTime / 1000;
+        } catch (IOException e) {
+            LOG.debug("Failed to validate listing manifest {} for {}", path, listPrefix, e);
+            return false;
+        }
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    String getBucket() {
+        return bucket;
+    }
+
+    String getPrefix() {
+        return prefix;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    /**
+     * Return the index of the first entry not before a key.
+     *
+     * @param key  the key
+     * @param from index to search from
+     * @return the index, or the number of entries
+     */
+    int lowerBound(final String key, final int from) {
+        int low = from;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (key(mid).compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Return the index of the first entry after a key and all the keys it
+     * is a prefix of.
+     *
+     * @param keyPrefix the key
+     * @param from      index to search from
+     * @return the index, or the number of entries
+     */
+    int upperBound(final String keyPrefix, final int from) {
+        int low = from;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            String key = key(mid);
+            if (key.startsWith(keyPrefix) || key.compareTo(keyPrefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    String key(final int index) {
+        return readString(offset(index));
+    }
+
+    /**
+     * Return an entry as a listed object.
+     *
+     * @param index index of the entry
+     * @return the object
+     */
+    ObsObject object(final int index) {
+        int position = offset(index);
+        String key = readString(position);
+        position += 4 + buffer.getInt(position);
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(buffer.getLong(position));
+        metadata.setLastModified(new Date(buffer.getLong(position + 8)));
+        String etag = readString(position + 16);
+        if (!etag.isEmpty()) {
+            metadata.setEtag(etag);
+        }
+        ObsObject object = new ObsObject();
+        object.setObjectKey(key);
+        object.setMetadata(metadata);
+        return object;
+    }
+
+    private long modificationTime(final int index) {
+        int position = offset(index);
+        return buffer.getLong(position + 4 + buffer.getInt(position) + 8);
+    }
+
+    private int offset(final int index) {
+        return (int) buffer.getLong(offsetsPosition + 8 * index);
+    }
+
+    private String readString(final int position) {
+        byte[] bytes = new byte[buffer.getInt(position)];
+        ByteBuffer view = buffer.duplicate();
+        view.position(position + 4);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int utf8Length(final String value) {
+        if (value == null) {
+            return 0;
+        }
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    @Override
+    public String toString() {
+        return "OBSListingManifest{path=" + path + ", bucket=" + bucket + ", prefix=" + prefix + ", count=" + count
+                + ", creationTime=" + creationTime + '}';
+    }
+
+    /**
+     * Listed object, before it is written.
+     */
+    private static final class Entry {
+        /**
+         * Object key.
+         */
+        private final String key;
+
+        /**
+         * Object length.
+         */
+        private final long length;
+
+        /**
+         * Object modification time.
+         */
+        private final long modificationTime;
+
+        /**
+         * Object etag; may be null.
+         */
+        private final String etag;
+
+        private Entry(final String objectKey, final long objectLength, final long objectTime,
+                      final String objectEtag) {
+            this.key = objectKey;
+            this.length = objectLength;
+            this.modificationTime = objectTime;
+            this.etag = objectEtag;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.fs.obs;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+
+/**
+ * Write the listing manifest of an OBS directory:
+ * <pre>
+ *   hadoop org.apache.hadoop.fs.obs.OBSListingManifestTool DIR MANIFEST
+ * </pre>
+ * Listings under the directory are then served from the manifest once it is
+ * in {@link OBSConstants#LISTING_MANIFESTS}.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public class OBSListingManifestTool extends Configured implements Tool {
+    @Override
+    public int run(final String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("Usage: " + OBSListingManifestTool.class.getName() + " <dir> <manifest>");
+            return -1;
+        }
+        Path dir = new Path(args[0]);
+        FileSystem fs = dir.getFileSystem(getConf());
+        if (!(fs instanceof OBSFileSystem)) {
+            System.err.println("Not an OBS path: " + dir);
+            return -1;
+        }
+        long count = ((OBSFileSystem) fs).writeListingManifest(dir, new Path(args[1]));
+        System.out.println("Wrote " + count + " objects of " + dir + " to " + args[1]);
+        return 0;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        System.exit(ToolRunner.run(new Configuration(), new OBSListingManifestTool(), args));
+    }
+}
@@ -0,0 +1,589 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.fs.obs;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.SettableFuture;
+import com.obs.services.exception.ObsException;
+import com.obs.services.model.GetObjectRequest;
+import com.obs.services.model.ObjectMetadata;
+import com.obs.services.model.ObsObject;
+import com.obs.services.model.PartEtag;
+import com.obs.services.model.PutObjectRequest;
+import com.obs.services.model.UploadPartRequest;
+import com.obs.services.model.UploadPartResult;
+import org.apache.hadoop.fs.ChecksumFileSystem;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocalFileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathExistsException;
+import org.apache.hadoop.fs.PathIOException;
+import org.apache.hadoop.fs.PathIsDirectoryException;
+import org.apache.hadoop.security.AccessControlException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Transfers between the local filesystem and OBS which bypass the output and
+ * input streams.
+ *
+ * <p>{@link #copyFromLocalFile} uploads a local file smaller than the
+ * multipart size with a single PUT of the file, and a larger one as a
+ * multipart upload whose parts are ranges of the file read straight from
+ * disk. Every request runs on the transfer pool, so the files of a directory
+ * and the parts of each file are uploaded in parallel.
+ *
+ * <p>{@link #copyToLocalFile} preallocates each local file and downloads the
+ * object in ranges of {@link OBSConstants#COPY_TO_LOCAL_RANGE_SIZE} on the
+ * same pool, writing every range at its position in the file; a failed range
+ * is retried on its own. Every range is read from the version of the object
+ * the copy started with.
+ */
+final class OBSLocalCopyUtils {
+    /**
+     * Class logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(OBSLocalCopyUtils.class);
+
+    /**
+     * Size of the buffer a range is copied through.
+     */
+    private static final int DOWNLOAD_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Response code of a range whose If-Match ETag no longer matches.
+     */
+    private static final int PRECONDITION_FAILED_CODE = 412;
+
+    private OBSLocalCopyUtils() {
+    }
+
+    /**
+     * Copy a local file or directory to OBS, with the destination semantics
+     * of {@link FileSystem#copyFromLocalFile(boolean, boolean, Path, Path)}.
+     *
+     * @param owner     the filesystem
+     * @param delSrc    whether to delete the source
+     * @param overwrite whether to overwrite existing files
+     * @param src       local source path
+     * @param dst       destination path
+     * @throws IOException on any failure
+     */
+    static void copyFromLocalFile(final OBSFileSystem owner, final boolean delSrc, final boolean overwrite,
+                                  final Path src, final Path dst) throws IOException {
+        LocalFileSystem local = FileSystem.getLocal(owner.getConf());
+        File srcFile = local.pathToFile(src);
+        if (!srcFile.exists()) {
+            throw new FileNotFoundException("File " + src + " does not exist");
+        }
+        Path target = checkDest(owner, srcFile.getName(), owner.makeQualified(dst), overwrite);
+        List<Pair<File, Path>> files = new ArrayList<>();
+        if (srcFile.isDirectory()) {
+            collectFiles(owner, srcFile, target, overwrite, files);
+        } else {
+            files.add(new Pair<>(srcFile, target));
+        }
+
+        long startTime = System.currentTimeMillis();
+        uploadFiles(owner, files);
+        LOG.debug("Copied {} files from {} to {} in {} ms", files.size(), src, target,
+                System.currentTimeMillis() - startTime);
+        if (delSrc && !local.delete(src, true)) {
+            throw new IOException("Failed to delete " + src + " after copying it to " + target);
+        }
+    }
+
+    /**
+     * Resolve the destination like {@code FileUtil.checkDest}: an existing
+     * directory receives the source under its own name, and an existing file
+     * is only replaced when overwriting.
+     */
+    private static Path checkDest(final OBSFileSystem owner, final String srcName, final Path dst,
+                                  final boolean overwrite) throws IOException {
+        FileStatus status;
+        try {
+            status = owner.getFileStatus(dst);
+        } catch (FileNotFoundException e) {
+            return dst;
+        }
+        if (status.isDirectory()) {
+            if (srcName == null) {
+                throw new PathIsDirectoryException(dst.toString());
+            }
+            return checkDest(owner, null, new Path(dst, srcName), overwrite);
+        } else if (!overwrite) {
+            throw new PathExistsException(dst.toString(), "Target " + dst + " already exists");
+        }
+        return dst;
+    }
+
+    /**
+     * Create the directories of a local tree at the destination and collect
+     * its files, leaving out the checksum files of the local filesystem as
+     * {@link org.apache.hadoop.fs.FileUtil#copy} does.
+     */
+    private static void collectFiles(final OBSFileSystem owner, final File dir, final Path dst,
+                                     final boolean overwrite, final List<Pair<File, Path>> files) throws IOException {
+        if (!owner.mkdirs(dst)) {
+            throw new PathIOException(dst.toString(), "Failed to create directory");
+        }
+        File[] children = dir.listFiles();
+        if (children == null) {
+            throw new IOException("Failed to list local directory " + dir);
+        }
+        for (File child : children) {
+            Path childDst = new Path(dst, child.getName());
+            if (ChecksumFileSystem.isChecksumFile(childDst)) {
+                continue;
+            }
+            if (child.isDirectory()) {
+                collectFiles(owner, child, childDst, overwrite, files);
+            } else {
+                files.add(new Pair<>(child, overwrite ? childDst : checkDest(owner, child.getName(), childDst,
+                        false)));
+            }
+        }
+    }
+
+    /**
+     * Upload local files in parallel and wait for all of them.
+     *
+     * @param owner the filesystem
+     * @param files local files and their destinations
+     * @throws IOException the first failure
+     */
+    private static void uploadFiles(final OBSFileSystem owner, final List<Pair<File, Path>> files)
+            throws IOException {
+        List<ListenableFuture<?>> requests = Collections.synchronizedList(new ArrayList<>());
+        List<ListenableFuture<Void>> uploads = new ArrayList<>(files.size());
+        try {
+            for (Pair<File, Path> file : files) {
+                uploads.add(uploadFileAsync(owner, file.getKey(), OBSCommonUtils.pathToKey(owner, file.getValue()),
+                        requests));
+            }
+            Futures.allAsList(uploads).get();
+        } catch (InterruptedException e) {
+            cancelAll(requests);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted copying local files to OBS");
+        } catch (ExecutionException e) {
+            cancelAll(requests);
+            throw OBSCommonUtils.extractException("copyFromLocalFile", null, e);
+        } catch (IOException | RuntimeException e) {
+            cancelAll(requests);
+            throw e;
+        }
+    }
+
+    private static void cancelAll(final List<ListenableFuture<?>> requests) {
+        synchronized (requests) {
+            for (ListenableFuture<?> request : requests) {
+                request.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Start uploading a local file.
+     *
+     * @param owner    the filesystem
+     * @param file     local file
+     * @param key      destination key
+     * @param requests requests submitted to the transfer pool, to cancel on
+     *                 failure
+     * @return future completing once the object is visible
+     * @throws IOException on failure to start the upload
+     */
+    private static ListenableFuture<Void> uploadFileAsync(final OBSFileSystem owner, final File file,
+                                                          final String key, final List<ListenableFuture<?>> requests)
+            throws IOException {
+        final OBSWriteOperationHelper writeHelper = owner.getWriteHelper();
+        final ListeningExecutorService pool = owner.getBoundedMultipartUploadThreadPool();
+        final long length = file.length();
+        long partSize = owner.getPartSize();
+        if (length <= partSize) {
+            ListenableFuture<Void> put = pool.submit(() -> {
+                LOG.debug("Uploading {} to {} with a single PUT", file, key);
+                PutObjectRequest putObjectRequest = writeHelper.newPutRequest(key, file);
+                putObjectRequest.setAcl(owner.getCannedACL());
+                writeHelper.putObject(putObjectRequest);
+                return null;
+            });
+            requests.add(put);
+            return put;
+        }
+
+        partSize = Math.max(partSize, (length + OBSConstants.MAX_MULTIPART_COUNT - 1)
+                / OBSConstants.MAX_MULTIPART_COUNT);
+        final String uploadId = writeHelper.initiateMultiPartUpload(key);
+        LOG.debug("Uploading {} to {} with multi-part upload '{}' of {} byte parts", file, key, uploadId, partSize);
+        List<ListenableFuture<PartEtag>> parts = new ArrayList<>();
+        int partNumber = 1;
+        for (long offset = 0; offset < length; offset += partSize, partNumber++) {
+            final UploadPartRequest request = writeHelper.newUploadPartRequest(key, uploadId, partNumber, file,
+                    offset, Math.min(partSize, length - offset));
+            ListenableFuture<PartEtag> part = pool.submit(() -> {
+                try {
+                    UploadPartResult result = OBSCommonUtils.uploadPart(owner, request);
+                    return new PartEtag(result.getEtag(), result.getPartNumber());
+                } catch (ObsException e) {
+                    throw OBSCommonUtils.translateException("UploadPart", key, e);
+                }
+            });
+            parts.add(part);
+            requests.add(part);
+        }
+
+        final ListenableFuture<List<PartEtag>> allParts = Futures.allAsList(parts);
+        final SettableFuture<Void> completion = SettableFuture.create();
+        allParts.addListener(() -> {
+            try {
+                writeHelper.completeMultipartUpload(key, uploadId, allParts.get());
+                completion.set(null);
+            } catch (InterruptedException | ExecutionException | ObsException | RuntimeException e) {
+                LOG.warn("Multi-part upload '{}' of {} to {} failed, aborting it", uploadId, file, key, e);
+                try {
+                    writeHelper.abortMultipartUpload(key, uploadId);
+                } catch (ObsException ae) {
+                    LOG.warn("Unable to abort multipart upload, you may need to purge uploaded parts", ae);
+                }
+                completion.setException(e instanceof ObsException
+                        ? OBSCommonUtils.translateException("Completing multi-part upload", key, (ObsException) e)
+                        : e instanceof ExecutionException ? e.getCause() : e);
+            }
+        }, Runnable::run);
+        return completion;
+    }
+
+    /**
+     * Copy an OBS file or directory to the local filesystem, with the
+     * destination semantics of {@link FileSystem#copyToLocalFile(boolean,
+     * Path, Path, boolean)}. Files are written directly, without checksum
+     * files; a stale checksum file of a replaced local file is deleted.
+     *
+     * @param owner  the filesystem
+     * @param delSrc whether to delete the source
+     * @param src    source path
+     * @param dst    local destination path
+     * @throws IOException on any failure
+     */
+    static void copyToLocalFile(final OBSFileSystem owner, final boolean delSrc, final Path src, final Path dst)
+            throws IOException {
+        LocalFileSystem local = FileSystem.getLocal(owner.getConf());
+        FileStatus srcStatus = owner.getFileStatus(src);
+        File target = local.pathToFile(dst);
+        if (target.isDirectory()) {
+            target = new File(target, srcStatus.getPath().getName());
+        }
+        List<Pair<FileStatus, File>> files = new ArrayList<>();
+        if (srcStatus.isDirectory()) {
+            collectObjects(owner, srcStatus.getPath(), target, files);
+        } else {
+            files.add(new Pair<>(srcStatus, target));
+        }
+
+        long startTime = System.currentTimeMillis();
+        downloadFiles(owner, files);
+        LOG.debug("Copied {} files from {} to {} in {} ms", files.size(), src, target,
+                System.currentTimeMillis() - startTime);
+        if (delSrc && !owner.delete(src, true)) {
+            throw new IOException("Failed to delete " + src + " after copying it to " + target);
+        }
+    }
+
+    /**
+     * Create the directories of an OBS tree locally and collect its files.
+     */
+    private static void collectObjects(final OBSFileSystem owner, final Path dir, final File dst,
+                                       final List<Pair<FileStatus, File>> files) throws IOException {
+        if (!dst.isDirectory() && !dst.mkdirs()) {
+            throw new IOException("Failed to create local directory " + dst);
+        }
+        for (FileStatus child : owner.listStatus(dir)) {
+            File childDst = new File(dst, child.getPath().getName());
+            if (child.isDirectory()) {
+                collectObjects(owner, child.getPath(), childDst, files);
+            } else {
+                files.add(new Pair<>(child, childDst));
+            }
+        }
+    }
+
+    /**
+     * Download objects in parallel and wait for all of them. The ranges are
+     * all submitted from the calling thread, never from a transfer thread,
+     * and at most {@link OBSConstants#COPY_TO_LOCAL_MAX_FILES} files are
+     * open at a time.
+     *
+     * @param owner the filesystem
+     * @param files objects and their local destinations
+     * @throws IOException the first failure
+     */
+    private static void downloadFiles(final OBSFileSystem owner, final List<Pair<FileStatus, File>> files)
+            throws IOException {
+        int maxFiles = OBSCommonUtils.intOption(owner.getConf(), OBSConstants.COPY_TO_LOCAL_MAX_FILES,
+                OBSConstants.DEFAULT_COPY_TO_LOCAL_MAX_FILES, 1);
+        List<ListenableFuture<?>> requests = Collections.synchronizedList(new ArrayList<>());
+        List<ListenableFuture<Void>> downloads = new ArrayList<>(files.size());
+        Deque<ListenableFuture<Void>> inFlight = new ArrayDeque<>(maxFiles);
+        try {
+            for (Pair<FileStatus, File> file : files) {
+                while (inFlight.size() >= maxFiles) {
+                    inFlight.remove().get();
+                }
+                ListenableFuture<Void> download = downloadFileAsync(owner, file.getKey(), file.getValue(), requests);
+                downloads.add(download);
+                inFlight.add(download);
+            }
+            Futures.allAsList(downloads).get();
+        } catch (InterruptedException e) {
+            cancelAll(requests);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted copying OBS files to the local filesystem");
+        } catch (ExecutionException e) {
+            cancelAll(requests);
+            throw OBSCommonUtils.extractException("copyToLocalFile", null, e);
+        } catch (IOException | RuntimeException e) {
+            cancelAll(requests);
+            throw e;
+        }
+    }
+
+    /**
+     * Start downloading an object into a preallocated local file. Every range
+     * is requested with the ETag of the object, from its status or else from
+     * a HEAD request made by the calling thread, so that an object replaced
+     * during the copy fails it rather than mixing versions. The local file is
+     * only opened once the ranges are submitted, and deleted on failure.
+     *
+     * @param owner    the filesystem
+     * @param status   status of the object
+     * @param file     local file
+     * @param requests requests submitted to the transfer pool, to cancel on
+     *                 failure
+     * @return future completing once the whole object has been written
+     * @throws IOException on failure to get the ETag or create the local file
+     */
+    private static ListenableFuture<Void> downloadFileAsync(final OBSFileSystem owner, final FileStatus status,
+                                                            final File file, final List<ListenableFuture<?>> requests)
+            throws IOException {
+        final String key = OBSCommonUtils.pathToKey(owner, status.getPath());
+        final long length = status.getLen();
+        File crc = new File(file.getParentFile(), "." + file.getName() + ".crc");
+        if (crc.exists() && !crc.delete()) {
+            LOG.warn("Failed to delete stale checksum file {}", crc);
+        }
+        String etag = status instanceof OBSFileStatus ? ((OBSFileStatus) status).getEtag() : null;
+        if (etag == null && length > 0) {
+            etag = headEtag(owner, key, length);
+        }
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(length);
+        } catch (IOException e) {
+            discard(raf, file);
+            throw e;
+        }
+        final SettableFuture<Void> completion = SettableFuture.create();
+        downloadRanges(owner, key, etag, length, raf, file, requests, completion);
+        return completion;
+    }
+
+    /**
+     * Return the ETag of an object, checking that it still has the length of
+     * its status.
+     */
+    private static String headEtag(final OBSFileSystem owner, final String key, final long length)
+            throws IOException {
+        ObjectMetadata meta;
+        try {
+            meta = OBSObjectBucketUtils.getObjectMetadata(owner, key);
+        } catch (ObsException e) {
+            throw OBSCommonUtils.translateException("copyToLocalFile", key, e);
+        }
+        if (meta.getContentLength() == null || meta.getContentLength() != length || meta.getEtag() == null) {
+            throw new PathIOException(key, String.format("Object changed before being copied: length %s, expected %d",
+                    meta.getContentLength(), length));
+        }
+        return meta.getEtag();
+    }
+
+    /**
+     * Submit the ranges of an object to the transfer pool and complete once
+     * all of them are written. Called from the copying thread only: the pool
+     * blocks submitters while full, so one of its threads submitting there
+     * could wait for itself.
+     */
+    private static void downloadRanges(final OBSFileSystem owner, final String key, final String etag,
+                                       final long length, final RandomAccessFile raf, final File file,
+                                       final List<ListenableFuture<?>> requests,
+                                       final SettableFuture<Void> completion) {
+        final FileChannel channel = raf.getChannel();
+        List<ListenableFuture<Long>> ranges = new ArrayList<>();
+        try {
+            long rangeSize = OBSCommonUtils.longBytesOption(owner.getConf(), OBSConstants.COPY_TO_LOCAL_RANGE_SIZE,
+                    OBSConstants.DEFAULT_COPY_TO_LOCAL_RANGE_SIZE, 1);
+            for (long offset = 0; offset < length; offset += rangeSize) {
+                final long start = offset;
+                final long size = Math.min(rangeSize, length - offset);
+                ListenableFuture<Long> range = owner.getBoundedMultipartUploadThreadPool()
+                        .submit(() -> downloadRangeWithRetry(owner, key, etag, channel, start, size));
+                ranges.add(range);
+                requests.add(range);
+            }
+        } catch (RuntimeException e) {
+            for (ListenableFuture<Long> range : ranges) {
+                range.cancel(true);
+            }
+            discard(raf, file);
+            completion.setException(e);
+            return;
+        }
+        LOG.debug("Downloading {} to {} in {} ranges", key, file, ranges.size());
+
+        final ListenableFuture<List<Long>> allRanges = Futures.allAsList(ranges);
+        allRanges.addListener(() -> {
+            try {
+                long received = 0;
+                for (long size : allRanges.get()) {
+                    received += size;
+                }
+                if (received != length) {
+                    throw new IOException(String.format("Copied %d bytes of %s to %s, expected %d", received, key,
+                            file, length));
+                }
+                raf.close();
+                completion.set(null);
+            } catch (InterruptedException | ExecutionException | IOException | RuntimeException e) {
+                discard(raf, file);
+                completion.setException(e instanceof ExecutionException ? e.getCause() : e);
+            }
+        }, Runnable::run);
+    }
+
+    /**
+     * Close and delete a local file whose download failed.
+     */
+    private static void discard(final RandomAccessFile raf, final File file) {
+        OBSCommonUtils.closeAll(raf);
+        if (file.exists() && !file.delete()) {
+            LOG.warn("Failed to delete {} after a failed copy", file);
+        }
+    }
+
+    /**
+     * Download a range of an object, retrying the range on failure.
+     *
+     * @return the size of the range
+     */
+    private static long downloadRangeWithRetry(final OBSFileSystem owner, final String key, final String etag,
+                                               final FileChannel channel, final long start, final long size)
+            throws IOException {
+        int retryTime = 0;
+        long startTime = System.currentTimeMillis();
+        while (true) {
+            try {
+                downloadRange(owner, key, etag, channel, start, size);
+                return size;
+            } catch (FileNotFoundException | AccessControlException | InterruptedIOException | PathIOException e) {
+                throw e;
+            } catch (IOException e) {
+                long delayMs = OBSCommonUtils.getSleepTimeInMs(retryTime);
+                retryTime++;
+                if (System.currentTimeMillis() - startTime + delayMs
+                        >= OBSCommonUtils.MAX_TIME_IN_MILLISECONDS_TO_RETRY) {
+                    throw e;
+                }
+                LOG.warn("Failed {}-st download of range [{}, {}) of {}, retrying", retryTime, start, start + size,
+                        key, e);
+                try {
+                    Thread.sleep(delayMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted downloading " + key);
+                }
+            }
+        }
+    }
+
+    private static void downloadRange(final OBSFileSystem owner, final String key, final String etag,
+                                      final FileChannel channel, final long start, final long size)
+            throws IOException {
+        GetObjectRequest request = new GetObjectRequest(owner.getBucket(), key);
+        request.setRangeStart(start);
+        request.setRangeEnd(start + size - 1);
+        request.setIfMatchTag(etag);
+        if (owner.getSse().isSseCEnable()) {
+            request.setSseCHeader(owner.getSse().getSseCHeader());
+        }
+        InputStream in = null;
+        try {
+            ObsObject object = owner.getObsClient().getObject(request);
+            in = object.getObjectContent();
+            owner.getSchemeStatistics().incrementReadOps(1);
+            Long contentLength = object.getMetadata().getContentLength();
+            if (contentLength == null || contentLength != size) {
+                throw new PathIOException(key, String.format("Range [%d, %d) returned %s bytes", start,
+                        start + size, contentLength));
+            }
+            byte[] buffer = new byte[DOWNLOAD_BUFFER_SIZE];
+            long position = start;
+            long end = start + size;
+            while (position < end) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, end - position));
+                if (read < 0) {
+                    throw new EOFException(String.format("Range [%d, %d) of %s ended at %d", start, end, key,
+                            position));
+                }
+                ByteBuffer data = ByteBuffer.wrap(buffer, 0, read);
+                while (data.hasRemaining()) {
+                    position += channel.write(data, position);
+                }
+                owner.getSchemeStatistics().incrementBytesRead(read);
+            }
+        } catch (ObsException e) {
+            if (e.getResponseCode() == PRECONDITION_FAILED_CODE) {
+                throw new PathIOException(key, "Object changed while being copied: " + e.getErrorMessage());
+            }
+            throw OBSCommonUtils.translateException("Download range [" + start + ", " + (start + size) + ")", key,
+                    e);
+        } finally {
+            OBSCommonUtils.closeAll(in);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.fs.obs;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.LocatedFileStatus;
+
+/**
+ * LocatedFileStatus of listings, whose block locations are only computed
+ * when first asked for.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Evolving
+class OBSLocatedFileStatus extends LocatedFileStatus {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Synthetic block locations of the filesystem; null once located.
+     */
+    private transient volatile OBSBlockLocations locator;
+
+    /**
+     * Create a located status.
+     *
+     * @param status       the status
+     * @param blockLocator the block locations of the filesystem
+     */
+    OBSLocatedFileStatus(final FileStatus status, final OBSBlockLocations blockLocator) {
+        super(status, null);
+        this.locator = status.isFile() && status.getLen() > 0 ? blockLocator : null;
+        if (status.isFile() && status.getLen() == 0) {
+            setBlockLocations(new BlockLocation[0]);
+        }
+    }
+
+    @Override
+    public BlockLocation[] getBlockLocations() {
+        OBSBlockLocations blockLocator = locator;
+        if (blockLocator != null) {
+            synchronized (this) {
+                if (locator != null) {
+                    setBlockLocations(locator.locate(getPath(), getLen(), getBlockSize()));
+                    locator = null;
+                }
+            }
+        }
+        return super.getBlockLocations();
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+}
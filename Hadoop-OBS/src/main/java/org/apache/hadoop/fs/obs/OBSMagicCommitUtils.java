@@ -0,0 +1,434 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.fs.obs;
+
+import com.obs.services.exception.ObsException;
+import com.obs.services.model.PartEtag;
+import com.obs.services.model.PutObjectRequest;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Helpers of {@link OBSMagicCommitter}: magic path mapping, pending upload
+ * manifests and the parallel completion or abort of pending uploads.
+ *
+ * <p>A file created at {@code dest/__magic/<attempt>/__base/<relative path>}
+ * is uploaded to the key {@code dest/<relative path>}; a file under {@code
+ * __magic} without a {@code __base} element is uploaded to {@code dest} under
+ * its own name. Its manifest is saved at the magic path with the {@link
+ * #PENDING_SUFFIX} suffix.
+ */
+final class OBSMagicCommitUtils {
+    /**
+     * Class logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(OBSMagicCommitUtils.class);
+
+    /**
+     * Name of the magic directory under an output path.
+     */
+    static final String MAGIC = "__magic";
+
+    /**
+     * Path element under a magic directory whose children keep their
+     * relative path at the destination.
+     */
+    static final String BASE = "__base";
+
+    /**
+     * Suffix of the manifest of a single pending upload.
+     */
+    static final String PENDING_SUFFIX = ".pending";
+
+    /**
+     * Suffix of the manifest of the pending uploads of a committed task.
+     */
+    static final String PENDINGSET_SUFFIX = ".pendingset";
+
+    /**
+     * First line of every manifest.
+     */
+    private static final String MAGIC_LINE = "obs-pending-uploads 1";
+
+    /**
+     * Line prefix of a pending upload.
+     */
+    private static final String UPLOAD = "upload\t";
+
+    /**
+     * Line prefix of a part of the previous pending upload.
+     */
+    private static final String PART = "part\t";
+
+    private OBSMagicCommitUtils() {
+    }
+
+    /**
+     * Whether a key is a file under a magic directory, other than a manifest.
+     *
+     * @param key object key
+     * @return true if the key is a magic file
+     */
+    static boolean isMagicKey(final String key) {
+        return magicIndex(key) >= 0 && !key.endsWith("/") && !key.endsWith(PENDING_SUFFIX) && !key.endsWith(
+                PENDINGSET_SUFFIX);
+    }
+
+    private static int magicIndex(final String key) {
+        if (key.startsWith(MAGIC + "/")) {
+            return 0;
+        }
+        int index = key.indexOf("/" + MAGIC + "/");
+        return index < 0 ? -1 : index + 1;
+    }
+
+    /**
+     * Destination key of a magic file.
+     *
+     * @param magicKey key of the magic file
+     * @return the key the file is uploaded to
+     */
+    static String destinationKey(final String magicKey) {
+        int index = magicIndex(magicKey);
+        String parent = magicKey.substring(0, index);
+        String magicChild = magicKey.substring(index + MAGIC.length() + 1);
+        int base = magicChild.indexOf("/" + BASE + "/");
+        if (base >= 0) {
+            return parent + magicChild.substring(base + BASE.length() + 2);
+        }
+        return parent + magicChild.substring(magicChild.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Save a manifest of pending uploads as an object.
+     *
+     * @param owner   the filesystem
+     * @param key     key of the manifest
+     * @param uploads pending uploads
+     * @throws IOException on any failure to write the manifest
+     */
+    static void savePendingUploads(final OBSFileSystem owner, final String key,
+                                   final Collection<PendingUpload> uploads) throws IOException {
+        StringBuilder sb = new StringBuilder(MAGIC_LINE).append('\n');
+        for (PendingUpload upload : uploads) {
+            upload.write(sb);
+        }
+        byte[] data = sb.toString().getBytes(StandardCharsets.UTF_8);
+        OBSWriteOperationHelper writeHelper = owner.getWriteHelper();
+        PutObjectRequest putObjectRequest = writeHelper.newPutRequest(key, new ByteArrayInputStream(data),
+                data.length);
+        putObjectRequest.setAcl(owner.getCannedACL());
+        writeHelper.putObject(putObjectRequest);
+        LOG.debug("Saved {} pending uploads to {}", uploads.size(), key);
+    }
+
+    /**
+     * Load a manifest of pending uploads.
+     *
+     * @param owner the filesystem
+     * @param path  path of the manifest
+     * @return the pending uploads
+     * @throws IOException on any failure to read the manifest
+     */
+    static List<PendingUpload> loadPendingUploads(final OBSFileSystem owner, final Path path) throws IOException {
+        List<PendingUpload> uploads = new ArrayList<>();
+        try (FSDataInputStream in = owner.open(path);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            if (!MAGIC_LINE.equals(reader.readLine())) {
+                throw new IOException("Not a pending upload manifest: " + path);
+            }
+            PendingUpload current = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(UPLOAD)) {
+                    current = PendingUpload.parse(line.substring(UPLOAD.length()), path);
+                    uploads.add(current);
+                } else if (line.startsWith(PART) && current != null) {
+                    current.parsePart(line.substring(PART.length()), path);
+                } else if (!line.isEmpty()) {
+                    throw new IOException("Malformed pending upload manifest " + path + ": " + line);
+                }
+            }
+        }
+        return uploads;
+    }
+
+    /**
+     * Load every manifest with the given suffix under a directory.
+     *
+     * @param owner     the filesystem
+     * @param dir       directory to search
+     * @param recursive whether to search subdirectories
+     * @param suffix    manifest suffix
+     * @return the pending uploads; empty if the directory does not exist
+     * @throws IOException on any failure to list or read the manifests
+     */
+    static List<PendingUpload> loadPendingUploads(final OBSFileSystem owner, final Path dir, final boolean recursive,
+                                                  final String suffix) throws IOException {
+        List<PendingUpload> uploads = new ArrayList<>();
+        RemoteIterator<LocatedFileStatus> files;
+        try {
+            files = owner.listFiles(dir, recursive);
+            while (files.hasNext()) {
+                Path path = files.next().getPath();
+                if (path.getName().endsWith(suffix)) {
+                    uploads.addAll(loadPendingUploads(owner, path));
+                }
+            }
+        } catch (FileNotFoundException e) {
+            LOG.debug("No pending uploads under {}", dir);
+        }
+        return uploads;
+    }
+
+    /**
+     * Complete pending uploads in parallel. If any completion fails, every
+     * upload which has not been completed is aborted; uploads already
+     * completed stay visible.
+     *
+     * @param owner   the filesystem
+     * @param uploads pending uploads
+     * @param pool    pool running the requests
+     * @throws IOException the first completion failure
+     */
+    static void completeUploads(final OBSFileSystem owner, final List<PendingUpload> uploads,
+                                final ThreadPoolExecutor pool) throws IOException {
+        List<Future<?>> futures = new ArrayList<>(uploads.size());
+        for (PendingUpload upload : uploads) {
+            futures.add(pool.submit(() -> {
+                upload.complete(owner);
+                return null;
+            }));
+        }
+        IOException failure = awaitAll(futures, "Completing pending upload", uploads);
+        if (failure != null) {
+            List<PendingUpload> uncompleted = new ArrayList<>();
+            for (PendingUpload upload : uploads) {
+                if (!upload.isCompleted()) {
+                    uncompleted.add(upload);
+                }
+            }
+            LOG.error("Failed to complete pending uploads, aborting {} of {}", uncompleted.size(), uploads.size(),
+                    failure);
+            abortUploads(owner, uncompleted, pool);
+            throw failure;
+        }
+        LOG.debug("Completed {} pending uploads", uploads.size());
+    }
+
+    /**
+     * Abort pending uploads in parallel. Failures are logged, as this is a
+     * cleanup.
+     *
+     * @param owner   the filesystem
+     * @param uploads pending uploads
+     * @param pool    pool running the requests
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    static void abortUploads(final OBSFileSystem owner, final Collection<PendingUpload> uploads,
+                             final ThreadPoolExecutor pool) throws InterruptedIOException {
+        List<PendingUpload> list = new ArrayList<>(uploads);
+        List<Future<?>> futures = new ArrayList<>(list.size());
+        for (PendingUpload upload : list) {
+            futures.add(pool.submit(() -> {
+                upload.abort(owner);
+                return null;
+            }));
+        }
+        IOException failure = awaitAll(futures, "Aborting pending upload", list);
+        if (failure instanceof InterruptedIOException) {
+            throw (InterruptedIOException) failure;
+        }
+        if (failure != null) {
+            LOG.warn("Unable to abort pending uploads, you may need to purge uploaded parts", failure);
+        }
+    }
+
+    private static IOException awaitAll(final List<Future<?>> futures, final String operation,
+                                        final List<PendingUpload> uploads) {
+        IOException failure = null;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                futures.get(i).get();
+            } catch (InterruptedException e) {
+                for (Future<?> future : futures) {
+                    future.cancel(true);
+                }
+                Thread.currentThread().interrupt();
+                return new InterruptedIOException(operation + " interrupted");
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = OBSCommonUtils.extractException(operation, uploads.get(i).getKey(), e);
+                } else {
+                    LOG.debug("{} of {} failed", operation, uploads.get(i).getKey(), e.getCause());
+                }
+            }
+        }
+        return failure;
+    }
+
+    /**
+     * An uncompleted multipart upload.
+     */
+    static final class PendingUpload {
+        /**
+         * Destination key.
+         */
+        private final String key;
+
+        /**
+         * Upload id.
+         */
+        private final String uploadId;
+
+        /**
+         * Length of the uploaded data.
+         */
+        private final long length;
+
+        /**
+         * Uploaded parts.
+         */
+        private final List<PartEtag> parts;
+
+        /**
+         * Whether the upload has been completed.
+         */
+        private volatile boolean completed;
+
+        PendingUpload(final String destKey, final String id, final long dataLength, final List<PartEtag> partEtags) {
+            this.key = destKey;
+            this.uploadId = id;
+            this.length = dataLength;
+            this.parts = new ArrayList<>(partEtags);
+        }
+
+        private static PendingUpload parse(final String line, final Path path) throws IOException {
+            String[] fields = line.split("\t");
+            if (fields.length != 3) {
+                throw new IOException("Malformed pending upload in " + path + ": " + line);
+            }
+            try {
+                return new PendingUpload(URLDecoder.decode(fields[0], "UTF-8"), fields[1], Long.parseLong(fields[2]),
+                        new ArrayList<>());
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed pending upload in " + path + ": " + line, e);
+            }
+        }
+
+        private void parsePart(final String line, final Path path) throws IOException {
+            String[] fields = line.split("\t");
+            if (fields.length != 2) {
+                throw new IOException("Malformed part in " + path + ": " + line);
+            }
+            try {
+                parts.add(new PartEtag(fields[1], Integer.parseInt(fields[0])));
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed part in " + path + ": " + line, e);
+            }
+        }
+
+        private void write(final StringBuilder sb) throws IOException {
+            sb.append(UPLOAD).append(URLEncoder.encode(key, "UTF-8")).append('\t').append(uploadId).append('\t')
+                    .append(length).append('\n');
+            for (PartEtag part : parts) {
+                sb.append(PART).append(part.getPartNumber()).append('\t').append(part.getEtag()).append('\n');
+            }
+        }
+
+        /**
+         * Complete the upload, making the object visible.
+         *
+         * @param owner the filesystem
+         * @throws IOException on any failure
+         */
+        void complete(final OBSFileSystem owner) throws IOException {
+            String operation = String.format("Completing pending upload for key '%s', id '%s' with %s partitions",
+                    key, uploadId, parts.size());
+            try {
+                LOG.debug(operation);
+                owner.getWriteHelper().completeMultipartUpload(key, uploadId, parts);
+                completed = true;
+            } catch (ObsException e) {
+                throw OBSCommonUtils.translateException(operation, key, e);
+            }
+        }
+
+        /**
+         * Abort the upload; an upload which no longer exists is ignored.
+         *
+         * @param owner the filesystem
+         * @throws IOException on any failure
+         */
+        void abort(final OBSFileSystem owner) throws IOException {
+            String operation = String.format("Aborting pending upload for key '%s', id '%s'", key, uploadId);
+            try {
+                LOG.debug(operation);
+                owner.getWriteHelper().abortMultipartUpload(key, uploadId);
+            } catch (ObsException e) {
+                if (e.getResponseCode() != OBSCommonUtils.NOT_FOUND_CODE) {
+                    throw OBSCommonUtils.translateException(operation, key, e);
+                }
+                LOG.debug("Pending upload '{}' of {} no longer exists", uploadId, key);
+            }
+        }
+
+        String getKey() {
+            return key;
+        }
+
+        String getUploadId() {
+            return uploadId;
+        }
+
+        long getLength() {
+            return length;
+        }
+
+        boolean isCompleted() {
+            return completed;
+        }
+
+        @Override
+        public String toString() {
+            return "PendingUpload{key=" + key + ", uploadId=" + uploadId + ", length=" + length + ", parts="
+                    + parts.size() + '}';
+        }
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.fs.obs;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathIOException;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.JobStatus;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter;
+import org.apache.hadoop.mapreduce.lib.output.PathOutputCommitter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Output committer for object buckets which never copies data on commit.
+ *
+ * <p>Tasks write under {@code <output>/__magic/<task attempt>/__base}; with
+ * {@link OBSConstants#MAGIC_COMMITTER_ENABLED} set, {@link OBSFileSystem}
+ * uploads every such file straight to its final key under the output path
+ * as a multipart upload which is left uncompleted, and saves a manifest of
+ * the pending upload. Task commit gathers the manifests of the attempt into
+ * one manifest of the task; job commit completes every pending upload of the
+ * committed tasks in parallel, aborting the remaining uploads if one fails.
+ * Aborting a task or job aborts its pending uploads.
+ *
+ * <p>The magic directory of an output path is shared, so jobs must not
+ * write to the same output path concurrently.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public class OBSMagicCommitter extends PathOutputCommitter {
+    /**
+     * Class logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(OBSMagicCommitter.class);
+
+    /**
+     * Filesystem of the output path.
+     */
+    private final OBSFileSystem fs;
+
+    /**
+     * Qualified output path.
+     */
+    private final Path outputPath;
+
+    /**
+     * Work path of the task attempt; null for a job committer.
+     */
+    private final Path workPath;
+
+    /**
+     * Create a committer of a task attempt.
+     *
+     * @param outputPath output path of the job
+     * @param context    task attempt context
+     * @throws IOException if the output path is not on an OBS object bucket
+     *                     with the magic committer enabled
+     */
+    public OBSMagicCommitter(final Path outputPath, final TaskAttemptContext context) throws IOException {
+        super(outputPath, context);
+        this.fs = getMagicFileSystem(outputPath, context);
+        this.outputPath = fs.makeQualified(outputPath);
+        this.workPath = new Path(getTaskAttemptPath(context), OBSMagicCommitUtils.BASE);
+    }
+
+    /**
+     * Create a committer of a job.
+     *
+     * @param outputPath output path of the job
+     * @param context    job context
+     * @throws IOException if the output path is not on an OBS object bucket
+     *                     with the magic committer enabled
+     */
+    public OBSMagicCommitter(final Path outputPath, final JobContext context) throws IOException {
+        super(outputPath, context);
+        this.fs = getMagicFileSystem(outputPath, context);
+        this.outputPath = fs.makeQualified(outputPath);
+        this.workPath = null;
+    }
+
+    private static OBSFileSystem getMagicFileSystem(final Path outputPath, final JobContext context)
+            throws IOException {
+        if (outputPath == null) {
+            throw new PathIOException("null", "No output path for the magic committer");
+        }
+        FileSystem fileSystem = outputPath.getFileSystem(context.getConfiguration());
+        if (!(fileSystem instanceof OBSFileSystem)) {
+            throw new PathIOException(outputPath.toString(),
+                    "The magic committer needs an OBS filesystem, not " + fileSystem.getClass().getName());
+        }
+        OBSFileSystem obsFs = (OBSFileSystem) fileSystem;
+        if (!obsFs.isMagicCommitterEnabled()) {
+            throw new PathIOException(outputPath.toString(),
+                    "The magic committer needs an object bucket with " + OBSConstants.MAGIC_COMMITTER_ENABLED
+                            + " set");
+        }
+        return obsFs;
+    }
+
+    @Override
+    public Path getOutputPath() {
+        return outputPath;
+    }
+
+    @Override
+    public Path getWorkPath() {
+        return workPath;
+    }
+
+    /**
+     * Magic directory of the output path.
+     *
+     * @return the magic directory
+     */
+    Path getMagicPath() {
+        return new Path(outputPath, OBSMagicCommitUtils.MAGIC);
+    }
+
+    /**
+     * Directory under which a task attempt writes.
+     *
+     * @param context task attempt context
+     * @return the task attempt directory
+     */
+    Path getTaskAttemptPath(final TaskAttemptContext context) {
+        return new Path(getMagicPath(), context.getTaskAttemptID().toString());
+    }
+
+    /**
+     * Manifest of the pending uploads of a committed task. A later committed
+     * attempt of the task replaces it, aborting the uploads of the earlier
+     * one.
+     *
+     * @param context task attempt context
+     * @return the manifest path
+     */
+    Path getTaskPendingSetPath(final TaskAttemptContext context) {
+        return new Path(getMagicPath(),
+                context.getTaskAttemptID().getTaskID().toString() + OBSMagicCommitUtils.PENDINGSET_SUFFIX);
+    }
+
+    @Override
+    public void setupJob(final JobContext context) throws IOException {
+        LOG.debug("Setting up job {} writing to {}", context.getJobID(), outputPath);
+        fs.mkdirs(getMagicPath());
+    }
+
+    @Override
+    public void setupTask(final TaskAttemptContext context) throws IOException {
+        LOG.debug("Setting up task attempt {} writing under {}", context.getTaskAttemptID(), workPath);
+    }
+
+    @Override
+    public boolean needsTaskCommit(final TaskAttemptContext context) throws IOException {
+        return true;
+    }
+
+    @Override
+    public void commitTask(final TaskAttemptContext context) throws IOException {
+        Path attemptPath = getTaskAttemptPath(context);
+        List<OBSMagicCommitUtils.PendingUpload> uploads = OBSMagicCommitUtils.loadPendingUploads(fs, attemptPath,
+                true, OBSMagicCommitUtils.PENDING_SUFFIX);
+        Path pendingSetPath = getTaskPendingSetPath(context);
+        List<OBSMagicCommitUtils.PendingUpload> replaced;
+        try {
+            replaced = OBSMagicCommitUtils.loadPendingUploads(fs, pendingSetPath);
+        } catch (FileNotFoundException e) {
+            replaced = new ArrayList<>();
+        }
+        try {
+            OBSMagicCommitUtils.savePendingUploads(fs, OBSCommonUtils.pathToKey(fs, pendingSetPath), uploads);
+        } catch (IOException e) {
+            LOG.error("Failed to commit task attempt {}, aborting its {} pending uploads",
+                    context.getTaskAttemptID(), uploads.size(), e);
+            abortUploads(uploads, "obs-commit-task");
+            throw e;
+        }
+        Set<String> savedIds = new HashSet<>();
+        for (OBSMagicCommitUtils.PendingUpload upload : uploads) {
+            savedIds.add(upload.getUploadId());
+        }
+        replaced.removeIf(upload -> savedIds.contains(upload.getUploadId()));
+        if (!replaced.isEmpty()) {
+            LOG.info("Task attempt {} replaces an earlier committed attempt, aborting its {} pending uploads",
+                    context.getTaskAttemptID(), replaced.size());
+            abortUploads(replaced, "obs-commit-task");
+        }
+        fs.delete(attemptPath, true);
+        LOG.info("Committed task attempt {} with {} pending uploads", context.getTaskAttemptID(), uploads.size());
+    }
+
+    @Override
+    public void abortTask(final TaskAttemptContext context) throws IOException {
+        Path attemptPath = getTaskAttemptPath(context);
+        List<OBSMagicCommitUtils.PendingUpload> uploads = OBSMagicCommitUtils.loadPendingUploads(fs, attemptPath,
+                true, OBSMagicCommitUtils.PENDING_SUFFIX);
+        LOG.info("Aborting task attempt {} with {} pending uploads", context.getTaskAttemptID(), uploads.size());
+        abortUploads(uploads, "obs-abort-task");
+        fs.delete(attemptPath, true);
+    }
+
+    @Override
+    public void commitJob(final JobContext context) throws IOException {
+        long startTime = System.currentTimeMillis();
+        List<OBSMagicCommitUtils.PendingUpload> uploads = OBSMagicCommitUtils.loadPendingUploads(fs, getMagicPath(),
+                false, OBSMagicCommitUtils.PENDINGSET_SUFFIX);
+        ThreadPoolExecutor pool = OBSCommonUtils.newCommitThreadPool(fs, "obs-commit-job");
+        try {
+            OBSMagicCommitUtils.completeUploads(fs, uploads, pool);
+            abortUncommittedUploads(uploads, pool);
+        } finally {
+            pool.shutdown();
+        }
+        fs.delete(getMagicPath(), true);
+        if (context.getConfiguration().getBoolean(FileOutputCommitter.SUCCESSFUL_JOB_OUTPUT_DIR_MARKER, true)) {
+            fs.create(new Path(outputPath, FileOutputCommitter.SUCCEEDED_FILE_NAME), true).close();
+        }
+        LOG.info("Committed job {}: completed {} pending uploads in {} ms", context.getJobID(), uploads.size(),
+                System.currentTimeMillis() - startTime);
+    }
+
+    @Override
+    public void abortJob(final JobContext context, final JobStatus.State state) throws IOException {
+        List<OBSMagicCommitUtils.PendingUpload> uploads = OBSMagicCommitUtils.loadPendingUploads(fs, getMagicPath(),
+                false, OBSMagicCommitUtils.PENDINGSET_SUFFIX);
+        ThreadPoolExecutor pool = OBSCommonUtils.newCommitThreadPool(fs, "obs-abort-job");
+        try {
+            LOG.info("Aborting job {} in state {} with {} pending uploads of committed tasks", context.getJobID(),
+                    state, uploads.size());
+            OBSMagicCommitUtils.abortUploads(fs, uploads, pool);
+            abortUncommittedUploads(uploads, pool);
+        } finally {
+            pool.shutdown();
+        }
+        fs.delete(getMagicPath(), true);
+    }
+
+    /**
+     * Abort the pending uploads left by task attempts which were never
+     * committed nor aborted.
+     *
+     * @param handled uploads already handled by the job
+     * @param pool    pool running the requests
+     * @throws IOException on any failure to find the uploads
+     */
+    private void abortUncommittedUploads(final List<OBSMagicCommitUtils.PendingUpload> handled,
+                                         final ThreadPoolExecutor pool) throws IOException {
+        Set<String> handledIds = new HashSet<>();
+        for (OBSMagicCommitUtils.PendingUpload upload : handled) {
+            handledIds.add(upload.getUploadId());
+        }
+        List<OBSMagicCommitUtils.PendingUpload> leftovers = OBSMagicCommitUtils.loadPendingUploads(fs,
+                getMagicPath(), true, OBSMagicCommitUtils.PENDING_SUFFIX);
+        leftovers.removeIf(upload -> handledIds.contains(upload.getUploadId()));
+        if (!leftovers.isEmpty()) {
+            LOG.info("Aborting {} pending uploads of uncommitted task attempts", leftovers.size());
+            OBSMagicCommitUtils.abortUploads(fs, leftovers, pool);
+        }
+    }
+
+    private void abortUploads(final List<OBSMagicCommitUtils.PendingUpload> uploads, final String poolName)
+            throws IOException {
+        if (uploads.isEmpty()) {
+            return;
+        }
+        ThreadPoolExecutor pool = OBSCommonUtils.newCommitThreadPool(fs, poolName);
+        try {
+            OBSMagicCommitUtils.abortUploads(fs, uploads, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "OBSMagicCommitter{outputPath=" + outputPath + ", workPath=" + workPath + '}';
+    }
+}
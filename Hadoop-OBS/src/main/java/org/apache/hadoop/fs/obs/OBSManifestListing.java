@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.fs.obs;
+
+import com.obs.services.model.ListObjectsRequest;
+import com.obs.services.model.ObjectListing;
+import com.obs.services.model.ObsObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Listing served from an {@link OBSListingManifest}, with the pages and
+ * common prefixes a listing of the bucket would return.
+ */
+class OBSManifestListing extends ObjectListing {
+    /**
+     * The manifest listed.
+     */
+    private final OBSListingManifest manifest;
+
+    /**
+     * Index of the manifest entry the next page starts at.
+     */
+    private final int nextIndex;
+
+    private OBSManifestListing(final OBSListingManifest listingManifest, final String bucketName,
+                               final String prefix, final String marker, final int maxKeys, final String delimiter,
+                               final List<ObsObject> objectSummaries, final List<String> commonPrefixes,
+                               final String nextMarker, final int nextEntryIndex) {
+        super(objectSummaries, commonPrefixes, bucketName, nextMarker != null, prefix, marker, maxKeys, delimiter,
+                nextMarker, null);
+        this.manifest = listingManifest;
+        this.nextIndex = nextEntryIndex;
+    }
+
+    /**
+     * List the first page of a request from a manifest.
+     *
+     * @param manifest the manifest, covering the prefix of the request
+     * @param request  the listing request
+     * @return the first page
+     */
+    static OBSManifestListing listObjects(final OBSListingManifest manifest, final ListObjectsRequest request) {
+        String prefix = request.getPrefix() == null ? "" : request.getPrefix();
+        String delimiter = request.getDelimiter();
+        String marker = request.getMarker();
+        int index = manifest.lowerBound(prefix, 0);
+        if (marker != null && marker.compareTo(prefix) >= 0) {
+            // a common prefix as marker skips all the keys it rolls up
+            index = delimiter != null && marker.startsWith(prefix)
+                    && marker.indexOf(delimiter, prefix.length()) == marker.length() - delimiter.length()
+                    ? manifest.upperBound(marker, index)
+                    : manifest.lowerBound(marker + '\0', index);
+        }
+        return nextPage(manifest, request.getBucketName(), prefix, marker, request.getMaxKeys(), delimiter, index);
+    }
+
+    /**
+     * List the next page of a manifest listing.
+     *
+     * @param objects the previous page
+     * @return the next page
+     */
+    static OBSManifestListing continueListObjects(final OBSManifestListing objects) {
+        return nextPage(objects.manifest, objects.getBucketName(), objects.getPrefix(), objects.getNextMarker(),
+                objects.getMaxKeys(), objects.getDelimiter(), objects.nextIndex);
+    }
+
+    private static OBSManifestListing nextPage(final OBSListingManifest manifest, final String bucketName,
+                                               final String prefix, final String marker, final int maxKeys,
+                                               final String delimiter, final int startIndex) {
+        List<ObsObject> objects = new ArrayList<>();
+        List<String> commonPrefixes = new ArrayList<>();
+        String last = null;
+        int index = startIndex;
+        while ((maxKeys <= 0 || objects.size() + commonPrefixes.size() < maxKeys) && index < manifest.getCount()) {
+            String key = manifest.key(index);
+            if (!key.startsWith(prefix)) {
+                index = manifest.getCount();
+                break;
+            }
+            int delimiterIndex = delimiter == null ? -1 : key.indexOf(delimiter, prefix.length());
+            if (delimiterIndex >= 0) {
+                last = key.substring(0, delimiterIndex + delimiter.length());
+                commonPrefixes.add(last);
+                index = manifest.upperBound(last, index);
+            } else {
+                objects.add(manifest.object(index++));
+                last = key;
+            }
+        }
+        boolean truncated = index < manifest.getCount() && manifest.key(index).startsWith(prefix);
+        return new OBSManifestListing(manifest, bucketName, prefix, marker, maxKeys, delimiter, objects,
+                commonPrefixes, truncated ? last : null, index);
+    }
+}
@@ -12,8 +12,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Object bucket specific utils for {@link OBSFileSystem}.
@@ -221,7 +224,7 @@ final class OBSObjectBucketUtils {
         request.setPrefix(srcKey);
         request.setMaxKeys(owner.getMaxKeys());
 
-        ObjectListing objects = OBSCommonUtils.listObjects(owner, request);
+        ObjectListing objects = OBSCommonUtils.listBucketObjects(owner, request);
 
         List<Future<CopyObjectResult>> copyfutures = new LinkedList<>();
         while (true) {
@@ -330,7 +333,7 @@ final class OBSObjectBucketUtils {
         String delimiter = recursive ? null : "/";
         ListObjectsRequest request = OBSCommonUtils.createListObjectsRequest(owner, key, delimiter);
 
-        ObjectListing objects = OBSCommonUtils.listObjects(owner, request);
+        ObjectListing objects = OBSCommonUtils.listBucketObjects(owner, request);
         List<KeyAndVersion> keys = new ArrayList<>(objects.getObjects().size());
         while (true) {
             for (ObsObject summary : objects.getObjects()) {
@@ -604,64 +607,243 @@ final class OBSObjectBucketUtils {
     }
 
     static OBSFileStatus innerGetObjectStatus(final OBSFileSystem owner, final Path f) throws IOException {
+        return innerGetObjectStatus(owner, f, OBSStatusProbe.ALL);
+    }
+
+    /**
+     * Get the status of a path with the given probes, made one after another,
+     * in parallel or folded into one listing as {@link
+     * OBSConstants#OBJECT_STATUS_PROBE} says. A file found by {@link
+     * OBSStatusProbe#HEAD} wins over a directory of the same name.
+     *
+     * @param owner  the filesystem
+     * @param f      the path
+     * @param probes the probes to make
+     * @return the status
+     * @throws FileNotFoundException if no probe finds the path
+     * @throws IOException           on any other failure
+     */
+    static OBSFileStatus innerGetObjectStatus(final OBSFileSystem owner, final Path f,
+                                              final Set<OBSStatusProbe> probes) throws IOException {
         final Path path = OBSCommonUtils.qualify(owner, f);
         String key = OBSCommonUtils.pathToKey(owner, path);
-        LOG.debug("Getting path status for {}  ({})", path, key);
-        if (!StringUtils.isEmpty(key)) {
-            try {
-                ObjectMetadata meta = getObjectMetadata(owner, key);
+        LOG.debug("Getting path status for {}  ({}) with probes {}", path, key, probes);
+        OBSFileStatus status;
+        if (StringUtils.isEmpty(key)) {
+            // the root is always a directory
+            status = listProbe(owner, path, key);
+        } else if (OBSConstants.OBJECT_STATUS_PROBE_PARALLEL.equals(owner.getObjectStatusProbe())) {
+            status = parallelProbe(owner, path, key, probes);
+        } else if (OBSConstants.OBJECT_STATUS_PROBE_LIST.equals(owner.getObjectStatusProbe()) && !key.endsWith("/")) {
+            status = singleListProbe(owner, path, key, probes);
+        } else {
+            status = sequentialProbe(owner, path, key, probes);
+        }
+        if (status == null) {
+            LOG.debug("Not Found: {}", path);
+            throw new FileNotFoundException("No such file or directory: " + path);
+        }
+        return status;
+    }
 
-                if (OBSCommonUtils.objectRepresentsDirectory(key, meta.getContentLength())) {
-                    LOG.debug("Found exact file: fake directory");
-                    return new OBSFileStatus(path, owner.getShortUserName());
-                } else {
-                    LOG.debug("Found exact file: normal file");
-                    return new OBSFileStatus(meta.getContentLength(), OBSCommonUtils.dateToLong(meta.getLastModified()),
-                            path, owner.getDefaultBlockSize(path), owner.getShortUserName());
+    private static OBSFileStatus sequentialProbe(final OBSFileSystem owner, final Path path, final String key,
+                                                 final Set<OBSStatusProbe> probes) throws IOException {
+        OBSFileStatus status = null;
+        if (probes.contains(OBSStatusProbe.HEAD)) {
+            status = headProbe(owner, path, key);
+        }
+        if (status == null && probes.contains(OBSStatusProbe.DIR_MARKER)) {
+            status = dirMarkerProbe(owner, path, key);
+        }
+        if (status == null && probes.contains(OBSStatusProbe.LIST)) {
+            status = listProbe(owner, path, key);
+        }
+        return status;
+    }
+
+    /**
+     * Make every probe at once, the first one on the calling thread and the
+     * others on the list pool, and take the answer of the first probe in
+     * priority order which finds the path.
+     */
+    private static OBSFileStatus parallelProbe(final OBSFileSystem owner, final Path path, final String key,
+                                               final Set<OBSStatusProbe> probes) throws IOException {
+        List<Callable<OBSFileStatus>> calls = new ArrayList<>(probes.size());
+        if (probes.contains(OBSStatusProbe.HEAD)) {
+            calls.add(() -> headProbe(owner, path, key));
+        }
+        if (probes.contains(OBSStatusProbe.DIR_MARKER) && !key.endsWith("/")) {
+            calls.add(() -> dirMarkerProbe(owner, path, key));
+        }
+        if (probes.contains(OBSStatusProbe.LIST)) {
+            calls.add(() -> listProbe(owner, path, key));
+        }
+        if (calls.size() < 2) {
+            return sequentialProbe(owner, path, key, probes);
+        }
+
+        List<Future<OBSFileStatus>> futures = new ArrayList<>(calls.size() - 1);
+        for (Callable<OBSFileStatus> call : calls.subList(1, calls.size())) {
+            try {
+                futures.add(owner.getBoundedListThreadPool().submit(call));
+            } catch (RejectedExecutionException e) {
+                // the pool is saturated: make the probe later on this thread
+                FutureTask<OBSFileStatus> task = new FutureTask<>(call);
+                futures.add(task);
+            }
+        }
+        try {
+            OBSFileStatus status;
+            try {
+                status = calls.get(0).call();
+            } catch (IOException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+            for (Future<OBSFileStatus> future : futures) {
+                if (status != null) {
+                    break;
                 }
-            } catch (ObsException e) {
-                if (e.getResponseCode() != OBSCommonUtils.NOT_FOUND_CODE) {
-                    throw OBSCommonUtils.translateException("getFileStatus", path, e);
+                if (future instanceof FutureTask && !future.isDone()) {
+                    ((FutureTask<OBSFileStatus>) future).run();
                 }
+                status = future.get();
+            }
+            return status;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted getting status of " + path);
+        } catch (ExecutionException e) {
+            throw OBSCommonUtils.extractException("getFileStatus", key, e);
+        } finally {
+            for (Future<OBSFileStatus> future : futures) {
+                future.cancel(true);
             }
+        }
+    }
 
-            if (!key.endsWith("/")) {
-                String newKey = key + "/";
-                try {
-                    ObjectMetadata meta = getObjectMetadata(owner, newKey);
-
-                    if (OBSCommonUtils.objectRepresentsDirectory(newKey, meta.getContentLength())) {
-                        LOG.debug("Found file (with /): fake directory");
-                        return new OBSFileStatus(path, owner.getShortUserName());
-                    } else {
-                        LOG.debug("Found file (with /): real file? should not " + "happen: {}", key);
-
-                        return new OBSFileStatus(meta.getContentLength(),
-                                OBSCommonUtils.dateToLong(meta.getLastModified()), path, owner.getDefaultBlockSize(path),
-                                owner.getShortUserName());
-                    }
-                } catch (ObsException e) {
-                    if (e.getResponseCode() != OBSCommonUtils.NOT_FOUND_CODE) {
-                        throw OBSCommonUtils.translateException("getFileStatus", newKey, e);
-                    }
+    /**
+     * Find the path with one listing of the key as a prefix: the key itself
+     * sorts first, and a directory shows as the common prefix of the key with
+     * a slash. Only when siblings sorting before that prefix fill the page
+     * is a second listing needed for directories.
+     */
+    private static OBSFileStatus singleListProbe(final OBSFileSystem owner, final Path path, final String key,
+                                                 final Set<OBSStatusProbe> probes) throws IOException {
+        ListObjectsRequest request = new ListObjectsRequest();
+        request.setBucketName(owner.getBucket());
+        request.setPrefix(key);
+        request.setDelimiter("/");
+        request.setMaxKeys(2);
+        ObjectListing objects;
+        try {
+            owner.getSchemeStatistics().incrementReadOps(1);
+            objects = owner.getObsClient().listObjects(request);
+        } catch (ObsException e) {
+            if (e.getResponseCode() == OBSCommonUtils.NOT_FOUND_CODE) {
+                return null;
+            }
+            throw OBSCommonUtils.translateException("getFileStatus", key, e);
+        }
+
+        if (probes.contains(OBSStatusProbe.HEAD)) {
+            for (ObsObject summary : objects.getObjects()) {
+                if (summary.getObjectKey().equals(key)) {
+                    LOG.debug("Found exact file in listing: normal file");
+                    return OBSCommonUtils.createFileStatus(path, summary, owner.getDefaultBlockSize(path),
+                            owner.getShortUserName());
                 }
             }
         }
+        if (!probes.contains(OBSStatusProbe.DIR_MARKER) && !probes.contains(OBSStatusProbe.LIST)) {
+            return null;
+        }
+        String dirKey = key + "/";
+        if (objects.getCommonPrefixes().contains(dirKey)) {
+            LOG.debug("Found directory in listing: {}", dirKey);
+            return new OBSFileStatus(path, owner.getShortUserName());
+        }
+        if (!objects.isTruncated()) {
+            return null;
+        }
+        LOG.debug("Listing of {} truncated by siblings, listing the directory", key);
+        return listProbe(owner, path, key);
+    }
+
+    private static OBSFileStatus headProbe(final OBSFileSystem owner, final Path path, final String key)
+            throws IOException {
+        try {
+            ObjectMetadata meta = getObjectMetadata(owner, key);
+
+            if (OBSCommonUtils.objectRepresentsDirectory(key, meta.getContentLength())) {
+                LOG.debug("Found exact file: fake directory");
+                return new OBSFileStatus(path, owner.getShortUserName());
+            } else {
+                LOG.debug("Found exact file: normal file");
+                return new OBSFileStatus(meta.getContentLength(), OBSCommonUtils.dateToLong(meta.getLastModified()),
+                        path, owner.getDefaultBlockSize(path), owner.getShortUserName(), meta.getEtag());
+            }
+        } catch (ObsException e) {
+            if (e.getResponseCode() != OBSCommonUtils.NOT_FOUND_CODE) {
+                throw OBSCommonUtils.translateException("getFileStatus", path, e);
+            }
+        }
+        return null;
+    }
 
+    private static OBSFileStatus dirMarkerProbe(final OBSFileSystem owner, final Path path, final String key)
+            throws IOException {
+        if (key.endsWith("/")) {
+            return null;
+        }
+        String newKey = key + "/";
+        try {
+            ObjectMetadata meta = getObjectMetadata(owner, newKey);
+
+            if (OBSCommonUtils.objectRepresentsDirectory(newKey, meta.getContentLength())) {
+                LOG.debug("Found file (with /): fake directory");
+                return new OBSFileStatus(path, owner.getShortUserName());
+            } else {
+                LOG.debug("Found file (with /): real file? should not " + "happen: {}", key);
+
+                return new OBSFileStatus(meta.getContentLength(), OBSCommonUtils.dateToLong(meta.getLastModified()),
+                        path, owner.getDefaultBlockSize(path), owner.getShortUserName(), meta.getEtag());
+            }
+        } catch (ObsException e) {
+            if (e.getResponseCode() != OBSCommonUtils.NOT_FOUND_CODE) {
+                throw OBSCommonUtils.translateException("getFileStatus", newKey, e);
+            }
+        }
+        return null;
+    }
+
+    private static OBSFileStatus listProbe(final OBSFileSystem owner, final Path path, final String key)
+            throws IOException {
         try {
             boolean isEmpty = OBSCommonUtils.innerIsFolderEmpty(owner, key);
             LOG.debug("Is dir ({}) empty? {}", path, isEmpty);
             return new OBSFileStatus(path, owner.getShortUserName());
+        } catch (FileNotFoundException e) {
+            return null;
         } catch (ObsException e) {
             if (e.getResponseCode() != OBSCommonUtils.NOT_FOUND_CODE) {
                 throw OBSCommonUtils.translateException("getFileStatus", key, e);
             }
         }
-
-        LOG.debug("Not Found: {}", path);
-        throw new FileNotFoundException("No such file or directory: " + path);
+        return null;
     }
 
+    /**
+     * Return the content summary of a directory from a recursive listing of
+     * it. Directories are counted from the sorted keys with {@link
+     * DirectoryCounter}, in memory proportional to the depth of the tree.
+     *
+     * @param owner the owner OBSFileSystem instance
+     * @param key   key of the directory
+     * @return the content summary
+     * @throws IOException on any failure to list
+     */
     static ContentSummary getDirectoryContentSummary(final OBSFileSystem owner, final String key) throws IOException {
         String newKey = key;
         newKey = OBSCommonUtils.maybeAddTrailingSlash(newKey);
@@ -670,7 +852,7 @@ final class OBSObjectBucketUtils {
         ListObjectsRequest request = new ListObjectsRequest();
         request.setBucketName(owner.getBucket());
         request.setPrefix(newKey);
-        Set<String> directories = new TreeSet<>();
+        DirectoryCounter directories = new DirectoryCounter(newKey.length());
         request.setMaxKeys(owner.getMaxKeys());
         ObjectListing objects = OBSCommonUtils.listObjects(owner, request);
         while (true) {
@@ -681,7 +863,7 @@ final class OBSObjectBucketUtils {
                 }
                 for (String prefix : objects.getCommonPrefixes()) {
                     LOG.debug("Objects in folder [" + prefix + "]:");
-                    getDirectories(prefix, newKey, directories);
+                    directories.add(prefix);
                 }
 
                 for (ObsObject obj : objects.getObjects()) {
@@ -690,7 +872,7 @@ final class OBSObjectBucketUtils {
                         summary[0] += obj.getMetadata().getContentLength();
                         summary[1] += 1;
                     }
-                    getDirectories(obj.getObjectKey(), newKey, directories);
+                    directories.add(obj.getObjectKey());
                 }
             }
             if (!objects.isTruncated()) {
@@ -698,7 +880,7 @@ final class OBSObjectBucketUtils {
             }
             objects = OBSCommonUtils.continueListObjects(owner, objects);
         }
-        summary[2] += directories.size();
+        summary[2] += directories.getCount();
         LOG.debug(
                 String.format("file size [%d] - file count [%d] - directory count [%d] - " + "file path [%s]", summary[0],
                         summary[1], summary[2], newKey));
@@ -709,22 +891,6 @@ final class OBSObjectBucketUtils {
                 .build();
     }
 
-    private static void getDirectories(final String key, final String sourceKey, final Set<String> directories) {
-        Path p = new Path(key);
-        Path sourcePath = new Path(sourceKey);
-        // directory must add first
-        if (key.endsWith("/") && p.compareTo(sourcePath) > 0) {
-            directories.add(p.toString());
-        }
-        while (p.compareTo(sourcePath) > 0) {
-            p = p.getParent();
-            if (p.isRoot() || p.compareTo(sourcePath) == 0) {
-                break;
-            }
-            directories.add(p.toString());
-        }
-    }
-
     private static Future<CopyObjectResult> copyFileAsync(final OBSFileSystem owner, final String srcKey,
                                                           final String dstKey, final long size) {
         return owner.getBoundedCopyThreadPool().submit(() -> {
@@ -732,4 +898,69 @@ final class OBSObjectBucketUtils {
             return null;
         });
     }
+
+    /**
+     * Counter of the directories under a key, fed with the keys under it in
+     * sorted order.
+     *
+     * <p>The keys under a directory are contiguous in sorted order, so a
+     * directory left behind is never seen again: only the deepest directory
+     * of the last key is kept, and the directories of a key below it are new.
+     * A key ending with "/" is a directory itself.
+     */
+    private static final class DirectoryCounter {
+        /**
+         * Length of the key of the directory counted under, with its trailing
+         * slash.
+         */
+        private final int baseLength;
+
+        /**
+         * Deepest directory of the last key, with its trailing slash; the
+         * base directory before any key.
+         */
+        private String current;
+
+        /**
+         * Number of directories found.
+         */
+        private long count;
+
+        private DirectoryCounter(final int baseKeyLength) {
+            this.baseLength = baseKeyLength;
+        }
+
+        /**
+         * Count the directories of a key not counted yet.
+         *
+         * @param key a key under the base directory, sorting after the keys
+         *            added before
+         */
+        private void add(final String key) {
+            int end = key.lastIndexOf('/') + 1;
+            if (end <= baseLength) {
+                return;
+            }
+            // skip the directories shared with the previous key
+            int from = baseLength;
+            if (current != null) {
+                int limit = Math.min(end, current.length());
+                while (from < limit && key.charAt(from) == current.charAt(from)) {
+                    from++;
+                }
+                from = key.lastIndexOf('/', from - 1) + 1;
+                from = Math.max(from, baseLength);
+            }
+            for (int i = from; i < end; i++) {
+                if (key.charAt(i) == '/') {
+                    count++;
+                }
+            }
+            current = key.substring(0, end);
+        }
+
+        private long getCount() {
+            return count;
+        }
+    }
 }
@@ -0,0 +1,338 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.fs.obs;
+
+import com.obs.services.model.ListObjectsRequest;
+import com.obs.services.model.ObjectListing;
+import com.obs.services.model.ObsObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * Parallel recursive listing for object buckets, built from one-level
+ * listings of every directory prefix, run on the list pool.
+ *
+ * <p>The keys under a prefix are contiguous in key order, and a one-level
+ * listing returns each sub-prefix at the place of its keys among the
+ * objects. Walking the one-level listings depth first therefore returns the
+ * objects of a flat recursive listing, in the same order. The first pages of
+ * the sub-prefixes ahead of the walk and the next pages of the prefixes being
+ * walked are listed in parallel, at most {@link
+ * OBSConstants#LIST_PARALLEL_FACTOR} at a time.
+ */
+class OBSParallelTreeListing extends ObjectListing {
+    /**
+     * Class logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(OBSParallelTreeListing.class);
+
+    /**
+     * State of the walk, shared by the pages of one listing.
+     */
+    private final TreeWalk walk;
+
+    private OBSParallelTreeListing(final String bucketName, final String prefix, final String marker,
+                                   final int maxKeys, final List<ObsObject> objectSummaries, final String nextMarker,
+                                   final TreeWalk treeWalk) {
+        super(objectSummaries, new ArrayList<>(), bucketName, nextMarker != null, prefix, marker, maxKeys, null,
+                nextMarker, null);
+        this.walk = treeWalk;
+    }
+
+    /**
+     * List the first page of a recursive listing.
+     *
+     * @param owner   the owner OBSFileSystem instance
+     * @param request recursive request, with no delimiter and no marker
+     * @return the first page
+     * @throws IOException on any failure to list objects
+     */
+    static OBSParallelTreeListing listObjects(final OBSFileSystem owner, final ListObjectsRequest request)
+            throws IOException {
+        if (request.getDelimiter() != null) {
+            throw new IllegalArgumentException("illegal delimiter: " + request.getDelimiter());
+        }
+        if (request.getMarker() != null) {
+            throw new IllegalArgumentException("illegal marker: " + request.getMarker());
+        }
+        TreeWalk walk = new TreeWalk(owner, request.getPrefix(), request.getMaxKeys());
+        return nextPage(owner.getBucket(), request.getPrefix(), null, request.getMaxKeys(), walk);
+    }
+
+    /**
+     * List the next page of a recursive listing.
+     *
+     * @param objects the previous page
+     * @return the next page
+     * @throws IOException on any failure to list objects
+     */
+    static OBSParallelTreeListing continueListObjects(final OBSParallelTreeListing objects) throws IOException {
+        return nextPage(objects.getBucketName(), objects.getPrefix(), objects.getNextMarker(), objects.getMaxKeys(),
+                objects.walk);
+    }
+
+    private static OBSParallelTreeListing nextPage(final String bucketName, final String prefix,
+                                                   final String marker, final int maxKeys, final TreeWalk walk)
+            throws IOException {
+        List<ObsObject> objectSummaries = walk.next();
+        String nextMarker = walk.isDone() || objectSummaries.isEmpty()
+                ? null
+                : objectSummaries.get(objectSummaries.size() - 1).getObjectKey();
+        if (nextMarker == null) {
+            walk.logLevelStats(bucketName);
+        }
+        return new OBSParallelTreeListing(bucketName, prefix, marker, maxKeys, objectSummaries, nextMarker, walk);
+    }
+
+    /**
+     * Depth first walk over the one-level listings of a prefix.
+     */
+    private static final class TreeWalk {
+        /**
+         * The owner filesystem.
+         */
+        private final OBSFileSystem owner;
+
+        /**
+         * Prefix of the listing.
+         */
+        private final String prefix;
+
+        /**
+         * Maximum number of objects per page.
+         */
+        private final int maxKeys;
+
+        /**
+         * Prefixes being walked, the innermost first.
+         */
+        private final Deque<Frame> stack = new ArrayDeque<>();
+
+        /**
+         * Listings submitted and not known to be done.
+         */
+        private final List<Future<ObjectListing>> inFlight = new ArrayList<>();
+
+        /**
+         * Directories and files found per level.
+         */
+        private final List<OBSFsDFSListing.LevelStats> levelStatsList = new ArrayList<>();
+
+        private TreeWalk(final OBSFileSystem fs, final String listPrefix, final int maxKeyNum) {
+            this.owner = fs;
+            this.prefix = listPrefix;
+            this.maxKeys = maxKeyNum;
+            Frame root = new Frame(listPrefix, 0);
+            root.page = submit(root.prefix, null);
+            stack.push(root);
+            OBSFsDFSListing.increaseLevelStats(levelStatsList, 0, true);
+        }
+
+        /**
+         * Walk up to {@link #maxKeys} objects further.
+         *
+         * @return the objects, in key order
+         * @throws IOException on any failure to list objects
+         */
+        private List<ObsObject> next() throws IOException {
+            List<ObsObject> objects = new ArrayList<>();
+            try {
+                while (objects.size() < maxKeys && !stack.isEmpty()) {
+                    Frame frame = stack.peek();
+                    if (frame.entries == null) {
+                        load(frame);
+                        prefetch();
+                    } else if (frame.position < frame.entries.size()) {
+                        Object entry = frame.entries.get(frame.position);
+                        // release the entries walked over
+                        frame.entries.set(frame.position++, null);
+                        if (entry instanceof Frame) {
+                            stack.push((Frame) entry);
+                            OBSFsDFSListing.increaseLevelStats(levelStatsList, frame.level + 1, true);
+                        } else {
+                            ObsObject object = (ObsObject) entry;
+                            objects.add(object);
+                            if (!object.getObjectKey().equals(frame.prefix)) {
+                                OBSFsDFSListing.increaseLevelStats(levelStatsList, frame.level + 1,
+                                        object.getObjectKey().endsWith("/"));
+                            }
+                        }
+                    } else if (frame.nextPage != null) {
+                        frame.page = frame.nextPage;
+                        frame.nextPage = null;
+                        frame.entries = null;
+                    } else {
+                        stack.pop();
+                    }
+                }
+            } catch (IOException e) {
+                for (Future<ObjectListing> future : inFlight) {
+                    future.cancel(true);
+                }
+                stack.clear();
+                throw e;
+            }
+            return objects;
+        }
+
+        private boolean isDone() {
+            return stack.isEmpty();
+        }
+
+        /**
+         * Wait for the page of a frame and merge its objects and sub-prefixes
+         * in key order.
+         */
+        private void load(final Frame frame) throws IOException {
+            if (frame.page == null) {
+                frame.page = submit(frame.prefix, null);
+            }
+            ObjectListing listing = OBSCommonUtils.awaitListing(frame.page, frame.prefix);
+            frame.page = null;
+            if (listing.isTruncated()) {
+                frame.nextPage = submit(frame.prefix, listing.getNextMarker());
+            }
+
+            List<ObsObject> objects = listing.getObjects();
+            List<String> commonPrefixes = listing.getCommonPrefixes();
+            List<Object> entries = new ArrayList<>(objects.size() + commonPrefixes.size());
+            int objectIndex = 0;
+            int prefixIndex = 0;
+            while (objectIndex < objects.size() || prefixIndex < commonPrefixes.size()) {
+                if (prefixIndex == commonPrefixes.size() || objectIndex < objects.size()
+                        && objects.get(objectIndex).getObjectKey().compareTo(commonPrefixes.get(prefixIndex)) < 0) {
+                    entries.add(objects.get(objectIndex++));
+                } else {
+                    String commonPrefix = commonPrefixes.get(prefixIndex++);
+                    if (!commonPrefix.equals(frame.prefix)) {
+                        entries.add(new Frame(commonPrefix, frame.level + 1));
+                    }
+                }
+            }
+            frame.entries = entries;
+            frame.position = 0;
+            frame.prefetchPosition = 0;
+        }
+
+        /**
+         * Submit the first pages of the sub-prefixes ahead of the walk, the
+         * innermost first, while fewer than the parallel factor are in
+         * flight.
+         */
+        private void prefetch() {
+            inFlight.removeIf(Future::isDone);
+            for (Frame frame : stack) {
+                if (frame.entries == null) {
+                    continue;
+                }
+                frame.prefetchPosition = Math.max(frame.prefetchPosition, frame.position);
+                while (frame.prefetchPosition < frame.entries.size()) {
+                    if (inFlight.size() >= owner.getListParallelFactor()) {
+                        return;
+                    }
+                    Object entry = frame.entries.get(frame.prefetchPosition++);
+                    if (entry instanceof Frame && ((Frame) entry).page == null) {
+                        ((Frame) entry).page = submit(((Frame) entry).prefix, null);
+                    }
+                }
+            }
+        }
+
+        private Future<ObjectListing> submit(final String listPrefix, final String marker) {
+            ListObjectsRequest request = OBSCommonUtils.createListObjectsRequest(owner, listPrefix, "/", maxKeys);
+            if (marker != null) {
+                request.setMarker(marker);
+            }
+            Future<ObjectListing> future = OBSCommonUtils.submitListing(owner, request);
+            inFlight.add(future);
+            return future;
+        }
+
+        private void logLevelStats(final String bucketName) {
+            if (!LOG.isDebugEnabled()) {
+                return;
+            }
+            StringBuilder levelStatsStringBuilder = new StringBuilder();
+            levelStatsStringBuilder.append("bucketName=").append(bucketName).append(", prefix=").append(prefix)
+                    .append(": ");
+            for (OBSFsDFSListing.LevelStats levelStats : levelStatsList) {
+                levelStatsStringBuilder.append("level=")
+                        .append(levelStats.getLevel())
+                        .append(", dirNum=")
+                        .append(levelStats.getDirNum())
+                        .append(", fileNum=")
+                        .append(levelStats.getFileNum())
+                        .append("; ");
+            }
+            LOG.debug("[list level statistics info] " + levelStatsStringBuilder.toString());
+        }
+    }
+
+    /**
+     * A prefix being walked, or ahead of the walk.
+     */
+    private static final class Frame {
+        /**
+         * Prefix listed.
+         */
+        private final String prefix;
+
+        /**
+         * Depth below the listed prefix.
+         */
+        private final int level;
+
+        /**
+         * Page being listed; null once loaded, or before being submitted.
+         */
+        private Future<ObjectListing> page;
+
+        /**
+         * Next page being listed, if the loaded page is truncated.
+         */
+        private Future<ObjectListing> nextPage;
+
+        /**
+         * Objects and sub-prefix frames of the loaded page, in key order.
+         */
+        private List<Object> entries;
+
+        /**
+         * Position of the walk in the entries.
+         */
+        private int position;
+
+        /**
+         * Position of the prefetch in the entries.
+         */
+        private int prefetchPosition;
+
+        private Frame(final String framePrefix, final int frameLevel) {
+            this.prefix = framePrefix;
+            this.level = frameLevel;
+        }
+    }
+}
@@ -0,0 +1,366 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.fs.obs;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.obs.services.exception.ObsException;
+import com.obs.services.model.PartEtag;
+import com.obs.services.model.PutObjectRequest;
+import com.obs.services.model.UploadPartRequest;
+import com.obs.services.model.UploadPartResult;
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.fs.FSExceptionMessages;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writer of one object from independent parts filled concurrently, created
+ * by {@link OBSFileSystem#createParallelWriter(org.apache.hadoop.fs.Path,
+ * boolean)}.
+ *
+ * <p>The object is written as a multipart upload. {@link #openPart(int)}
+ * hands out a stream for the part with the given index; each stream may be
+ * filled by a different thread, in any order, and its part is uploaded on
+ * the transfer pool as soon as the stream is closed. {@link #commit()} waits
+ * for every part and completes the upload with the parts ordered by index,
+ * making the object visible; {@link #abort()} or closing the writer without
+ * committing discards it.
+ *
+ * <p>A part holds at most {@link OBSConstants#MULTIPART_SIZE} bytes, and
+ * every part but the one with the highest index must hold at least {@link
+ * OBSConstants#MULTIPART_MIN_SIZE} bytes. A part stream closed without data
+ * adds no part.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public final class OBSParallelWriter implements Closeable {
+    /**
+     * Class logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(OBSParallelWriter.class);
+
+    /**
+     * Owner FileSystem.
+     */
+    private final OBSFileSystem fs;
+
+    /**
+     * Key of the object.
+     */
+    private final String key;
+
+    /**
+     * Upload id of the multipart upload.
+     */
+    private final String uploadId;
+
+    /**
+     * Executor uploading closed parts.
+     */
+    private final ListeningExecutorService executorService;
+
+    /**
+     * Part uploads by part index; an opened part which is still being
+     * written has no entry.
+     */
+    private final Map<Integer, ListenableFuture<PartEtag>> partUploads = new ConcurrentSkipListMap<>();
+
+    /**
+     * Indexes of the parts handed out.
+     */
+    private final Map<Integer, Boolean> openedParts = new ConcurrentSkipListMap<>();
+
+    /**
+     * Number of part streams not closed yet.
+     */
+    private final AtomicInteger openPartCount = new AtomicInteger();
+
+    /**
+     * Whether the writer has been committed or aborted.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Start a multipart upload for the given key.
+     *
+     * @param owner       the filesystem
+     * @param objectKey   key of the object
+     * @param execService executor uploading closed parts
+     * @throws IOException on failure to initiate the upload
+     */
+    OBSParallelWriter(final OBSFileSystem owner, final String objectKey, final ExecutorService execService)
+            throws IOException {
+        this.fs = owner;
+        this.key = objectKey;
+        this.executorService = MoreExecutors.listeningDecorator(execService);
+        this.uploadId = owner.getWriteHelper().initiateMultiPartUpload(objectKey);
+        LOG.debug("Initiated parallel writer for {} with upload id '{}'", objectKey, uploadId);
+    }
+
+    /**
+     * Open the stream of a part. The part is uploaded when the stream is
+     * closed.
+     *
+     * @param partIndex index of the part, from 0 to {@link
+     *                  OBSConstants#MAX_MULTIPART_COUNT} - 1
+     * @return the part stream, to be used by one thread at a time
+     * @throws IOException if the writer is closed, the index is out of range
+     *                     or the part was already opened, or the part buffer
+     *                     cannot be created
+     */
+    public OutputStream openPart(final int partIndex) throws IOException {
+        checkOpen();
+        if (partIndex < 0 || partIndex >= OBSConstants.MAX_MULTIPART_COUNT) {
+            throw new IOException("Part index " + partIndex + " of " + key + " out of range [0, "
+                    + OBSConstants.MAX_MULTIPART_COUNT + ")");
+        }
+        if (openedParts.putIfAbsent(partIndex, Boolean.TRUE) != null) {
+            throw new IOException("Part " + partIndex + " of " + key + " already opened");
+        }
+        openPartCount.incrementAndGet();
+        try {
+            return new PartOutputStream(partIndex,
+                    fs.getBlockFactory().create(partIndex + 1, (int) fs.getPartSize()));
+        } catch (IOException | RuntimeException e) {
+            openPartCount.decrementAndGet();
+            openedParts.remove(partIndex);
+            throw e;
+        }
+    }
+
+    /**
+     * Wait for every part and complete the upload with the parts ordered by
+     * index. The upload is aborted if any part failed.
+     *
+     * @throws IOException if a part stream is still open, a part upload
+     *                     failed or the upload cannot be completed
+     */
+    public void commit() throws IOException {
+        checkOpen();
+        if (openPartCount.get() > 0) {
+            throw new IOException(openPartCount.get() + " parts of " + key + " are still being written");
+        }
+        closed = true;
+        List<PartEtag> partETags;
+        try {
+            partETags = new ArrayList<>(Futures.allAsList(partUploads.values()).get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            innerAbort();
+            throw new InterruptedIOException("Interrupted committing parallel writer of " + key);
+        } catch (ExecutionException e) {
+            innerAbort();
+            throw OBSCommonUtils.extractException("Parallel upload with id '" + uploadId + "' to " + key, key, e);
+        }
+
+        try {
+            if (partETags.isEmpty()) {
+                // no part holds data: write an empty object instead
+                fs.getWriteHelper().abortMultipartUpload(key, uploadId);
+                PutObjectRequest putObjectRequest = fs.getWriteHelper()
+                        .newPutRequest(key, new ByteArrayInputStream(new byte[0]), 0);
+                putObjectRequest.setAcl(fs.getCannedACL());
+                fs.getWriteHelper().putObject(putObjectRequest);
+            } else {
+                fs.getWriteHelper().completeMultipartUpload(key, uploadId, partETags);
+            }
+        } catch (ObsException e) {
+            innerAbort();
+            throw OBSCommonUtils.translateException(
+                    "Completing parallel upload with id '" + uploadId + "' to " + key, key, e);
+        }
+        fs.getWriteHelper().writeSuccessful(key);
+        LOG.debug("Committed parallel writer of {} with {} parts", key, partETags.size());
+    }
+
+    /**
+     * Discard the object: cancel the part uploads and abort the upload.
+     */
+    public void abort() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        innerAbort();
+    }
+
+    private void innerAbort() {
+        for (ListenableFuture<PartEtag> upload : partUploads.values()) {
+            upload.cancel(true);
+        }
+        try {
+            fs.getWriteHelper().abortMultipartUpload(key, uploadId);
+        } catch (ObsException e) {
+            LOG.warn("Unable to abort multipart upload, you may need to purge uploaded parts", e);
+        }
+    }
+
+    /**
+     * Abort the writer unless it has been committed.
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            LOG.warn("Parallel writer of {} closed without commit, aborting upload '{}'", key, uploadId);
+        }
+        abort();
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException(key + ": " + FSExceptionMessages.STREAM_IS_CLOSED);
+        }
+    }
+
+    /**
+     * Queue the upload of a closed part.
+     *
+     * @param partIndex part index
+     * @param block     block holding the part, closed once uploaded
+     * @throws IOException on failure to start the upload
+     */
+    private void uploadPart(final int partIndex, final OBSDataBlocks.DataBlock block) throws IOException {
+        final int partNumber = partIndex + 1;
+        final int size = block.dataSize();
+        final UploadPartRequest request;
+        Object upload = block.startUpload();
+        if (upload instanceof File) {
+            request = fs.getWriteHelper().newUploadPartRequest(key, uploadId, partNumber, size, (File) upload);
+        } else {
+            request = fs.getWriteHelper().newUploadPartRequest(key, uploadId, partNumber, size,
+                    (InputStream) upload);
+        }
+        partUploads.put(partIndex, executorService.submit(() -> {
+            LOG.debug("Uploading part {} of {} for id '{}'", partNumber, key, uploadId);
+            try {
+                UploadPartResult result = OBSCommonUtils.uploadPart(fs, request);
+                return new PartEtag(result.getEtag(), result.getPartNumber());
+            } catch (ObsException e) {
+                throw OBSCommonUtils.translateException("UploadPart", key, e);
+            } finally {
+                OBSCommonUtils.closeAll(block);
+            }
+        }));
+    }
+
+    @Override
+    public String toString() {
+        return "OBSParallelWriter{key=" + key + ", uploadId=" + uploadId + ", openParts=" + openPartCount.get()
+                + ", closedParts=" + partUploads.size() + ", closed=" + closed + '}';
+    }
+
+    /**
+     * Stream of one part.
+     */
+    private final class PartOutputStream extends OutputStream {
+        /**
+         * Part index.
+         */
+        private final int partIndex;
+
+        /**
+         * Block buffering the part.
+         */
+        private final OBSDataBlocks.DataBlock block;
+
+        /**
+         * Whether the stream has been closed.
+         */
+        private boolean partClosed;
+
+        private PartOutputStream(final int index, final OBSDataBlocks.DataBlock dataBlock) {
+            this.partIndex = index;
+            this.block = dataBlock;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] source, final int offset, final int len) throws IOException {
+            if (partClosed) {
+                throw new IOException("Part " + partIndex + " of " + key + ": "
+                        + FSExceptionMessages.STREAM_IS_CLOSED);
+            }
+            checkOpen();
+            OBSDataBlocks.validateWriteArgs(source, offset, len);
+            if (len == 0) {
+                return;
+            }
+            if (!block.hasCapacity(len)) {
+                throw new IOException("Part " + partIndex + " of " + key + " exceeds the part size of "
+                        + fs.getPartSize() + " bytes");
+            }
+            block.write(source, offset, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (!partClosed) {
+                block.flush();
+            }
+        }
+
+        /**
+         * Close the part and queue its upload.
+         *
+         * @throws IOException on failure to start the upload
+         */
+        @Override
+        public void close() throws IOException {
+            if (partClosed) {
+                return;
+            }
+            partClosed = true;
+            try {
+                if (block.hasData() && !closed) {
+                    uploadPart(partIndex, block);
+                } else {
+                    OBSCommonUtils.closeAll(block);
+                }
+            } catch (IOException | RuntimeException e) {
+                OBSCommonUtils.closeAll(block);
+                throw e;
+            } finally {
+                openPartCount.decrementAndGet();
+            }
+        }
+    }
+}
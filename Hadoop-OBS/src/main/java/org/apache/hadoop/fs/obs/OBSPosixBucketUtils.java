@@ -16,10 +16,20 @@ import org.slf4j.LoggerFactory;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Posix bucket specific utils for {@link OBSFileSystem}.
@@ -401,7 +411,7 @@ final class OBSPosixBucketUtils {
         List<KeyAndVersion> fileList = new ArrayList<>(owner.getMaxEntriesToDelete());
 
         ListObjectsRequest request = OBSCommonUtils.createListObjectsRequest(owner, parentKey, "/", owner.getMaxKeys());
-        ObjectListing objects = OBSCommonUtils.listObjects(owner, request);
+        ObjectListing objects = OBSCommonUtils.listBucketObjects(owner, request);
         while (true) {
             for (String commonPrefix : objects.getCommonPrefixes()) {
                 if (commonPrefix.equals(parentKey)) {
@@ -552,48 +562,66 @@ final class OBSPosixBucketUtils {
             } else {
                 LOG.debug("Found file (with /): real file? should not happen: {}", key);
                 return new OBSFileStatus(meta.getContentLength(), OBSCommonUtils.dateToLong(meta.getLastModified()),
-                        path, owner.getDefaultBlockSize(path), owner.getShortUserName());
+                        path, owner.getDefaultBlockSize(path), owner.getShortUserName(), meta.getEtag());
             }
         } catch (ObsException e) {
             throw OBSCommonUtils.translateException("getFileStatus", path, e);
         }
     }
 
+    /**
+     * Return the content summary of a directory, listing its directories one
+     * level at a time on the list pool, at most {@link
+     * OBSConstants#LIST_PARALLEL_FACTOR} listings at a time, and adding up the
+     * counts as the listings complete.
+     *
+     * @param owner the owner OBSFileSystem instance
+     * @param key   key of the directory
+     * @return the content summary
+     * @throws IOException on any failure to list, or if interrupted
+     */
     static ContentSummary fsGetDirectoryContentSummary(final OBSFileSystem owner, final String key) throws IOException {
         String newKey = key;
         newKey = OBSCommonUtils.maybeAddTrailingSlash(newKey);
         long[] summary = {0, 0, 1};
         LOG.debug("Summary key {}", newKey);
-        ListObjectsRequest request = new ListObjectsRequest();
-        request.setBucketName(owner.getBucket());
-        request.setPrefix(newKey);
-        request.setMaxKeys(owner.getMaxKeys());
-        ObjectListing objects = OBSCommonUtils.listObjects(owner, request);
-        while (true) {
-            if (!objects.getCommonPrefixes().isEmpty() || !objects.getObjects().isEmpty()) {
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("Found path as directory (with /): {}/{}", objects.getCommonPrefixes().size(),
-                            objects.getObjects().size());
-                }
-                for (String prefix : objects.getCommonPrefixes()) {
-                    if (!prefix.equals(newKey)) {
-                        summary[2]++;
+        CompletionService<ObjectListing> completionService = new ExecutorCompletionService<>(
+                owner.getBoundedListThreadPool());
+        // directories and pages to list, the last found first to keep the
+        // queue short on wide trees
+        Deque<ListObjectsRequest> pending = new ArrayDeque<>();
+        Map<Future<ObjectListing>, ListObjectsRequest> inFlight = new HashMap<>();
+        pending.push(OBSCommonUtils.createListObjectsRequest(owner, newKey, "/"));
+        try {
+            while (!pending.isEmpty() || !inFlight.isEmpty()) {
+                while (!pending.isEmpty() && inFlight.size() < owner.getListParallelFactor()) {
+                    ListObjectsRequest request = pending.pop();
+                    try {
+                        inFlight.put(completionService.submit(() -> OBSCommonUtils.commonListObjects(owner, request)),
+                                request);
+                    } catch (RejectedExecutionException e) {
+                        addContentSummary(owner, request, OBSCommonUtils.commonListObjects(owner, request), summary,
+                                pending);
                     }
                 }
-
-                for (ObsObject obj : objects.getObjects()) {
-                    if (!obj.getObjectKey().endsWith("/")) {
-                        summary[0] += obj.getMetadata().getContentLength();
-                        summary[1] += 1;
-                    } else if (!obj.getObjectKey().equals(newKey)) {
-                        summary[2]++;
-                    }
+                if (inFlight.isEmpty()) {
+                    continue;
+                }
+                Future<ObjectListing> future = completionService.take();
+                ListObjectsRequest request = inFlight.remove(future);
+                try {
+                    addContentSummary(owner, request, future.get(), summary, pending);
+                } catch (ExecutionException e) {
+                    throw OBSCommonUtils.extractException("getContentSummary", request.getPrefix(), e);
                 }
             }
-            if (!objects.isTruncated()) {
-                break;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while getting content summary of " + newKey);
+        } finally {
+            for (Future<ObjectListing> future : inFlight.keySet()) {
+                future.cancel(true);
             }
-            objects = OBSCommonUtils.continueListObjects(owner, objects);
         }
         LOG.debug(
                 String.format("file size [%d] - file count [%d] - directory count [%d] - " + "file path [%s]", summary[0],
@@ -605,6 +633,36 @@ final class OBSPosixBucketUtils {
                 .build();
     }
 
+    /**
+     * Add the files and directories of one page of a directory to a content
+     * summary, and queue the next page and the subdirectories.
+     */
+    private static void addContentSummary(final OBSFileSystem owner, final ListObjectsRequest request,
+                                          final ObjectListing objects, final long[] summary,
+                                          final Deque<ListObjectsRequest> pending) {
+        String prefix = request.getPrefix();
+        if (objects.isTruncated()) {
+            ListObjectsRequest nextRequest = OBSCommonUtils.createListObjectsRequest(owner, prefix, "/");
+            nextRequest.setMarker(objects.getNextMarker());
+            pending.push(nextRequest);
+        }
+        for (String commonPrefix : objects.getCommonPrefixes()) {
+            if (!commonPrefix.equals(prefix)) {
+                summary[2]++;
+                pending.push(OBSCommonUtils.createListObjectsRequest(owner, commonPrefix, "/"));
+            }
+        }
+        for (ObsObject obj : objects.getObjects()) {
+            if (!obj.getObjectKey().endsWith("/")) {
+                summary[0] += obj.getMetadata().getContentLength();
+                summary[1] += 1;
+            } else if (!obj.getObjectKey().equals(prefix)) {
+                summary[2]++;
+                pending.push(OBSCommonUtils.createListObjectsRequest(owner, obj.getObjectKey(), "/"));
+            }
+        }
+    }
+
     static void innerFsTruncateWithRetry(final OBSFileSystem owner, final Path f, final long newLength)
             throws IOException {
         long delayMs;
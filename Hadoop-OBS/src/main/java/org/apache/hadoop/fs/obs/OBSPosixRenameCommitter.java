@@ -0,0 +1,389 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.fs.obs;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathIOException;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.JobStatus;
+import org.apache.hadoop.mapreduce.MRJobConfig;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter;
+import org.apache.hadoop.mapreduce.lib.output.PathOutputCommitter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Output committer for posix buckets, where renaming a directory is a single
+ * server side metadata operation.
+ *
+ * <p>The layout is the one of {@link FileOutputCommitter}: a task attempt
+ * writes under {@code <output>/_temporary/<app attempt>/_temporary/<task
+ * attempt>}, and task commit renames that directory to {@code
+ * <output>/_temporary/<app attempt>/<task>} in one request. Job commit merges
+ * the committed task directories into the output path with renames running
+ * in parallel on a pool sized by {@link OBSConstants#COMMITTER_THREADS}: an
+ * entry whose name is free at the destination is renamed as a whole, and
+ * only a directory whose name collides with an existing one is walked to
+ * merge its children. A colliding file replaces the existing one.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public class OBSPosixRenameCommitter extends PathOutputCommitter {
+    /**
+     * Class logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(OBSPosixRenameCommitter.class);
+
+    /**
+     * Filesystem of the output path.
+     */
+    private final OBSFileSystem fs;
+
+    /**
+     * Qualified output path.
+     */
+    private final Path outputPath;
+
+    /**
+     * Work path of the task attempt; null for a job committer.
+     */
+    private final Path workPath;
+
+    /**
+     * Create a committer of a task attempt.
+     *
+     * @param outputPath output path of the job
+     * @param context    task attempt context
+     * @throws IOException if the output path is not on an OBS posix bucket
+     */
+    public OBSPosixRenameCommitter(final Path outputPath, final TaskAttemptContext context) throws IOException {
+        super(outputPath, context);
+        this.fs = getPosixFileSystem(outputPath, context);
+        this.outputPath = fs.makeQualified(outputPath);
+        this.workPath = getTaskAttemptPath(context);
+    }
+
+    /**
+     * Create a committer of a job.
+     *
+     * @param outputPath output path of the job
+     * @param context    job context
+     * @throws IOException if the output path is not on an OBS posix bucket
+     */
+    public OBSPosixRenameCommitter(final Path outputPath, final JobContext context) throws IOException {
+        super(outputPath, context);
+        this.fs = getPosixFileSystem(outputPath, context);
+        this.outputPath = fs.makeQualified(outputPath);
+        this.workPath = null;
+    }
+
+    private static OBSFileSystem getPosixFileSystem(final Path outputPath, final JobContext context)
+            throws IOException {
+        if (outputPath == null) {
+            throw new PathIOException("null", "No output path for the posix rename committer");
+        }
+        FileSystem fileSystem = outputPath.getFileSystem(context.getConfiguration());
+        if (!(fileSystem instanceof OBSFileSystem) || !((OBSFileSystem) fileSystem).isFsBucket()) {
+            throw new PathIOException(outputPath.toString(), "The posix rename committer needs an OBS posix bucket");
+        }
+        return (OBSFileSystem) fileSystem;
+    }
+
+    @Override
+    public Path getOutputPath() {
+        return outputPath;
+    }
+
+    @Override
+    public Path getWorkPath() {
+        return workPath;
+    }
+
+    /**
+     * Directory of the pending output of all attempts of the job.
+     *
+     * @return the pending directory
+     */
+    private Path getPendingPath() {
+        return new Path(outputPath, FileOutputCommitter.PENDING_DIR_NAME);
+    }
+
+    /**
+     * Directory of the committed tasks of the current application attempt.
+     *
+     * @param context job context
+     * @return the job attempt directory
+     */
+    Path getJobAttemptPath(final JobContext context) {
+        return new Path(getPendingPath(),
+                String.valueOf(context.getConfiguration().getInt(MRJobConfig.APPLICATION_ATTEMPT_ID, 0)));
+    }
+
+    /**
+     * Directory under which a task attempt writes.
+     *
+     * @param context task attempt context
+     * @return the task attempt directory
+     */
+    Path getTaskAttemptPath(final TaskAttemptContext context) {
+        return new Path(new Path(getJobAttemptPath(context), FileOutputCommitter.PENDING_DIR_NAME),
+                context.getTaskAttemptID().toString());
+    }
+
+    /**
+     * Directory of the output of a committed task.
+     *
+     * @param context task attempt context
+     * @return the committed task directory
+     */
+    Path getCommittedTaskPath(final TaskAttemptContext context) {
+        return new Path(getJobAttemptPath(context), context.getTaskAttemptID().getTaskID().toString());
+    }
+
+    @Override
+    public void setupJob(final JobContext context) throws IOException {
+        Path jobAttemptPath = getJobAttemptPath(context);
+        LOG.debug("Setting up job {} under {}", context.getJobID(), jobAttemptPath);
+        if (!fs.mkdirs(jobAttemptPath)) {
+            throw new PathIOException(jobAttemptPath.toString(), "Failed to create the job attempt directory");
+        }
+    }
+
+    @Override
+    public void setupTask(final TaskAttemptContext context) throws IOException {
+        // the task attempt directory is created by the first file written
+    }
+
+    @Override
+    public boolean needsTaskCommit(final TaskAttemptContext context) throws IOException {
+        fs.awaitPendingAsyncCloses();
+        return fs.exists(getTaskAttemptPath(context));
+    }
+
+    @Override
+    public void commitTask(final TaskAttemptContext context) throws IOException {
+        Path attemptPath = getTaskAttemptPath(context);
+        Path committedPath = getCommittedTaskPath(context);
+        // files of the attempt closed asynchronously only exist once their
+        // uploads complete; a failed upload fails the commit
+        fs.awaitPendingAsyncCloses();
+        if (!fs.exists(attemptPath)) {
+            LOG.warn("No output found for task attempt {}", context.getTaskAttemptID());
+            return;
+        }
+        if (fs.exists(committedPath) && !fs.delete(committedPath, true)) {
+            throw new PathIOException(committedPath.toString(), "Failed to delete an earlier committed attempt");
+        }
+        if (!rename(attemptPath, committedPath)) {
+            throw new PathIOException(attemptPath.toString(), "Failed to rename to " + committedPath);
+        }
+        LOG.info("Committed task attempt {} to {}", context.getTaskAttemptID(), committedPath);
+    }
+
+    @Override
+    public void abortTask(final TaskAttemptContext context) throws IOException {
+        Path attemptPath = getTaskAttemptPath(context);
+        if (!fs.delete(attemptPath, true) && fs.exists(attemptPath)) {
+            LOG.warn("Failed to delete {} of aborted task attempt {}", attemptPath, context.getTaskAttemptID());
+        }
+    }
+
+    @Override
+    public void commitJob(final JobContext context) throws IOException {
+        long startTime = System.currentTimeMillis();
+        fs.awaitPendingAsyncCloses();
+        List<FileStatus> committedTasks = new ArrayList<>();
+        for (FileStatus status : fs.listStatus(getJobAttemptPath(context))) {
+            if (!status.getPath().getName().equals(FileOutputCommitter.PENDING_DIR_NAME)) {
+                committedTasks.add(status);
+            }
+        }
+        ThreadPoolExecutor pool = OBSCommonUtils.newCommitThreadPool(fs, "obs-commit-job");
+        try {
+            List<MergeEntry> entries = new ArrayList<>();
+            for (FileStatus task : committedTasks) {
+                entries.addAll(listChildren(task.getPath(), outputPath));
+            }
+            mergeInParallel(entries, pool);
+        } finally {
+            pool.shutdown();
+        }
+        fs.delete(getPendingPath(), true);
+        if (context.getConfiguration().getBoolean(FileOutputCommitter.SUCCESSFUL_JOB_OUTPUT_DIR_MARKER, true)) {
+            fs.create(new Path(outputPath, FileOutputCommitter.SUCCEEDED_FILE_NAME), true).close();
+        }
+        LOG.info("Committed job {}: merged {} tasks into {} in {} ms", context.getJobID(), committedTasks.size(),
+                outputPath, System.currentTimeMillis() - startTime);
+    }
+
+    @Override
+    public void abortJob(final JobContext context, final JobStatus.State state) throws IOException {
+        LOG.info("Aborting job {} in state {}", context.getJobID(), state);
+        fs.delete(getPendingPath(), true);
+    }
+
+    /**
+     * Merge entries into their destinations. Each entry is handled on the
+     * pool; the children of a colliding directory come back as new entries,
+     * so no pool thread waits for another.
+     *
+     * @param entries entries to merge
+     * @param pool    pool running the renames
+     * @throws IOException the first failure to merge an entry
+     */
+    private void mergeInParallel(final List<MergeEntry> entries, final ThreadPoolExecutor pool)
+            throws IOException {
+        CompletionService<List<MergeEntry>> completion = new ExecutorCompletionService<>(pool);
+        List<Future<List<MergeEntry>>> futures = new ArrayList<>();
+        for (MergeEntry entry : entries) {
+            futures.add(completion.submit(() -> merge(entry)));
+        }
+        int outstanding = futures.size();
+        try {
+            while (outstanding > 0) {
+                List<MergeEntry> children = completion.take().get();
+                outstanding--;
+                for (MergeEntry child : children) {
+                    futures.add(completion.submit(() -> merge(child)));
+                    outstanding++;
+                }
+            }
+        } catch (InterruptedException e) {
+            cancelAll(futures);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted merging task output into " + outputPath);
+        } catch (ExecutionException e) {
+            cancelAll(futures);
+            throw OBSCommonUtils.extractException("Merging task output", outputPath.toString(), e);
+        }
+    }
+
+    private static void cancelAll(final List<Future<List<MergeEntry>>> futures) {
+        for (Future<List<MergeEntry>> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * Merge one entry: rename it as a whole if its name is free at the
+     * destination, replace a colliding file, or list a directory colliding
+     * with a directory so that its children are merged.
+     *
+     * @param entry entry to merge
+     * @return entries still to merge
+     * @throws IOException on any failure
+     */
+    private List<MergeEntry> merge(final MergeEntry entry) throws IOException {
+        FileStatus dstStatus;
+        try {
+            dstStatus = fs.getFileStatus(entry.dst);
+        } catch (FileNotFoundException e) {
+            if (rename(entry.src.getPath(), entry.dst)) {
+                return Collections.emptyList();
+            }
+            // another task created the destination meanwhile
+            dstStatus = fs.getFileStatus(entry.dst);
+        }
+        if (entry.src.isDirectory() && dstStatus.isDirectory()) {
+            LOG.debug("Merging directory {} into existing {}", entry.src.getPath(), entry.dst);
+            return listChildren(entry.src.getPath(), entry.dst);
+        }
+        LOG.debug("Replacing {} with {}", entry.dst, entry.src.getPath());
+        if (!fs.delete(entry.dst, true) && fs.exists(entry.dst)) {
+            throw new PathIOException(entry.dst.toString(), "Failed to delete for replacement");
+        }
+        if (!rename(entry.src.getPath(), entry.dst)) {
+            throw new PathIOException(entry.src.getPath().toString(), "Failed to rename to " + entry.dst);
+        }
+        return Collections.emptyList();
+    }
+
+    private List<MergeEntry> listChildren(final Path srcDir, final Path dstDir) throws IOException {
+        FileStatus[] children = fs.listStatus(srcDir);
+        List<MergeEntry> entries = new ArrayList<>(children.length);
+        for (FileStatus child : children) {
+            entries.add(new MergeEntry(child, new Path(dstDir, child.getPath().getName())));
+        }
+        return entries;
+    }
+
+    /**
+     * Rename with a single posix rename request, never moving the source
+     * into an existing destination directory.
+     *
+     * @param src source path
+     * @param dst destination path, which must not exist
+     * @return true if the source was renamed
+     * @throws IOException on any failure
+     */
+    private boolean rename(final Path src, final Path dst) throws IOException {
+        try {
+            return OBSPosixBucketUtils.innerFsRenameWithRetry(fs, src, dst, OBSCommonUtils.pathToKey(fs, src),
+                    OBSCommonUtils.pathToKey(fs, dst));
+        } catch (IOException e) {
+            if (fs.exists(dst) && fs.exists(src)) {
+                LOG.debug("Rename of {} to {} lost a race for the destination", src, dst, e);
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "OBSPosixRenameCommitter{outputPath=" + outputPath + ", workPath=" + workPath + '}';
+    }
+
+    /**
+     * An entry of a committed task and its destination.
+     */
+    private static final class MergeEntry {
+        /**
+         * Status of the entry.
+         */
+        private final FileStatus src;
+
+        /**
+         * Destination path.
+         */
+        private final Path dst;
+
+        private MergeEntry(final FileStatus source, final Path destination) {
+            this.src = source;
+            this.dst = destination;
+        }
+    }
+}
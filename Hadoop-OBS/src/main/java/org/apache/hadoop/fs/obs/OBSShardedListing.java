@@ -0,0 +1,525 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.fs.obs;
+
+import com.obs.services.exception.ObsException;
+import com.obs.services.model.ListObjectsRequest;
+import com.obs.services.model.ObjectListing;
+import com.obs.services.model.ObsObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
+
+/**
+ * Recursive listing of object buckets split into key ranges listed
+ * concurrently, for large prefixes with little or no directory structure.
+ *
+ * <p>The first page is listed flat; a listing which fits in it is returned
+ * as is. Otherwise the key space under the prefix is sampled by walking the
+ * first levels of its character trie with single key listings, from the
+ * longest prefix shared by all the keys, which is found by probing for a key
+ * after it: from each node, the next child is found by listing one key after
+ * the last child found. The nodes found after the first page split the rest
+ * of the prefix into up to {@link OBSConstants#OBJECT_LIST_SHARDS} ranges,
+ * listed from a marker just before their first key until their stop key. The
+ * pages of the ranges are returned in range order, so the listing is sorted
+ * like a flat listing.
+ *
+ * <p>At most {@link OBSConstants#LIST_PARALLEL_FACTOR} ranges, the first ones
+ * not consumed yet, are listed at a time, each up to {@link
+ * OBSConstants#OBJECT_LIST_SHARD_PAGES_AHEAD} pages ahead of the consumer.
+ */
+class OBSShardedListing extends ObjectListing {
+    /**
+     * Class logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(OBSShardedListing.class);
+
+    /**
+     * Deepest level of the key trie sampled, below the prefix shared by all
+     * the keys.
+     */
+    private static final int MAX_SAMPLE_DEPTH = 16;
+
+    /**
+     * Most children looked up per node of the key trie.
+     */
+    private static final int MAX_SAMPLE_CHILDREN = 256;
+
+    /**
+     * State of the ranges, shared by the pages of one listing.
+     */
+    private final ShardedWalk walk;
+
+    private OBSShardedListing(final String bucketName, final String prefix, final String marker, final int maxKeys,
+                              final List<ObsObject> objectSummaries, final String nextMarker,
+                              final ShardedWalk shardedWalk) {
+        super(objectSummaries, new ArrayList<>(), bucketName, nextMarker != null, prefix, marker, maxKeys, null,
+                nextMarker, null);
+        this.walk = shardedWalk;
+    }
+
+    /**
+     * List the first page of a recursive listing, and sample the key space
+     * to list the rest in ranges if the page is truncated.
+     *
+     * @param owner   the owner OBSFileSystem instance
+     * @param request recursive request, with no delimiter and no marker
+     * @return the first page; a plain listing if it is the only one
+     * @throws IOException on any failure to list objects
+     */
+    static ObjectListing listObjects(final OBSFileSystem owner, final ListObjectsRequest request)
+            throws IOException {
+        if (request.getDelimiter() != null) {
+            throw new IllegalArgumentException("illegal delimiter: " + request.getDelimiter());
+        }
+        if (request.getMarker() != null) {
+            throw new IllegalArgumentException("illegal marker: " + request.getMarker());
+        }
+        ObjectListing first = OBSCommonUtils.commonListObjects(owner, request);
+        if (!first.isTruncated() || first.getObjects().isEmpty()) {
+            return first;
+        }
+        String prefix = request.getPrefix() == null ? "" : request.getPrefix();
+        List<ObsObject> objects = first.getObjects();
+        String firstKey = objects.get(0).getObjectKey();
+        String lastKey = objects.get(objects.size() - 1).getObjectKey();
+        long startTime = System.currentTimeMillis();
+        String root = sharedPrefix(owner, prefix, firstKey, lastKey);
+        List<String> boundaries = sample(owner, root, lastKey, owner.getObjectListShards());
+        LOG.debug("Split listing of {} after {} into {} ranges under {} in {} ms", prefix, lastKey,
+                boundaries.size() + 1, root, System.currentTimeMillis() - startTime);
+        ShardedWalk walk = new ShardedWalk(owner, prefix, request.getMaxKeys(), lastKey, boundaries);
+        return new OBSShardedListing(owner.getBucket(), prefix, null, request.getMaxKeys(), objects, lastKey,
+                walk);
+    }
+
+    /**
+     * List the next page of a recursive listing.
+     *
+     * @param objects the previous page
+     * @return the next page
+     * @throws IOException on any failure to list objects
+     */
+    static OBSShardedListing continueListObjects(final OBSShardedListing objects) throws IOException {
+        return nextPage(objects.getBucketName(), objects.getPrefix(), objects.getNextMarker(), objects.getMaxKeys(),
+                objects.walk);
+    }
+
+    private static OBSShardedListing nextPage(final String bucketName, final String prefix, final String marker,
+                                              final int maxKeys, final ShardedWalk walk) throws IOException {
+        List<ObsObject> objectSummaries = walk.next();
+        String nextMarker = objectSummaries.isEmpty() || walk.isDone()
+                ? null
+                : objectSummaries.get(objectSummaries.size() - 1).getObjectKey();
+        return new OBSShardedListing(bucketName, prefix, marker, maxKeys, objectSummaries, nextMarker, walk);
+    }
+
+    /**
+     * Find the longest prefix shared by all the keys under a prefix. The keys
+     * of the first page share at most the common prefix of its first and
+     * last keys; a probe for a key after that candidate either finds none,
+     * confirming it, or finds a key which shortens it.
+     *
+     * @param owner    the owner OBSFileSystem instance
+     * @param prefix   prefix of the listing
+     * @param firstKey first key under the prefix
+     * @param lastKey  last key of the first page
+     * @return the shared prefix, at least the prefix of the listing
+     * @throws IOException on any failure to list objects
+     */
+    private static String sharedPrefix(final OBSFileSystem owner, final String prefix, final String firstKey,
+                                       final String lastKey) throws IOException {
+        String candidate = commonPrefix(firstKey, lastKey);
+        while (candidate.length() > prefix.length()) {
+            ListObjectsRequest probe = OBSCommonUtils.createListObjectsRequest(owner, prefix, null, 1);
+            probe.setMarker(candidate + OBSCommonUtils.MAX_CHAR);
+            ObjectListing listing = OBSCommonUtils.commonListObjects(owner, probe);
+            if (listing.getObjects().isEmpty()) {
+                return candidate;
+            }
+            candidate = commonPrefix(firstKey, listing.getObjects().get(0).getObjectKey());
+        }
+        return prefix;
+    }
+
+    private static String commonPrefix(final String a, final String b) {
+        int length = 0;
+        int max = Math.min(a.length(), b.length());
+        while (length < max && a.charAt(length) == b.charAt(length)) {
+            length++;
+        }
+        if (length > 0 && Character.isHighSurrogate(a.charAt(length - 1))) {
+            length--;
+        }
+        return a.substring(0, length);
+    }
+
+    /**
+     * Find the first keys of the ranges to list, by walking the key trie
+     * under a prefix level by level, the nodes of a level in parallel, until
+     * it has enough nodes after the keys already listed.
+     *
+     * @param owner  the owner OBSFileSystem instance
+     * @param prefix prefix shared by all the keys of the listing
+     * @param after  last key already listed
+     * @param shards number of ranges wanted
+     * @return the first keys of every range but the first, sorted
+     * @throws IOException on any failure to list objects
+     */
+    private static List<String> sample(final OBSFileSystem owner, final String prefix, final String after,
+                                       final int shards) throws IOException {
+        TreeSet<String> nodes = new TreeSet<>();
+        nodes.add(prefix);
+        List<String> level = Collections.singletonList(prefix);
+        for (int depth = 0; depth < MAX_SAMPLE_DEPTH && !level.isEmpty()
+                && nodes.tailSet(after, false).size() < shards; depth++) {
+            List<Future<List<String>>> futures = new ArrayList<>(level.size());
+            for (String node : level) {
+                futures.add(submitChildren(owner, node));
+            }
+            List<String> nextLevel = new ArrayList<>();
+            for (int i = 0; i < level.size(); i++) {
+                List<String> children = awaitChildren(futures.get(i), level.get(i));
+                if (!children.isEmpty()) {
+                    nodes.remove(level.get(i));
+                    nodes.addAll(children);
+                    for (String child : children) {
+                        // nodes whose keys were all listed in the first page need no range
+                        if (child.compareTo(after) > 0 || after.startsWith(child)) {
+                            nextLevel.add(child);
+                        }
+                    }
+                }
+            }
+            level = nextLevel;
+        }
+
+        // the range of the first page starts after the keys listed
+        List<String> all = new ArrayList<>(nodes.tailSet(after, false));
+        if (all.size() < shards) {
+            return all;
+        }
+        List<String> boundaries = new ArrayList<>(shards - 1);
+        for (int i = 1; i < shards; i++) {
+            boundaries.add(all.get((int) ((long) i * all.size() / shards)));
+        }
+        return boundaries;
+    }
+
+    private static Future<List<String>> submitChildren(final OBSFileSystem owner, final String node) {
+        try {
+            return owner.getBoundedListThreadPool().submit(() -> children(owner, node));
+        } catch (RejectedExecutionException e) {
+            return new FutureTask<>(() -> children(owner, node));
+        }
+    }
+
+    private static List<String> awaitChildren(final Future<List<String>> future, final String node)
+            throws IOException {
+        if (future instanceof RunnableFuture) {
+            ((RunnableFuture<List<String>>) future).run();
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while sampling prefix " + node);
+        } catch (ExecutionException e) {
+            throw OBSCommonUtils.extractException("listObjects", node, e);
+        }
+    }
+
+    /**
+     * Find the children of a node of the key trie: the node extended by one
+     * more character, for every such character some key has.
+     *
+     * @param owner the owner OBSFileSystem instance
+     * @param node  the node
+     * @return the children, sorted
+     * @throws IOException on any failure to list objects
+     */
+    private static List<String> children(final OBSFileSystem owner, final String node) throws IOException {
+        List<String> children = new ArrayList<>();
+        String marker = null;
+        while (children.size() < MAX_SAMPLE_CHILDREN) {
+            ListObjectsRequest request = OBSCommonUtils.createListObjectsRequest(owner, node, null, 1);
+            if (marker != null) {
+                request.setMarker(marker);
+            }
+            ObjectListing listing = OBSCommonUtils.commonListObjects(owner, request);
+            if (listing.getObjects().isEmpty()) {
+                break;
+            }
+            String key = listing.getObjects().get(0).getObjectKey();
+            if (key.length() == node.length()) {
+                // the node itself is a key
+                marker = key;
+                continue;
+            }
+            String child = key.substring(0, key.offsetByCodePoints(node.length(), 1));
+            children.add(child);
+            // skip every key of the child
+            marker = child + OBSCommonUtils.MAX_CHAR;
+        }
+        return children;
+    }
+
+    /**
+     * Ranges of a listing and the pages listed ahead of the consumer.
+     */
+    private static final class ShardedWalk {
+        /**
+         * The owner filesystem.
+         */
+        private final OBSFileSystem owner;
+
+        /**
+         * Prefix of the listing.
+         */
+        private final String prefix;
+
+        /**
+         * Maximum number of objects per page.
+         */
+        private final int maxKeys;
+
+        /**
+         * Maximum number of pages listed ahead per range.
+         */
+        private final int pagesAhead;
+
+        /**
+         * Maximum number of ranges listed at a time.
+         */
+        private final int window;
+
+        /**
+         * The ranges, in key order.
+         */
+        private final Shard[] shards;
+
+        /**
+         * Index of the range being consumed.
+         */
+        private int current;
+
+        private ShardedWalk(final OBSFileSystem fs, final String listPrefix, final int maxKeyNum,
+                            final String listedKey, final List<String> boundaries) {
+            this.owner = fs;
+            this.prefix = listPrefix;
+            this.maxKeys = maxKeyNum;
+            this.pagesAhead = fs.getObjectListShardPagesAhead();
+            this.shards = new Shard[boundaries.size() + 1];
+            for (int i = 0; i < shards.length; i++) {
+                shards[i] = new Shard(i == 0 ? null : boundaries.get(i - 1),
+                        i == boundaries.size() ? null : boundaries.get(i));
+            }
+            shards[0].marker = listedKey;
+            this.window = Math.min(fs.getListParallelFactor(), shards.length);
+            synchronized (this) {
+                schedule();
+            }
+        }
+
+        /**
+         * Return the next page, waiting for it if needed.
+         *
+         * @return the next page; empty once every range is consumed
+         * @throws IOException on any failure to list objects
+         */
+        private synchronized List<ObsObject> next() throws IOException {
+            while (current < shards.length) {
+                Shard shard = shards[current];
+                if (!shard.pages.isEmpty()) {
+                    List<ObsObject> page = shard.pages.poll();
+                    schedule();
+                    return page;
+                }
+                if (shard.failure != null) {
+                    throw shard.failure;
+                }
+                if (shard.exhausted) {
+                    current++;
+                    schedule();
+                } else if (!shard.fetching) {
+                    // the list pool rejected the range: list it here
+                    shard.fetching = true;
+                    fetch(shard);
+                } else {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while listing prefix " + prefix);
+                    }
+                }
+            }
+            return Collections.emptyList();
+        }
+
+        /**
+         * Return whether every page has been returned.
+         *
+         * @return true if the listing is over
+         */
+        private synchronized boolean isDone() {
+            for (int i = current; i < shards.length; i++) {
+                if (!shards[i].pages.isEmpty() || !shards[i].exhausted || shards[i].failure != null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Start listing the ranges of the window which have room for more
+         * pages. Called holding the lock.
+         */
+        private void schedule() {
+            for (int i = current; i < Math.min(current + window, shards.length); i++) {
+                final Shard shard = shards[i];
+                if (shard.fetching || shard.exhausted || shard.pages.size() >= pagesAhead) {
+                    continue;
+                }
+                shard.fetching = true;
+                try {
+                    owner.getBoundedListThreadPool().execute(() -> fetch(shard));
+                } catch (RejectedExecutionException e) {
+                    shard.fetching = false;
+                    return;
+                }
+            }
+        }
+
+        /**
+         * List the next page of a range.
+         *
+         * @param shard the range
+         */
+        private void fetch(final Shard shard) {
+            List<ObsObject> page = new ArrayList<>();
+            String nextMarker = null;
+            boolean exhausted;
+            IOException failure = null;
+            try {
+                ListObjectsRequest request = OBSCommonUtils.createListObjectsRequest(owner, prefix, null, maxKeys);
+                if (shard.marker != null) {
+                    request.setMarker(shard.marker);
+                }
+                ObjectListing listing = OBSCommonUtils.commonListObjects(owner, request);
+                exhausted = !listing.isTruncated();
+                for (ObsObject object : listing.getObjects()) {
+                    String key = object.getObjectKey();
+                    if (shard.stopKey != null && key.compareTo(shard.stopKey) >= 0) {
+                        exhausted = true;
+                        break;
+                    }
+                    if (shard.startKey == null || key.compareTo(shard.startKey) >= 0) {
+                        page.add(object);
+                    }
+                }
+                nextMarker = listing.getNextMarker() != null || listing.getObjects().isEmpty()
+                        ? listing.getNextMarker()
+                        : listing.getObjects().get(listing.getObjects().size() - 1).getObjectKey();
+            } catch (IOException e) {
+                failure = e;
+                exhausted = true;
+            } catch (ObsException e) {
+                failure = OBSCommonUtils.translateException("listObjects", prefix, e);
+                exhausted = true;
+            } catch (RuntimeException e) {
+                // the consumer waits for the range: it must see the failure
+                failure = new IOException("Failed to list objects of " + prefix + " after " + shard.marker, e);
+                exhausted = true;
+            }
+
+            synchronized (this) {
+                if (!page.isEmpty()) {
+                    shard.pages.add(page);
+                }
+                shard.marker = nextMarker;
+                shard.exhausted = exhausted;
+                shard.failure = failure;
+                shard.fetching = false;
+                notifyAll();
+                schedule();
+            }
+        }
+    }
+
+    /**
+     * A key range of a listing.
+     */
+    private static final class Shard {
+        /**
+         * First key of the range; null for the first range.
+         */
+        private final String startKey;
+
+        /**
+         * First key after the range; null for the last range.
+         */
+        private final String stopKey;
+
+        /**
+         * Pages listed and not consumed yet.
+         */
+        private final Deque<List<ObsObject>> pages = new ArrayDeque<>();
+
+        /**
+         * Marker of the next page.
+         */
+        private String marker;
+
+        /**
+         * Whether a page is being listed.
+         */
+        private boolean fetching;
+
+        /**
+         * Whether the range is listed to its end.
+         */
+        private boolean exhausted;
+
+        /**
+         * Failure to list the range.
+         */
+        private IOException failure;
+
+        private Shard(final String start, final String stop) {
+            this.startKey = start;
+            this.stopKey = stop;
+            this.marker = start == null ? null : OBSCommonUtils.markerBefore(start);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.fs.obs;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Probes an object bucket can make to find the status of a path, so that
+ * callers only pay for the answers they need.
+ */
+enum OBSStatusProbe {
+    /**
+     * HEAD of the key itself: finds a file.
+     */
+    HEAD,
+
+    /**
+     * HEAD of the key with a trailing slash: finds a directory marker.
+     */
+    DIR_MARKER,
+
+    /**
+     * LIST under the key: finds a directory implied by its children.
+     */
+    LIST;
+
+    /**
+     * Every probe, to find any kind of path.
+     */
+    static final Set<OBSStatusProbe> ALL = Collections.unmodifiableSet(EnumSet.allOf(OBSStatusProbe.class));
+
+    /**
+     * Only the probe finding files.
+     */
+    static final Set<OBSStatusProbe> FILE = Collections.unmodifiableSet(EnumSet.of(HEAD));
+}
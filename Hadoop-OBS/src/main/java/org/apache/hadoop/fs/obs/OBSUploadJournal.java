@@ -0,0 +1,342 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.fs.obs;
+
+import com.obs.services.exception.ObsException;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Local journal of a multipart upload made by {@link OBSBlockOutputStream}.
+ *
+ * <p>The journal records the upload id and, for every uploaded part, its
+ * number, ETag, size and offset in the written data. It lives in {@link
+ * OBSConstants#OUTPUT_STREAM_UPLOAD_JOURNAL_DIR} under a name derived from the
+ * bucket and key, so that a writer re-run after a failure and producing the
+ * same key and content can pick up the upload, skip the parts already stored
+ * with the MD5 of the data it writes and complete it. A journal older than
+ * {@link OBSConstants#OUTPUT_STREAM_UPLOAD_JOURNAL_MAX_AGE} is not resumed.
+ *
+ * <p>The file is a line oriented text file; a line truncated by a crash is
+ * ignored.
+ */
+final class OBSUploadJournal {
+    /**
+     * Class logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(OBSUploadJournal.class);
+
+    /**
+     * First line of every journal.
+     */
+    private static final String MAGIC = "obs-upload-journal 1";
+
+    /**
+     * Line prefix of the object the journal belongs to.
+     */
+    private static final String OBJECT = "object\t";
+
+    /**
+     * Line prefix of the upload id.
+     */
+    private static final String UPLOAD = "upload\t";
+
+    /**
+     * Line prefix of an uploaded part.
+     */
+    private static final String PART = "part\t";
+
+    /**
+     * Journal file.
+     */
+    private final File file;
+
+    /**
+     * Bucket and key of the object.
+     */
+    private final String object;
+
+    /**
+     * Upload id of the journal; null if none is recorded.
+     */
+    private String uploadId;
+
+    /**
+     * Parts recorded in the journal, by part number.
+     */
+    private final Map<Integer, JournalPart> parts = new HashMap<>();
+
+    /**
+     * Open writer; null until the first record.
+     */
+    private Writer writer;
+
+    private OBSUploadJournal(final File journalFile, final String objectName) {
+        this.file = journalFile;
+        this.object = objectName;
+    }
+
+    /**
+     * Open the journal of the given key, loading what a previous writer
+     * recorded in it.
+     *
+     * @param owner the filesystem
+     * @param key   object key
+     * @return the journal, or null if journaling is disabled
+     * @throws IOException on failure to read the journal
+     */
+    static OBSUploadJournal open(final OBSFileSystem owner, final String key) throws IOException {
+        String dir = owner.getConf().getTrimmed(OBSConstants.OUTPUT_STREAM_UPLOAD_JOURNAL_DIR, "");
+        if (StringUtils.isEmpty(dir)) {
+            return null;
+        }
+        File journalDir = new File(dir);
+        if (!journalDir.isDirectory() && !journalDir.mkdirs() && !journalDir.isDirectory()) {
+            throw new IOException("Cannot create upload journal directory " + journalDir);
+        }
+        String objectName = owner.getBucket() + "/" + key;
+        OBSUploadJournal journal = new OBSUploadJournal(new File(journalDir, journalName(objectName)), objectName);
+        journal.load();
+        long maxAge = OBSCommonUtils.longOption(owner.getConf(), OBSConstants.OUTPUT_STREAM_UPLOAD_JOURNAL_MAX_AGE,
+                OBSConstants.DEFAULT_OUTPUT_STREAM_UPLOAD_JOURNAL_MAX_AGE, 0);
+        if (journal.uploadId != null && System.currentTimeMillis() - journal.file.lastModified() > maxAge) {
+            LOG.info("Aborting multi-part upload {} of {} journaled more than {} ms ago", journal.uploadId, key,
+                    maxAge);
+            try {
+                owner.getWriteHelper().abortMultipartUpload(key, journal.uploadId);
+            } catch (ObsException e) {
+                LOG.warn("Unable to abort expired multipart upload {} of {}", journal.uploadId, key, e);
+            }
+            journal.delete();
+            journal.uploadId = null;
+            journal.parts.clear();
+        }
+        return journal;
+    }
+
+    private static String journalName(final String objectName) throws IOException {
+        return toHex(newMd5().digest(objectName.getBytes(StandardCharsets.UTF_8))) + ".journal";
+    }
+
+    /**
+     * Return a new MD5 digest.
+     *
+     * @return the digest
+     * @throws IOException if MD5 is not available
+     */
+    static MessageDigest newMd5() throws IOException {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("MD5 is not available", e);
+        }
+    }
+
+    /**
+     * Return a digest in lower case hex, as in the ETag of a part.
+     *
+     * @param digest the digest
+     * @return the hex string
+     */
+    static String toHex(final byte[] digest) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest) {
+            sb.append(String.format("%02x", b & OBSCommonUtils.BYTE_TO_INT_MASK));
+        }
+        return sb.toString();
+    }
+
+    private void load() throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            if (!MAGIC.equals(reader.readLine()) || !(OBJECT + object).equals(reader.readLine())) {
+                LOG.warn("Ignoring upload journal {} which does not belong to {}", file, object);
+                return;
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(UPLOAD)) {
+                    uploadId = line.substring(UPLOAD.length());
+                    parts.clear();
+                } else if (line.startsWith(PART)) {
+                    JournalPart part = JournalPart.parse(line.substring(PART.length()));
+                    if (part != null) {
+                        parts.put(part.getPartNumber(), part);
+                    }
+                }
+            }
+        }
+        LOG.debug("Loaded upload journal {} of {}: upload id {}, {} parts", file, object, uploadId, parts.size());
+    }
+
+    /**
+     * Upload id recorded by a previous writer.
+     *
+     * @return the upload id, or null if there is none
+     */
+    synchronized String getUploadId() {
+        return uploadId;
+    }
+
+    /**
+     * Part recorded by a previous writer.
+     *
+     * @param partNumber part number
+     * @return the part, or null if it was not recorded
+     */
+    synchronized JournalPart getPart(final int partNumber) {
+        return parts.get(partNumber);
+    }
+
+    /**
+     * Start journaling a new upload, dropping anything recorded before.
+     *
+     * @param newUploadId id of the new upload
+     * @throws IOException on failure to write the journal
+     */
+    synchronized void start(final String newUploadId) throws IOException {
+        closeWriter();
+        uploadId = newUploadId;
+        parts.clear();
+        writer = new OutputStreamWriter(new FileOutputStream(file, false), StandardCharsets.UTF_8);
+        writer.write(MAGIC + "\n" + OBJECT + object + "\n" + UPLOAD + newUploadId + "\n");
+        writer.flush();
+    }
+
+    /**
+     * Record a part which has been uploaded.
+     *
+     * @param part the part
+     * @throws IOException on failure to write the journal
+     */
+    synchronized void recordPart(final JournalPart part) throws IOException {
+        if (writer == null) {
+            writer = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8);
+        }
+        parts.put(part.getPartNumber(), part);
+        writer.write(PART + part + "\n");
+        writer.flush();
+    }
+
+    /**
+     * Delete the journal once its upload has been completed or abandoned.
+     */
+    synchronized void delete() {
+        closeWriter();
+        if (file.exists() && !file.delete()) {
+            LOG.warn("Failed to delete upload journal {}", file);
+        }
+    }
+
+    private void closeWriter() {
+        if (writer != null) {
+            OBSCommonUtils.closeAll(writer);
+            writer = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "OBSUploadJournal{file=" + file + ", object=" + object + '}';
+    }
+
+    /**
+     * A part recorded in the journal.
+     */
+    static final class JournalPart {
+        /**
+         * Part number.
+         */
+        private final int partNumber;
+
+        /**
+         * ETag returned by OBS.
+         */
+        private final String etag;
+
+        /**
+         * Part size.
+         */
+        private final long size;
+
+        /**
+         * Offset of the part in the written data.
+         */
+        private final long offset;
+
+        JournalPart(final int number, final String partEtag, final long partSize, final long partOffset) {
+            this.partNumber = number;
+            this.etag = partEtag;
+            this.size = partSize;
+            this.offset = partOffset;
+        }
+
+        private static JournalPart parse(final String line) {
+            String[] fields = line.split("\t");
+            if (fields.length != 4) {
+                return null;
+            }
+            try {
+                return new JournalPart(Integer.parseInt(fields[0]), fields[1], Long.parseLong(fields[2]),
+                        Long.parseLong(fields[3]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        int getPartNumber() {
+            return partNumber;
+        }
+
+        String getEtag() {
+            return etag;
+        }
+
+        long getSize() {
+            return size;
+        }
+
+        long getOffset() {
+            return offset;
+        }
+
+        @Override
+        public String toString() {
+            return partNumber + "\t" + etag + "\t" + size + "\t" + offset;
+        }
+    }
+}
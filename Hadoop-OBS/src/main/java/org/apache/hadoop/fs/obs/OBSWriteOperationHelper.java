@@ -29,7 +29,9 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Helper for an ongoing write operation.
@@ -113,6 +115,7 @@ class OBSWriteOperationHelper {
      */
     void writeSuccessful(final String destKey) {
         LOG.debug("Finished write to {}", destKey);
+        owner.invalidateFileStatus(destKey);
     }
 
     /**
@@ -183,6 +186,36 @@ class OBSWriteOperationHelper {
         obs.abortMultipartUpload(new AbortMultipartUploadRequest(bucket, destKey, uploadId));
     }
 
+    /**
+     * List the parts already uploaded for a multipart upload.
+     *
+     * @param destKey  object key
+     * @param uploadId multipart operation Id
+     * @return the parts, by part number
+     * @throws IOException on problems; {@link java.io.FileNotFoundException}
+     *                     if the upload does not exist
+     */
+    Map<Integer, Multipart> listParts(final String destKey, final String uploadId) throws IOException {
+        LOG.debug("Listing parts of multipart upload {}", uploadId);
+        Map<Integer, Multipart> parts = new HashMap<>();
+        ListPartsRequest request = new ListPartsRequest(bucket, destKey, uploadId);
+        try {
+            ListPartsResult result;
+            do {
+                result = obs.listParts(request);
+                for (Multipart part : result.getMultipartList()) {
+                    parts.put(part.getPartNumber(), part);
+                }
+                if (result.isTruncated()) {
+                    request.setPartNumberMarker(Integer.parseInt(String.valueOf(result.getNextPartNumberMarker())));
+                }
+            } while (result.isTruncated());
+        } catch (ObsException e) {
+            throw OBSCommonUtils.translateException("List parts of multipart upload " + uploadId, destKey, e);
+        }
+        return parts;
+    }
+
     /**
      * Create request for uploading one part of a multipart task.
      *
@@ -247,6 +280,42 @@ class OBSWriteOperationHelper {
         return request;
     }
 
+    /**
+     * Create request for uploading a range of a local file as one part of a
+     * multipart task; the part is read straight from the file.
+     *
+     * @param destKey    destination object key
+     * @param uploadId   upload id
+     * @param partNumber part number
+     * @param sourceFile source file
+     * @param offset     offset of the part in the file
+     * @param size       data size
+     * @return part upload request
+     */
+    UploadPartRequest newUploadPartRequest(final String destKey, final String uploadId, final int partNumber,
+                                           final File sourceFile, final long offset, final long size) {
+        Preconditions.checkNotNull(uploadId);
+
+        Preconditions.checkArgument(sourceFile != null, "Data source");
+        Preconditions.checkArgument(size > 0, "Invalid partition size %s", size);
+        Preconditions.checkArgument(partNumber > 0 && partNumber <= PART_NUMBER);
+
+        LOG.debug("Creating part upload request for {} #{} offset {} size {}", uploadId, partNumber, offset, size);
+        UploadPartRequest request = new UploadPartRequest();
+        request.setUploadId(uploadId);
+        request.setBucketName(bucket);
+        request.setObjectKey(destKey);
+        request.setPartSize(size);
+        request.setPartNumber(partNumber);
+        request.setFile(sourceFile);
+        request.setOffset(offset);
+        if (owner.getSse().isSseCEnable()) {
+            request.setSseCHeader(owner.getSse().getSseCHeader());
+        }
+        return request;
+    }
+
+
     public String toString(final String destKey) {
         return "{bucket=" + bucket + ", key='" + destKey + '\'' + '}';
     }